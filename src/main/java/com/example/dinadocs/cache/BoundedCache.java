@@ -0,0 +1,275 @@
+package com.example.dinadocs.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caché en memoria acotada con política de expulsión LRU (menos usado recientemente).
+ * Limita tanto el número de entradas como el peso total (por ejemplo, caracteres o bytes)
+ * de los valores almacenados, y lleva la cuenta de aciertos, fallos y expulsiones.
+ * Opcionalmente, las entradas caducan tras un tiempo de vida (TTL) desde que se almacenan.
+ *
+ * <p>Todas las operaciones sobre el mapa interno están sincronizadas; el cálculo de
+ * valores en {@link #computeIfAbsent(Object, Function)} se realiza fuera del candado
+ * para no bloquear a otros hilos mientras se compila o renderiza el valor.
+ *
+ * @param <K> tipo de la clave
+ * @param <V> tipo del valor
+ * @see BoundedCacheMetrics
+ */
+public class BoundedCache<K, V> {
+
+    private final String name;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Crea una caché acotada por número de entradas y por peso total.
+     *
+     * @param name nombre de la caché (se usa como etiqueta en las métricas)
+     * @param maxEntries número máximo de entradas
+     * @param maxWeight peso máximo acumulado de los valores
+     * @param weigher función que calcula el peso de un valor
+     */
+    public BoundedCache(String name, int maxEntries, long maxWeight, ToLongFunction<? super V> weigher) {
+        this(name, maxEntries, maxWeight, weigher, null);
+    }
+
+    /**
+     * Crea una caché acotada por número de entradas y por peso total cuyas entradas
+     * caducan tras el tiempo de vida indicado.
+     *
+     * @param name nombre de la caché (se usa como etiqueta en las métricas)
+     * @param maxEntries número máximo de entradas
+     * @param maxWeight peso máximo acumulado de los valores
+     * @param weigher función que calcula el peso de un valor
+     * @param ttl tiempo de vida de cada entrada desde que se almacena (null o cero para no caducar)
+     */
+    public BoundedCache(String name, int maxEntries, long maxWeight, ToLongFunction<? super V> weigher, Duration ttl) {
+        this(name, maxEntries, maxWeight, weigher, ttl, System::nanoTime);
+    }
+
+    BoundedCache(String name, int maxEntries, long maxWeight, ToLongFunction<? super V> weigher,
+                 Duration ttl, LongSupplier nanoClock) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Los límites de la caché '" + name + "' deben ser positivos.");
+        }
+        if (ttl != null && ttl.isNegative()) {
+            throw new IllegalArgumentException("El tiempo de vida de la caché '" + name + "' no puede ser negativo.");
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.ttlNanos = ttl == null ? 0L : ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Valor almacenado junto con su peso y el instante en que se almacenó.
+     */
+    private record Entry<V>(V value, long weight, long writtenAt) {
+    }
+
+    /**
+     * Crea una caché acotada únicamente por número de entradas.
+     *
+     * @param name nombre de la caché
+     * @param maxEntries número máximo de entradas
+     */
+    public BoundedCache(String name, int maxEntries) {
+        this(name, maxEntries, maxEntries, value -> 1L);
+    }
+
+    /**
+     * Obtiene un valor de la caché, registrando el acierto o fallo.
+     *
+     * @param key la clave buscada
+     * @return el valor almacenado o null si no existe
+     */
+    public V get(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && isExpired(entry)) {
+                entries.remove(key);
+                totalWeight -= entry.weight();
+                evictions.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value();
+        }
+    }
+
+    /**
+     * Obtiene el valor asociado a la clave o lo calcula con {@code loader} si no existe.
+     * El valor calculado se almacena siempre que respete los límites de la caché.
+     *
+     * @param key la clave buscada
+     * @param loader función que calcula el valor en caso de fallo
+     * @return el valor almacenado o recién calculado
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Almacena un valor, expulsando las entradas menos usadas si se exceden los límites.
+     * Los valores cuyo peso supera por sí solo el máximo no se almacenan.
+     *
+     * @param key la clave
+     * @param value el valor a almacenar
+     */
+    public void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        synchronized (entries) {
+            Entry<V> previous = entries.remove(key);
+            if (previous != null) {
+                totalWeight -= previous.weight();
+            }
+            if (weight > maxWeight) {
+                return;
+            }
+            entries.put(key, new Entry<>(value, weight, nanoClock.getAsLong()));
+            totalWeight += weight;
+            puts.increment();
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Elimina la entrada asociada a la clave.
+     *
+     * @param key la clave a invalidar
+     */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            Entry<V> removed = entries.remove(key);
+            if (removed != null) {
+                totalWeight -= removed.weight();
+            }
+        }
+    }
+
+    /**
+     * Elimina todas las entradas cuya clave cumpla el predicado.
+     *
+     * @param predicate condición sobre las claves a invalidar
+     */
+    public void invalidateIf(Predicate<? super K> predicate) {
+        synchronized (entries) {
+            Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, Entry<V>> entry = it.next();
+                if (predicate.test(entry.getKey())) {
+                    totalWeight -= entry.getValue().weight();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Vacía la caché por completo (los contadores se conservan).
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalWeight = 0;
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalWeight > maxWeight) && it.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            totalWeight -= eldest.getValue().weight();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return ttlNanos > 0 && nanoClock.getAsLong() - entry.writtenAt() >= ttlNanos;
+    }
+
+    /** @return el nombre de la caché */
+    public String getName() {
+        return name;
+    }
+
+    /** @return el número de entradas almacenadas */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** @return el peso total de las entradas almacenadas */
+    public long weight() {
+        synchronized (entries) {
+            return totalWeight;
+        }
+    }
+
+    /** @return el número de aciertos registrados */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /** @return el número de fallos registrados */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /** @return el número de valores almacenados */
+    public long putCount() {
+        return puts.sum();
+    }
+
+    /** @return el número de entradas expulsadas por exceder los límites o por caducar */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Calcula la proporción de aciertos sobre el total de consultas.
+     *
+     * @return valor entre 0 y 1 (0 si aún no hubo consultas)
+     */
+    public double hitRatio() {
+        long h = hitCount();
+        long total = h + missCount();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.dinadocs.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * Publica las estadísticas de una {@link BoundedCache} en Micrometer, de modo que
+ * queden disponibles en {@code /actuator/metrics} con los nombres estándar
+ * ({@code cache.gets}, {@code cache.puts}, {@code cache.evictions}, {@code cache.size}).
+ *
+ * <p>Además de las métricas estándar registra {@code cache.weight} (peso acumulado)
+ * y {@code cache.hit.ratio} (proporción de aciertos).
+ *
+ * @see BoundedCache
+ */
+public class BoundedCacheMetrics extends CacheMeterBinder<BoundedCache<?, ?>> {
+
+    /**
+     * Crea el binder para la caché indicada.
+     *
+     * @param cache la caché a instrumentar
+     * @param tags etiquetas adicionales
+     */
+    public BoundedCacheMetrics(BoundedCache<?, ?> cache, Tags tags) {
+        super(cache, cache.getName(), tags);
+    }
+
+    /**
+     * Crea el binder sin etiquetas adicionales.
+     *
+     * @param cache la caché a instrumentar
+     */
+    public BoundedCacheMetrics(BoundedCache<?, ?> cache) {
+        this(cache, Tags.empty());
+    }
+
+    @Override
+    protected Long size() {
+        BoundedCache<?, ?> cache = getCache();
+        return cache == null ? null : (long) cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        BoundedCache<?, ?> cache = getCache();
+        return cache == null ? 0L : cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        BoundedCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        BoundedCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.evictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        BoundedCache<?, ?> cache = getCache();
+        return cache == null ? 0L : cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        BoundedCache<?, ?> cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        Gauge.builder("cache.weight", cache, BoundedCache::weight)
+                .tags(getTagsWithCacheName())
+                .description("Peso acumulado de las entradas de la caché")
+                .register(registry);
+        Gauge.builder("cache.hit.ratio", cache, BoundedCache::hitRatio)
+                .tags(getTagsWithCacheName())
+                .description("Proporción de aciertos sobre el total de consultas")
+                .register(registry);
+    }
+}
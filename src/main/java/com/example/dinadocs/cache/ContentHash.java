@@ -0,0 +1,49 @@
+package com.example.dinadocs.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Utilidad para calcular huellas (hashes) de contenido que sirven como claves de caché.
+ * Usa SHA-256 y devuelve la representación hexadecimal en minúsculas.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    /**
+     * Calcula el SHA-256 de un texto codificado en UTF-8.
+     *
+     * @param content el texto a resumir (null se trata como cadena vacía)
+     * @return el hash en hexadecimal
+     */
+    public static String sha256(String content) {
+        return sha256(content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Calcula el SHA-256 de un arreglo de bytes.
+     *
+     * @param bytes los bytes a resumir
+     * @return el hash en hexadecimal
+     */
+    public static String sha256(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    /**
+     * Crea un nuevo {@link MessageDigest} SHA-256 para cálculos incrementales.
+     *
+     * @return el digest listo para usarse
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible en esta JVM", e);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.dinadocs.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Caché en disco acotada por tamaño total, con política de expulsión LRU.
+ *
+ * <p>Cada entrada es un fichero {@code <clave>.cache} en el directorio indicado. Se escribe
+ * primero en un fichero temporal y se mueve después de forma atómica, así que nunca se lee
+ * una entrada a medias. Las lecturas devuelven una región del fichero proyectada en memoria
+ * ({@link FileChannel#map}), que no ocupa espacio en el heap de la JVM.
+ *
+ * <p>El índice (clave, tamaño y orden de uso) solo vive en memoria: al crear la caché se
+ * reconstruye recorriendo el directorio y ordenando los ficheros por fecha de modificación,
+ * que se actualiza en cada acierto.
+ *
+ * @see DiskCacheMetrics
+ */
+public class DiskCache {
+
+    private static final String SUFFIX = ".cache";
+    private static final Pattern VALID_KEY = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final String name;
+    private final Path directory;
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Crea la caché y reconstruye el índice con los ficheros que ya hay en el directorio.
+     *
+     * @param name nombre de la caché (se usa como etiqueta en las métricas)
+     * @param directory directorio de las entradas (se crea si no existe)
+     * @param maxBytes tamaño máximo acumulado de los ficheros
+     */
+    public DiskCache(String name, Path directory, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo de la caché en disco debe ser positivo.");
+        }
+        this.name = name;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el directorio de la caché " + directory, e);
+        }
+        rebuildIndex();
+    }
+
+    private void rebuildIndex() {
+        record Found(String key, long size, FileTime modified) {}
+        List<Found> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(".tmp")) {
+                    // Escritura interrumpida en una ejecución anterior
+                    deleteQuietly(file);
+                } else if (fileName.endsWith(SUFFIX) && Files.isRegularFile(file)) {
+                    found.add(new Found(fileName.substring(0, fileName.length() - SUFFIX.length()),
+                            Files.size(file), Files.getLastModifiedTime(file)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el directorio de la caché " + directory, e);
+        }
+        found.sort(Comparator.comparing(Found::modified));
+        List<String> evicted;
+        synchronized (this) {
+            for (Found entry : found) {
+                index.put(entry.key(), entry.size());
+                totalBytes += entry.size();
+            }
+            evicted = evictExcess();
+        }
+        evicted.forEach(this::deleteEntry);
+    }
+
+    /**
+     * Devuelve el contenido de una entrada proyectado en memoria.
+     *
+     * @param key la clave
+     * @return un buffer de solo lectura con el contenido, o null si no está
+     */
+    public ByteBuffer get(String key) {
+        synchronized (this) {
+            // get (y no containsKey) para que cuente como uso en el orden LRU
+            if (index.get(key) == null) {
+                misses.increment();
+                return null;
+            }
+        }
+        Path file = fileFor(key);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // La proyección sigue siendo válida después de cerrar el canal
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.increment();
+            return mapped;
+        } catch (NoSuchFileException e) {
+            // Expulsada por otro hilo (o borrada a mano) entre la consulta y la lectura
+            remove(key);
+        } catch (IOException e) {
+            System.out.println("Advertencia: no se pudo leer la entrada " + key + " de la caché '" + name + "': " + e.getMessage());
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Guarda una entrada. Las que no caben en el tamaño máximo se ignoran.
+     *
+     * @param key la clave (solo letras, dígitos, '-' y '_')
+     * @param value el contenido
+     */
+    public void put(String key, byte[] value) {
+        put(key, ByteBuffer.wrap(value));
+    }
+
+    /**
+     * Guarda una entrada a partir del contenido restante de un buffer, sin modificar su posición.
+     * Las que no caben en el tamaño máximo se ignoran.
+     *
+     * @param key la clave (solo letras, dígitos, '-' y '_')
+     * @param value el contenido
+     */
+    public void put(String key, ByteBuffer value) {
+        if (!VALID_KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Clave no válida para la caché en disco: " + key);
+        }
+        long size = value.remaining();
+        if (size > maxBytes) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer remaining = value.duplicate();
+                    while (remaining.hasRemaining()) {
+                        channel.write(remaining);
+                    }
+                }
+                Files.move(temp, fileFor(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.out.println("Advertencia: no se pudo escribir la entrada " + key + " en la caché '" + name + "': " + e.getMessage());
+            return;
+        }
+        puts.increment();
+        List<String> evicted;
+        synchronized (this) {
+            Long previous = index.put(key, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+            evicted = evictExcess();
+        }
+        evicted.forEach(this::deleteEntry);
+    }
+
+    private synchronized void remove(String key) {
+        Long size = index.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    /** Saca del índice las entradas menos usadas hasta respetar el límite; se llama con el candado. */
+    private List<String> evictExcess() {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            totalBytes -= eldest.getValue();
+            it.remove();
+            evictions.increment();
+            evicted.add(eldest.getKey());
+        }
+        return evicted;
+    }
+
+    private void deleteEntry(String key) {
+        deleteQuietly(fileFor(key));
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println("Advertencia: no se pudo borrar " + file + " de la caché '" + name + "': " + e.getMessage());
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    /** @return nombre de la caché */
+    public String getName() {
+        return name;
+    }
+
+    /** @return directorio de las entradas */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** @return número de entradas */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /** @return tamaño acumulado de los ficheros, en bytes */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /** @return número de aciertos */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /** @return número de fallos */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /** @return número de entradas escritas */
+    public long putCount() {
+        return puts.sum();
+    }
+
+    /** @return número de entradas expulsadas por tamaño */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+}
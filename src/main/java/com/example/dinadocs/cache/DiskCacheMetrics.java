@@ -0,0 +1,67 @@
+package com.example.dinadocs.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * Publica las estadísticas de una {@link DiskCache} en Micrometer con los nombres estándar
+ * de caché, más {@code cache.weight} (bytes ocupados en disco).
+ *
+ * @see DiskCache
+ */
+public class DiskCacheMetrics extends CacheMeterBinder<DiskCache> {
+
+    /**
+     * Crea el binder para la caché indicada.
+     *
+     * @param cache la caché a instrumentar
+     */
+    public DiskCacheMetrics(DiskCache cache) {
+        super(cache, cache.getName(), Tags.empty());
+    }
+
+    @Override
+    protected Long size() {
+        DiskCache cache = getCache();
+        return cache == null ? null : (long) cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        DiskCache cache = getCache();
+        return cache == null ? 0L : cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        DiskCache cache = getCache();
+        return cache == null ? null : cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        DiskCache cache = getCache();
+        return cache == null ? null : cache.evictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        DiskCache cache = getCache();
+        return cache == null ? 0L : cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        DiskCache cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        Gauge.builder("cache.weight", cache, DiskCache::totalBytes)
+                .tags(getTagsWithCacheName())
+                .description("Bytes ocupados en disco por las entradas de la caché")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
@@ -29,6 +29,7 @@ public class CorsConfig {
      *   <li>AllowedOriginPattern: * - Acepta peticiones desde cualquier dominio</li>
      *   <li>AllowedHeaders: * - Acepta cualquier header HTTP</li>
      *   <li>AllowedMethods: OPTIONS, GET, POST, PUT, DELETE - Métodos HTTP permitidos</li>
+     *   <li>ExposedHeaders: X-Next-Cursor - Cursor de paginación del listado de plantillas</li>
      * </ul>
      * 
      * @return CorsFilter configurado para toda la aplicación
@@ -49,6 +50,8 @@ public class CorsConfig {
         config.addAllowedMethod("POST");
         config.addAllowedMethod("PUT");
         config.addAllowedMethod("DELETE");
+
+        config.addExposedHeader("X-Next-Cursor");
         
         source.registerCorsConfiguration("/**", config);
         
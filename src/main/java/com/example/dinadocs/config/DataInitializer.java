@@ -1,6 +1,7 @@
 package com.example.dinadocs.config;
 
 import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateNames;
 import com.example.dinadocs.repositories.TemplateRepository;
 import com.example.dinadocs.models.User;
 import com.example.dinadocs.repositories.UserRepository;
@@ -12,7 +13,6 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 /**
  * "Seeder" de la Base de Datos.
@@ -26,7 +26,7 @@ public class DataInitializer implements CommandLineRunner {
     private final TemplateRepository templateRepository;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    private final com.example.dinadocs.services.TemplateProcessor templateProcessor;
+    private final com.example.dinadocs.services.TemplateService templateService;
 
     /**
      * Constructor para inyección de dependencias.
@@ -34,13 +34,13 @@ public class DataInitializer implements CommandLineRunner {
      * @param templateRepository repositorio de plantillas
      * @param userRepository repositorio de usuarios
      * @param passwordEncoder encoder de contraseñas BCrypt
-     * @param templateProcessor procesador de plantillas para extraer placeholders
+     * @param templateService servicio de plantillas para compilarlas y guardarlas con su primera versión
      */
-    public DataInitializer(TemplateRepository templateRepository, UserRepository userRepository, PasswordEncoder passwordEncoder, com.example.dinadocs.services.TemplateProcessor templateProcessor) {
+    public DataInitializer(TemplateRepository templateRepository, UserRepository userRepository, PasswordEncoder passwordEncoder, com.example.dinadocs.services.TemplateService templateService) {
         this.templateRepository = templateRepository;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
-        this.templateProcessor = templateProcessor;
+        this.templateService = templateService;
     }
 
     /**
@@ -55,25 +55,22 @@ public class DataInitializer implements CommandLineRunner {
      * Método de ayuda para crear una plantilla desde archivo, solo si no existe.
      */
     private void createTemplateFromFile(String name, String filename) {
-        if (templateRepository.findByName(name).isEmpty()) {
+        if (templateRepository.findByNameKey(TemplateNames.key(name)).isEmpty()) {
             try {
                 String content = loadTemplateFromFile(filename);
                 Template newTemplate = new Template();
                 newTemplate.setName(name);
                 newTemplate.setContent(content);
-                newTemplate.setPublic(true);
 
-                // Asignar el propietario al creador por defecto con ID 2
+                // Asignar el propietario al creador por defecto con ID 2 (sus plantillas son públicas)
                 User owner = userRepository.findById(2L).orElseThrow(() -> new RuntimeException("Usuario creador no encontrado"));
-                newTemplate.setOwner(owner);
 
-                List<String> placeholders = templateProcessor.extractPlaceholders(content);
-                newTemplate.setPlaceholders(placeholders);
-
-                templateRepository.save(newTemplate);
+                templateService.save(newTemplate, owner);
                 System.out.println("SEEDER: Creada plantilla '" + name + "' desde archivo '" + filename + "'");
             } catch (IOException e) {
                 System.err.println("ERROR: No se pudo cargar la plantilla '" + filename + "': " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                System.err.println("ERROR: La plantilla '" + filename + "' no es válida: " + e.getMessage());
             }
         }
     }
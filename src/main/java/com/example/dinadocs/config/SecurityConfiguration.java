@@ -1,18 +1,26 @@
 package com.example.dinadocs.config;
 
+import com.example.dinadocs.models.Role;
+import com.example.dinadocs.models.User;
 import com.example.dinadocs.security.JwtFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder; // <--- NUEVO IMPORT
 import org.springframework.security.crypto.password.PasswordEncoder;     // <--- NUEVO IMPORT
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.function.Supplier;
+
 /**
  * Configuración de seguridad de la aplicación basada en Spring Security.
  * Define las reglas de autenticación, autorización y protección de endpoints.
@@ -57,7 +65,10 @@ public class SecurityConfiguration {
      *   <li>CORS habilitado con configuración por defecto</li>
      *   <li>CSRF deshabilitado (no necesario en APIs REST stateless)</li>
      *   <li>Sesiones STATELESS (sin manejo de sesiones en servidor)</li>
-     *   <li>Endpoints públicos: /api/auth/*, /error, /actuator/*, /swagger-ui/**</li>
+     *   <li>Endpoints públicos: /api/auth/*, /error, /actuator/health, /swagger-ui/**</li>
+     *   <li>El resto de /actuator/* (métricas de renderizado, cachés y colas) solo para ADMIN</li>
+     *   <li>Despachos ASYNC permitidos: completan respuestas en flujo (p. ej. los ZIP por lotes)
+     *       de peticiones ya autorizadas</li>
      *   <li>Todos los demás endpoints requieren autenticación</li>
      *   <li>Headers X-Frame-Options deshabilitados</li>
      * </ul>
@@ -73,10 +84,12 @@ public class SecurityConfiguration {
             .csrf(csrf -> csrf.disable()) 
             .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS)) 
             .authorizeHttpRequests(auth -> auth
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/auth/register").permitAll()
                 .requestMatchers("/api/auth/login").permitAll()
                 .requestMatchers("/error").permitAll()
-                .requestMatchers("/actuator/**").permitAll()
+                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                .requestMatchers("/actuator/**").access(SecurityConfiguration::adminOnly)
                 .requestMatchers("/swagger-/**").permitAll()
                 .requestMatchers("/docs/**").permitAll()
                 .anyRequest().authenticated() 
@@ -87,6 +100,21 @@ public class SecurityConfiguration {
         return http.build();
     }
 
+    /**
+     * Autoriza solo a usuarios autenticados con rol ADMIN. Los roles no se publican como
+     * authorities, así que se comprueba el {@link User} autenticado por {@link JwtFilter}.
+     *
+     * @param authentication la autenticación de la petición
+     * @param context el contexto de la petición
+     * @return la decisión de autorización
+     */
+    private static AuthorizationDecision adminOnly(Supplier<Authentication> authentication,
+                                                   RequestAuthorizationContext context) {
+        Authentication auth = authentication.get();
+        boolean admin = auth != null && auth.getPrincipal() instanceof User user && user.getRole() == Role.ADMIN;
+        return new AuthorizationDecision(admin);
+    }
+
     /**
      * Proporciona el AuthenticationManager de Spring Security.
      * Se utiliza en el proceso de autenticación de usuarios.
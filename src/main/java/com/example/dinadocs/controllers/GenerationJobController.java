@@ -0,0 +1,110 @@
+package com.example.dinadocs.controllers;
+
+import com.example.dinadocs.models.GenerationJob;
+import com.example.dinadocs.models.GenerationRequest;
+import com.example.dinadocs.models.User;
+import com.example.dinadocs.services.GenerationJobService;
+import com.example.dinadocs.services.RenderRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.NoSuchElementException;
+
+/**
+ * Controlador (API REST Endpoints) para la generación asíncrona de PDFs.
+ * El cliente envía la solicitud, consulta el estado del trabajo y descarga el resultado.
+ *
+ * @see com.example.dinadocs.services.GenerationJobService
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class GenerationJobController {
+
+    private final GenerationJobService jobService;
+
+    /**
+     * Constructor para inyección de dependencias.
+     *
+     * @param jobService servicio de trabajos de generación
+     */
+    public GenerationJobController(GenerationJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    /**
+     * Endpoint para enviar un trabajo de generación.
+     * POST /api/jobs
+     *
+     * @param request la solicitud de generación (misma forma que /api/generatePDF)
+     * @param authUser usuario autenticado inyectado por Spring Security
+     * @return ResponseEntity con el trabajo creado y código HTTP 202, con la cabecera Location,
+     *         o 429 con {@code Retry-After} si la cola de trabajos está llena
+     */
+    @PostMapping
+    public ResponseEntity<?> submitJob(@RequestBody GenerationRequest request,
+                                       @AuthenticationPrincipal User authUser) {
+        try {
+            GenerationJob job = jobService.submit(request, authUser);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/jobs/" + job.getId()))
+                    .body(job);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (NoSuchElementException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (RenderRejectedException e) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            return new ResponseEntity<>(e.getMessage(), headers, HttpStatus.TOO_MANY_REQUESTS);
+        }
+    }
+
+    /**
+     * Endpoint para consultar el estado de un trabajo.
+     * GET /api/jobs/{id}
+     *
+     * @param id identificador del trabajo
+     * @param authUser usuario autenticado inyectado por Spring Security
+     * @return ResponseEntity con el trabajo o mensaje de error
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(@PathVariable Long id,
+                                    @AuthenticationPrincipal User authUser) {
+        try {
+            return ResponseEntity.ok(jobService.findById(id, authUser));
+        } catch (NoSuchElementException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Endpoint para descargar el PDF de un trabajo completado.
+     * GET /api/jobs/{id}/result
+     *
+     * @param id identificador del trabajo
+     * @param authUser usuario autenticado inyectado por Spring Security
+     * @return ResponseEntity con el PDF, 409 si el trabajo no ha terminado o 404 si no existe
+     */
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> getJobResult(@PathVariable Long id,
+                                          @AuthenticationPrincipal User authUser) {
+        try {
+            byte[] pdfBytes = jobService.getResult(id, authUser);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentDispositionFormData("attachment", "trabajo_" + id + ".pdf");
+
+            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (NoSuchElementException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+}
@@ -3,18 +3,27 @@ package com.example.dinadocs.controllers;
 // import org.apache.tomcat.util.http.fileupload.ByteArrayOutputStream;
 // import org.jsoup.Jsoup;
 // import org.jsoup.nodes.Document;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 // import org.xhtmlrenderer.pdf.ITextRenderer;
 
 import com.example.dinadocs.services.PdfGenerationService;
+import com.example.dinadocs.services.RenderExecutor;
+import com.example.dinadocs.services.RenderRejectedException;
+import com.example.dinadocs.models.BatchGenerationRequest;
 import com.example.dinadocs.models.GenerationRequest;
+import com.example.dinadocs.models.Template;
+
+import java.util.NoSuchElementException;
 
 /**
  * Controlador REST para manejar peticiones de generación de PDF.
@@ -39,30 +48,145 @@ public class PdfController {
     /**
      * Endpoint para generar el PDF.
      * Recibe JSON, delega la lógica al servicio y devuelve el archivo binario.
+     * Si la cola de renderizado está llena responde 429 con la cabecera {@code Retry-After}.
+     *
+     * <p>El PDF se renderiza entero en un búfer reutilizable antes de empezar la respuesta, así
+     * que un fallo de renderizado sigue respondiendo 500 y se puede enviar {@code Content-Length};
+     * el búfer se escribe después en la respuesta sin copiarlo.
+     *
+     * <p>La respuesta lleva un {@code ETag} derivado de la versión de la plantilla y de los datos;
+     * si el cliente lo envía en {@code If-None-Match} se responde 304 sin volver a generar el PDF.
      *
      * @param request El DTO (GenerationRequest) mapeado desde el JSON del body.
-     * @return ResponseEntity con byte[] (El PDF) o un ResponseEntity de error.
+     * @param ifNoneMatch La cabecera {@code If-None-Match} (opcional).
+     * @return ResponseEntity con byte[] (El PDF), 304 o un ResponseEntity de error.
      */
     @PostMapping("/generatePDF")
-    public ResponseEntity<?> generateDocument(@RequestBody GenerationRequest request) {
+    public ResponseEntity<?> generateDocument(@RequestBody GenerationRequest request,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             // Generate the PDF using the service
-            byte[] pdfBytes = pdfService.generatePdf(request);
+            PdfGenerationService.RenderedPdf document = pdfService.generateDocument(request, ifNoneMatch);
 
             HttpHeaders headers = new HttpHeaders();
+            headers.setETag(document.etag());
+            // Documentos por usuario: solo cachés privadas, revalidando con el ETag
+            headers.setCacheControl(CacheControl.noCache().cachePrivate());
+            if (document.isNotModified()) {
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+            }
+
             headers.setContentType(MediaType.APPLICATION_PDF);
 
             String filename = request.getTemplateType() + "_generado.pdf";
             headers.setContentDispositionFormData("attachment", filename);
 
+            if (!document.isInMemory()) {
+                // Búfer recién renderizado o fichero de la caché en disco: se escribe tal cual en la
+                // respuesta y se libera después. El tamaño ya se conoce, así que si la conexión se
+                // corta a mitad el cliente detecta el cuerpo incompleto por el Content-Length.
+                headers.setContentLength(document.size());
+                StreamingResponseBody body = out -> {
+                    try (document) {
+                        document.writeTo(out);
+                    }
+                };
+                return new ResponseEntity<>(body, headers, HttpStatus.OK);
+            }
+            byte[] pdfBytes = document.content();
+
             return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
 
         } catch (IllegalArgumentException e) {
             return new ResponseEntity<>(e.getMessage().getBytes(), HttpStatus.BAD_REQUEST);
 
+        } catch (RenderRejectedException e) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            return new ResponseEntity<>(e.getMessage().getBytes(), headers, HttpStatus.TOO_MANY_REQUESTS);
+
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
-    
+
+    /**
+     * Endpoint para generar un lote de PDFs con una misma plantilla.
+     * Valida la solicitud, carga la plantilla y admite el lote antes de responder; después
+     * escribe en la respuesta un archivo ZIP con un PDF por fila de datos.
+     *
+     * @param request El DTO (BatchGenerationRequest) con la plantilla y las filas de datos.
+     * @return ResponseEntity con el ZIP en flujo, o un ResponseEntity de error.
+     */
+    @PostMapping("/generatePDF/batch")
+    public ResponseEntity<?> generateBatch(@RequestBody BatchGenerationRequest request) {
+        try {
+            Template template = pdfService.prepareBatch(request);
+            // Se admite antes de responder: un lote admitido ya no se rechaza a medias
+            RenderExecutor.Batch batch = pdfService.openBatch();
+
+            StreamingResponseBody body = out -> {
+                try (batch) {
+                    pdfService.writeBatchZip(template, request.getData(), batch, out);
+                }
+            };
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.setContentDispositionFormData("attachment", request.getTemplateType() + "_lote.zip");
+
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
+
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage().getBytes(), HttpStatus.BAD_REQUEST);
+
+        } catch (NoSuchElementException e) {
+            return new ResponseEntity<>(e.getMessage().getBytes(), HttpStatus.NOT_FOUND);
+
+        } catch (RenderRejectedException e) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            return new ResponseEntity<>(e.getMessage().getBytes(), headers, HttpStatus.TOO_MANY_REQUESTS);
+        }
+    }
+
+    /**
+     * Endpoint para generar un lote de documentos concatenados en un único PDF.
+     * Valida la solicitud, carga la plantilla y admite el lote antes de responder; después
+     * escribe en la respuesta el PDF fusionado, con los documentos en el orden de las filas.
+     *
+     * @param request El DTO (BatchGenerationRequest) con la plantilla y las filas de datos.
+     * @return ResponseEntity con el PDF en flujo, o un ResponseEntity de error.
+     */
+    @PostMapping("/generatePDF/merged")
+    public ResponseEntity<?> generateMerged(@RequestBody BatchGenerationRequest request) {
+        try {
+            Template template = pdfService.prepareBatch(request);
+            // Se admite antes de responder: un lote admitido ya no se rechaza a medias
+            RenderExecutor.Batch batch = pdfService.openBatch();
+
+            StreamingResponseBody body = out -> {
+                try (batch) {
+                    pdfService.writeMergedPdf(template, request.getData(), batch, out);
+                }
+            };
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentDispositionFormData("attachment", request.getTemplateType() + "_combinado.pdf");
+
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
+
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage().getBytes(), HttpStatus.BAD_REQUEST);
+
+        } catch (NoSuchElementException e) {
+            return new ResponseEntity<>(e.getMessage().getBytes(), HttpStatus.NOT_FOUND);
+
+        } catch (RenderRejectedException e) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            return new ResponseEntity<>(e.getMessage().getBytes(), headers, HttpStatus.TOO_MANY_REQUESTS);
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.example.dinadocs.controllers;
 
 import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateSummary;
 import com.example.dinadocs.models.User;
 import com.example.dinadocs.services.TemplateService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +21,9 @@ import java.util.List;
 @RequestMapping("/api/templates")
 public class TemplateController {
 
+    /** Cabecera con el cursor de la página siguiente del listado. */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private TemplateService templateService;
 
@@ -39,16 +43,29 @@ public class TemplateController {
     }
 
     /**
-     * Endpoint para listar plantillas (filtradas por rol).
-     * GET /api/templates
+     * Endpoint para listar plantillas (filtradas por rol), paginado por clave.
+     * GET /api/templates?after={id}&size={n}
+     *
+     * <p>Devuelve solo los metadatos de cada plantilla (ver {@link TemplateSummary});
+     * el contenido completo se obtiene con {@code GET /api/templates/{id}}. Si hay más
+     * plantillas, la cabecera {@code X-Next-Cursor} trae el valor de {@code after}
+     * para pedir la página siguiente.
      *
+     * @param after el último id de la página anterior (se omite en la primera)
+     * @param size el número de plantillas por página (entre 1 y 200)
      * @param authUser usuario autenticado inyectado por Spring Security
-     * @return ResponseEntity con lista de plantillas accesibles
+     * @return ResponseEntity con la página de resúmenes de plantillas accesibles
      */
     @GetMapping
-    public ResponseEntity<List<Template>> getAllTemplates(@AuthenticationPrincipal User authUser) {
-        List<Template> templates = templateService.findAllByRole(authUser);
-        return ResponseEntity.ok(templates);
+    public ResponseEntity<List<TemplateSummary>> getAllTemplates(@RequestParam(required = false) Long after,
+                                                                 @RequestParam(defaultValue = "50") int size,
+                                                                 @AuthenticationPrincipal User authUser) {
+        TemplateService.SummaryPage page = templateService.findSummariesByRole(authUser, after, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+        return response.body(page.items());
     }
 
     /**
@@ -90,6 +107,8 @@ public class TemplateController {
             return ResponseEntity.ok(updatedTemplate);
         } catch (AccessDeniedException e) {
             return new ResponseEntity<>("Acceso denegado", HttpStatus.FORBIDDEN);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
@@ -116,4 +135,16 @@ public class TemplateController {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
+
+    /**
+     * Traduce los errores de validación de plantillas (por ejemplo, secciones
+     * Mustache mal formadas al crear una plantilla) a una respuesta HTTP 400.
+     *
+     * @param e la excepción de validación
+     * @return ResponseEntity con el mensaje de error y código HTTP 400
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidTemplate(IllegalArgumentException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.example.dinadocs.models;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para la generación por lotes: una plantilla y una lista de filas de datos,
+ * cada una de las cuales produce un PDF.
+ *
+ * @see com.example.dinadocs.services.PdfGenerationService#writeBatchZip
+ */
+@Data
+@NoArgsConstructor
+public class BatchGenerationRequest {
+
+    /**
+     * El nombre de la plantilla a utilizar para todas las filas.
+     * @see com.example.dinadocs.models.Template#name
+     */
+    private String templateType;
+
+    /**
+     * Número de la versión de la plantilla a utilizar (opcional).
+     * Si es null se usa la versión actual.
+     * @see GenerationRequest#getTemplateVersion()
+     */
+    private Integer templateVersion;
+
+    /**
+     * Filas de datos; cada mapa tiene la misma forma que
+     * {@link GenerationRequest#getData()}.
+     */
+    private List<Map<String, Object>> data;
+
+}
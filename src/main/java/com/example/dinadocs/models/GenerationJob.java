@@ -0,0 +1,199 @@
+package com.example.dinadocs.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Entidad JPA que representa un trabajo de generación asíncrona de PDF.
+ * Guarda la solicitud original para que el trabajo pueda reanudarse tras un reinicio;
+ * el PDF resultante se guarda aparte en {@link GenerationJobResult} para que consultar
+ * el estado no cargue el documento.
+ *
+ * <p>Estructura de la tabla en base de datos:
+ * <ul>
+ *   <li>Tabla: trabajos_generacion</li>
+ *   <li>Relación ManyToOne con User (owner)</li>
+ *   <li>Datos de la solicitud como JSON en la columna data</li>
+ * </ul>
+ *
+ * @see JobStatus
+ * @see com.example.dinadocs.services.GenerationJobService
+ */
+@Entity
+@Table(name = "trabajos_generacion")
+public class GenerationJob {
+
+    /**
+     * Identificador único del trabajo (clave primaria).
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Nombre de la plantilla a utilizar.
+     */
+    @Column(name = "template_type", nullable = false)
+    private String templateType;
+
+    /**
+     * Número de la versión de la plantilla, fijado al enviar el trabajo para que una
+     * modificación posterior de la plantilla no cambie el resultado.
+     */
+    @Column(name = "template_version")
+    private Integer templateVersion;
+
+    /**
+     * Datos a fusionar con la plantilla, almacenados como JSON.
+     */
+    @JsonIgnore
+    @Convert(converter = JobDataConverter.class)
+    @Column(columnDefinition = "TEXT")
+    private Map<String, Object> data;
+
+    /**
+     * Estado actual del trabajo.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private JobStatus status;
+
+    /**
+     * Motivo del fallo, si el trabajo terminó en {@link JobStatus#FALLIDO}.
+     */
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
+    /**
+     * Usuario que envió el trabajo; solo él (o un ADMIN) puede consultarlo.
+     */
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "owner_id")
+    private User owner;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "started_at")
+    private Instant startedAt;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    /**
+     * Constructor por defecto requerido por JPA.
+     */
+    public GenerationJob() {
+    }
+
+    /**
+     * Crea un trabajo pendiente a partir de una solicitud de generación.
+     *
+     * @param request la solicitud con el tipo de plantilla y los datos
+     * @param owner el usuario que envía el trabajo
+     */
+    public GenerationJob(GenerationRequest request, User owner) {
+        this.templateType = request.getTemplateType();
+        this.templateVersion = request.getTemplateVersion();
+        this.data = request.getData();
+        this.owner = owner;
+        this.status = JobStatus.PENDIENTE;
+        this.createdAt = Instant.now();
+    }
+
+    /**
+     * Reconstruye la solicitud de generación original.
+     * @return la solicitud con el tipo de plantilla, su versión y los datos del trabajo
+     */
+    public GenerationRequest toRequest() {
+        GenerationRequest request = new GenerationRequest();
+        request.setTemplateType(templateType);
+        request.setTemplateVersion(templateVersion);
+        request.setData(data);
+        return request;
+    }
+
+    /** @return el ID del trabajo */
+    public Long getId() {
+        return id;
+    }
+    /** @param id el ID a asignar */
+    public void setId(Long id) {
+        this.id = id;
+    }
+    /** @return el nombre de la plantilla */
+    public String getTemplateType() {
+        return templateType;
+    }
+    /** @param templateType el nombre de la plantilla a asignar */
+    public void setTemplateType(String templateType) {
+        this.templateType = templateType;
+    }
+    /** @return el número de la versión de la plantilla, o null para la actual */
+    public Integer getTemplateVersion() {
+        return templateVersion;
+    }
+    /** @param templateVersion el número de la versión de la plantilla a asignar */
+    public void setTemplateVersion(Integer templateVersion) {
+        this.templateVersion = templateVersion;
+    }
+    /** @return los datos a fusionar */
+    public Map<String, Object> getData() {
+        return data;
+    }
+    /** @param data los datos a asignar */
+    public void setData(Map<String, Object> data) {
+        this.data = data;
+    }
+    /** @return el estado del trabajo */
+    public JobStatus getStatus() {
+        return status;
+    }
+    /** @param status el estado a asignar */
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+    /** @return el motivo del fallo, o null */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+    /** @param errorMessage el motivo del fallo a asignar */
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+    /** @return el usuario que envió el trabajo */
+    public User getOwner() {
+        return owner;
+    }
+    /** @param owner el usuario a asignar */
+    public void setOwner(User owner) {
+        this.owner = owner;
+    }
+    /** @return el instante en que se envió el trabajo */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    /** @param createdAt el instante de envío a asignar */
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+    /** @return el instante en que empezó la generación, o null */
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+    /** @param startedAt el instante de inicio a asignar */
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+    /** @return el instante en que terminó la generación, o null */
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+    /** @param completedAt el instante de finalización a asignar */
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+}
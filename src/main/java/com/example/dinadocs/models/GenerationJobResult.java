@@ -0,0 +1,66 @@
+package com.example.dinadocs.models;
+
+import jakarta.persistence.*;
+
+/**
+ * Entidad JPA con el PDF generado por un trabajo asíncrono.
+ * Comparte la clave primaria con {@link GenerationJob}.
+ *
+ * <p>Estructura de la tabla en base de datos:
+ * <ul>
+ *   <li>Tabla: trabajos_generacion_resultados</li>
+ *   <li>Columna binaria content con el PDF</li>
+ * </ul>
+ */
+@Entity
+@Table(name = "trabajos_generacion_resultados")
+public class GenerationJobResult {
+
+    /** Tamaño máximo del PDF almacenado (100 MB). */
+    private static final int MAX_CONTENT_LENGTH = 100 * 1024 * 1024;
+
+    /**
+     * Identificador del trabajo al que pertenece el resultado.
+     */
+    @Id
+    @Column(name = "job_id")
+    private Long jobId;
+
+    /**
+     * El PDF generado.
+     */
+    @Column(nullable = false, length = MAX_CONTENT_LENGTH)
+    private byte[] content;
+
+    /**
+     * Constructor por defecto requerido por JPA.
+     */
+    public GenerationJobResult() {
+    }
+
+    /**
+     * @param jobId el ID del trabajo
+     * @param content el PDF generado
+     */
+    public GenerationJobResult(Long jobId, byte[] content) {
+        this.jobId = jobId;
+        this.content = content;
+    }
+
+    /** @return el ID del trabajo */
+    public Long getJobId() {
+        return jobId;
+    }
+    /** @param jobId el ID del trabajo a asignar */
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+    /** @return el PDF generado */
+    public byte[] getContent() {
+        return content;
+    }
+    /** @param content el PDF a asignar */
+    public void setContent(byte[] content) {
+        this.content = content;
+    }
+}
@@ -24,6 +24,13 @@ public class GenerationRequest {
      */
     private String templateType;
 
+    /**
+     * Número de la versión de la plantilla a utilizar (opcional).
+     * Si es null se usa la versión actual.
+     * @see com.example.dinadocs.models.TemplateVersion
+     */
+    private Integer templateVersion;
+
     /**
      * Mapa de pares clave-valor que contienen los datos dinámicos.
      * La clave (String) es el nombre del placeholder (ej: "nombre_cliente").
@@ -0,0 +1,21 @@
+package com.example.dinadocs.models;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.persistence.Converter;
+
+import java.util.Map;
+
+/**
+ * Convertidor JPA que almacena los datos de un trabajo de generación
+ * como JSON en una sola columna de texto.
+ *
+ * @see GenerationJob
+ */
+@Converter
+public class JobDataConverter extends JsonAttributeConverter<Map<String, Object>> {
+
+    public JobDataConverter() {
+        super(new TypeReference<>() {
+        });
+    }
+}
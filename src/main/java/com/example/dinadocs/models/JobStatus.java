@@ -0,0 +1,28 @@
+package com.example.dinadocs.models;
+
+/**
+ * Estados de un trabajo de generación asíncrona de PDF.
+ *
+ * @see GenerationJob
+ */
+public enum JobStatus {
+    /**
+     * En cola, pendiente de que un trabajador lo procese.
+     */
+    PENDIENTE,
+
+    /**
+     * Un trabajador lo está generando.
+     */
+    EN_PROCESO,
+
+    /**
+     * El PDF se generó y puede descargarse.
+     */
+    COMPLETADO,
+
+    /**
+     * La generación falló; el motivo está en el mensaje de error.
+     */
+    FALLIDO
+}
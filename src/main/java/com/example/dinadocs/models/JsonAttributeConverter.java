@@ -0,0 +1,52 @@
+package com.example.dinadocs.models;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.AttributeConverter;
+
+/**
+ * Base para los convertidores JPA que almacenan estructuras derivadas de la plantilla
+ * (esquema de placeholders, trie de validación, etc.) como JSON en una columna de texto.
+ *
+ * @param <T> tipo del atributo de la entidad
+ * @see PlaceholderSchemaConverter
+ * @see PlaceholderTrieConverter
+ */
+public abstract class JsonAttributeConverter<T> implements AttributeConverter<T, String> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final TypeReference<T> type;
+
+    /**
+     * @param type referencia al tipo del atributo para la deserialización
+     */
+    protected JsonAttributeConverter(TypeReference<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(T attribute) {
+        if (attribute == null) {
+            return null;
+        }
+        try {
+            return MAPPER.writeValueAsString(attribute);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el atributo a JSON", e);
+        }
+    }
+
+    @Override
+    public T convertToEntityAttribute(String json) {
+        if (json == null || json.isBlank()) {
+            return null;
+        }
+        try {
+            return MAPPER.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo leer el atributo JSON", e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.dinadocs.models;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.persistence.Converter;
+
+import java.util.List;
+
+/**
+ * Convertidor JPA que almacena la lista aplanada de placeholders de una plantilla
+ * como JSON en una sola columna de texto.
+ *
+ * @see Template#getPlaceholders()
+ */
+@Converter
+public class PlaceholderListConverter extends JsonAttributeConverter<List<String>> {
+
+    public PlaceholderListConverter() {
+        super(new TypeReference<>() {
+        });
+    }
+}
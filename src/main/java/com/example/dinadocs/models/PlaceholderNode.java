@@ -0,0 +1,118 @@
+package com.example.dinadocs.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nodo del esquema estructurado de placeholders de una plantilla.
+ * Representa un campo simple o una sección Mustache (normal o invertida)
+ * con sus placeholders anidados.
+ *
+ * <p>Ejemplo: para {@code {{cliente}} {{#conceptos}}{{descripcion}}{{/conceptos}}}
+ * el esquema contiene un nodo FIELD "cliente" y un nodo SECTION "conceptos"
+ * con un hijo FIELD "descripcion".
+ *
+ * @see com.example.dinadocs.services.TemplateProcessor#scanPlaceholders(String)
+ * @see Template#getPlaceholderSchema()
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class PlaceholderNode {
+
+    /**
+     * Tipo de placeholder.
+     */
+    public enum Type {
+        /** Campo simple: {@code {{nombre}}}, {@code {{{nombre}}}} o {@code {{&nombre}}}. */
+        FIELD,
+        /** Sección: {@code {{#nombre}}...{{/nombre}}} (lista o condicional). */
+        SECTION,
+        /** Sección invertida: {@code {{^nombre}}...{{/nombre}}} (se muestra si el dato falta o está vacío). */
+        INVERTED_SECTION
+    }
+
+    /**
+     * Nombre del placeholder tal como aparece en la plantilla (sin prefijos #, ^ o /).
+     */
+    private String name;
+
+    /**
+     * Tipo de placeholder.
+     */
+    private Type type;
+
+    /**
+     * Placeholders anidados (solo para secciones), sin duplicados y en orden de aparición.
+     */
+    private List<PlaceholderNode> children = new ArrayList<>();
+
+    /**
+     * Crea un nodo sin hijos.
+     *
+     * @param name nombre del placeholder
+     * @param type tipo del placeholder
+     */
+    public PlaceholderNode(String name, Type type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * Indica si el nodo es una sección (normal o invertida).
+     *
+     * @return true si el nodo es una sección
+     */
+    @JsonIgnore
+    public boolean isSection() {
+        return type == Type.SECTION || type == Type.INVERTED_SECTION;
+    }
+
+    /**
+     * Aplana el esquema al formato de lista usado en {@link Template#getPlaceholders()}:
+     * las secciones se representan con sus marcadores de apertura ({@code #x} o {@code ^x})
+     * y de cierre ({@code /x}) alrededor de sus hijos.
+     *
+     * @param nodes los nodos de primer nivel del esquema
+     * @return la lista aplanada de placeholders
+     */
+    public static List<String> flatten(List<PlaceholderNode> nodes) {
+        List<String> result = new ArrayList<>();
+        flatten(nodes, result);
+        return result;
+    }
+
+    /**
+     * Cuenta los placeholders del esquema (campos y secciones, incluidos los anidados),
+     * es decir, las claves distintas que pueden aparecer en los datos.
+     *
+     * @param nodes los nodos de primer nivel del esquema
+     * @return el número de placeholders
+     */
+    public static int count(List<PlaceholderNode> nodes) {
+        int count = 0;
+        for (PlaceholderNode node : nodes) {
+            count += 1 + count(node.getChildren());
+        }
+        return count;
+    }
+
+    private static void flatten(List<PlaceholderNode> nodes, List<String> result) {
+        for (PlaceholderNode node : nodes) {
+            switch (node.getType()) {
+                case SECTION -> result.add("#" + node.getName());
+                case INVERTED_SECTION -> result.add("^" + node.getName());
+                default -> result.add(node.getName());
+            }
+            if (node.isSection()) {
+                flatten(node.getChildren(), result);
+                result.add("/" + node.getName());
+            }
+        }
+    }
+}
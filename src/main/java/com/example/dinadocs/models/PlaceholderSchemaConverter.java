@@ -0,0 +1,21 @@
+package com.example.dinadocs.models;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.persistence.Converter;
+
+import java.util.List;
+
+/**
+ * Convertidor JPA que almacena el esquema de placeholders de una plantilla
+ * como JSON en una sola columna de texto.
+ *
+ * @see PlaceholderNode
+ */
+@Converter
+public class PlaceholderSchemaConverter extends JsonAttributeConverter<List<PlaceholderNode>> {
+
+    public PlaceholderSchemaConverter() {
+        super(new TypeReference<>() {
+        });
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.dinadocs.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trie de claves requeridas por una plantilla, precalculado al guardarla a partir de
+ * su esquema de placeholders. Cada nodo es un segmento de clave ({@code cliente.nombre}
+ * se divide en {@code cliente} → {@code nombre}) y las secciones agrupan las claves
+ * que deben existir en cada elemento de la lista (o en el objeto) de la sección.
+ *
+ * <p>Permite validar los datos de una solicitud en un único recorrido lineal:
+ * cada valor de los datos se visita una sola vez por cada nodo del trie que lo referencia.
+ * Las secciones invertidas no aportan claves porque su contenido solo se muestra
+ * cuando el dato falta.
+ *
+ * @see PlaceholderNode
+ * @see Template#getValidationTrie()
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class PlaceholderTrie {
+
+    /**
+     * Indica si la clave abre una sección ({@code {{#clave}}}).
+     */
+    private boolean section;
+
+    /**
+     * Indica si el segmento sigue a un punto ({@code nombre} en {@code cliente.nombre}).
+     * Igual que en Mustache, solo el primer segmento de una clave se busca en los contextos
+     * que la envuelven; los siguientes se buscan únicamente en el valor del segmento anterior.
+     */
+    private boolean dotted;
+
+    /**
+     * Segmentos de clave hijos, en orden de aparición en la plantilla.
+     */
+    private Map<String, PlaceholderTrie> children = new LinkedHashMap<>();
+
+    /**
+     * Construye el trie de validación a partir del esquema estructurado de placeholders.
+     *
+     * @param schema los nodos de primer nivel del esquema
+     * @return la raíz del trie
+     */
+    public static PlaceholderTrie fromSchema(List<PlaceholderNode> schema) {
+        PlaceholderTrie root = new PlaceholderTrie();
+        if (schema != null) {
+            root.insertAll(schema);
+        }
+        return root;
+    }
+
+    private void insertAll(List<PlaceholderNode> nodes) {
+        for (PlaceholderNode node : nodes) {
+            if (node.getType() == PlaceholderNode.Type.INVERTED_SECTION || ".".equals(node.getName())) {
+                continue;
+            }
+            PlaceholderTrie target = insert(node.getName());
+            if (node.getType() == PlaceholderNode.Type.SECTION) {
+                target.section = true;
+                target.insertAll(node.getChildren());
+            }
+        }
+    }
+
+    private PlaceholderTrie insert(String name) {
+        PlaceholderTrie current = this;
+        boolean first = true;
+        for (String segment : name.split("\\.")) {
+            if (!segment.isEmpty()) {
+                current = current.children.computeIfAbsent(segment, key -> new PlaceholderTrie());
+                current.dotted |= !first;
+                first = false;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Recorre los datos una sola vez y devuelve las rutas de las claves que faltan o son nulas.
+     * Igual que en Mustache, una clave dentro de una sección también se busca en los
+     * contextos que la envuelven, pero solo su primer segmento: en {@code a.b}, {@code b}
+     * se busca únicamente dentro de {@code a}. Las rutas se devuelven sin índices de lista y sin duplicados
+     * (por ejemplo {@code conceptos.descripcion}).
+     *
+     * @param data los datos de la solicitud
+     * @return las rutas faltantes, en orden de aparición
+     */
+    public Set<String> findMissing(Map<String, Object> data) {
+        Set<String> missing = new LinkedHashSet<>();
+        walk(this, data, new ArrayDeque<>(), "", missing);
+        return missing;
+    }
+
+    private static void walk(PlaceholderTrie node, Map<?, ?> scope, Deque<Map<?, ?>> outer,
+                             String prefix, Set<String> missing) {
+        for (Map.Entry<String, PlaceholderTrie> entry : node.children.entrySet()) {
+            String path = prefix + entry.getKey();
+            PlaceholderTrie child = entry.getValue();
+            Object value = child.dotted ? scope.get(entry.getKey()) : lookup(entry.getKey(), scope, outer);
+            if (value == null) {
+                missing.add(path);
+                continue;
+            }
+            if (child.children.isEmpty()) {
+                continue;
+            }
+            if (value instanceof Map<?, ?> map) {
+                outer.push(scope);
+                walk(child, map, outer, path + ".", missing);
+                outer.pop();
+            } else if (value instanceof Collection<?> items) {
+                outer.push(scope);
+                for (Object item : items) {
+                    if (item instanceof Map<?, ?> itemMap) {
+                        walk(child, itemMap, outer, path + ".", missing);
+                    }
+                }
+                outer.pop();
+            } else {
+                // Un valor simple no tiene claves propias: las que le siguen con punto faltan
+                PlaceholderTrie undotted = new PlaceholderTrie();
+                for (Map.Entry<String, PlaceholderTrie> nested : child.children.entrySet()) {
+                    if (nested.getValue().dotted || !child.section) {
+                        missing.add(path + "." + nested.getKey());
+                    } else {
+                        undotted.children.put(nested.getKey(), nested.getValue());
+                    }
+                }
+                // Sección condicional: su contenido se evalúa en el mismo contexto
+                if (!undotted.children.isEmpty() && !Boolean.FALSE.equals(value)) {
+                    walk(undotted, scope, outer, prefix, missing);
+                }
+            }
+        }
+    }
+
+    private static Object lookup(String key, Map<?, ?> scope, Deque<Map<?, ?>> outer) {
+        Object value = scope.get(key);
+        if (value != null) {
+            return value;
+        }
+        Iterator<Map<?, ?>> it = outer.iterator();
+        while (it.hasNext()) {
+            value = it.next().get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indica si el trie no contiene claves.
+     *
+     * @return true si no hay claves que validar
+     */
+    @JsonIgnore
+    public boolean isEmpty() {
+        return children.isEmpty();
+    }
+}
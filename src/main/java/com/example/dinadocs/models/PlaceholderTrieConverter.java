@@ -0,0 +1,19 @@
+package com.example.dinadocs.models;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.persistence.Converter;
+
+/**
+ * Convertidor JPA que almacena el trie de validación de una plantilla
+ * como JSON en una sola columna de texto.
+ *
+ * @see PlaceholderTrie
+ */
+@Converter
+public class PlaceholderTrieConverter extends JsonAttributeConverter<PlaceholderTrie> {
+
+    public PlaceholderTrieConverter() {
+        super(new TypeReference<>() {
+        });
+    }
+}
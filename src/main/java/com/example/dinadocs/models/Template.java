@@ -1,7 +1,9 @@
 package com.example.dinadocs.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -12,8 +14,10 @@ import java.util.List;
  * <p>Estructura de la tabla en base de datos:
  * <ul>
  *   <li>Tabla: plantillas</li>
+ *   <li>Clave única name_key y slug, derivados del nombre ({@link TemplateNames})</li>
  *   <li>Relación ManyToOne con User (owner)</li>
- *   <li>Colección de placeholders en tabla auxiliar template_placeholders</li>
+ *   <li>Placeholders, esquema y trie como JSON en la misma fila (sin tablas auxiliares)</li>
+ *   <li>Relación ManyToOne con la versión actual ({@link TemplateVersion})</li>
  * </ul>
  * 
  * @author DynaDocs Team
@@ -23,7 +27,9 @@ import java.util.List;
  * @see com.example.dinadocs.services.TemplateService
  */
 @Entity
-@Table(name = "plantillas")
+@Table(name = "plantillas", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_plantillas_name_key", columnNames = "name_key")
+})
 public class Template {
 
     /**
@@ -40,6 +46,27 @@ public class Template {
     @Column(nullable = false)
     private String name;
 
+    /**
+     * Clave normalizada del nombre (sin acentos, en minúsculas), única e indexada.
+     * Es la que se busca al resolver la plantilla de una solicitud de generación.
+     * Se calcula en {@link #setName(String)}.
+     *
+     * @see TemplateNames#key(String)
+     */
+    @JsonIgnore
+    @Column(name = "name_key", nullable = false)
+    private String nameKey;
+
+    /**
+     * Forma del nombre apta para URLs. Se calcula en {@link #setName(String)}; no es única
+     * (la plantilla se resuelve por {@link #nameKey}), así que nombres que solo difieren en la
+     * puntuación pueden compartirla.
+     *
+     * @see TemplateNames#slug(String)
+     */
+    @Column(nullable = false)
+    private String slug;
+
     /**
      * Contenido HTML de la plantilla con placeholders Mustache.
      * Se almacena como TEXT para permitir contenido extenso.
@@ -47,6 +74,39 @@ public class Template {
     @Column(columnDefinition = "TEXT")
     private String content;
 
+    /**
+     * Forma compilada de la plantilla: el contenido normalizado a XHTML bien formado,
+     * con las etiquetas Mustache intactas. Se genera al guardar o actualizar la plantilla
+     * y es el contenido que se usa al generar documentos.
+     *
+     * @see com.example.dinadocs.services.TemplateProcessor#compileTemplate(String)
+     */
+    @JsonIgnore
+    @Column(name = "compiled_content", columnDefinition = "TEXT")
+    private String compiledContent;
+
+    /**
+     * Indica si {@link #compiledContent} es XHTML bien formado que solo inserta valores
+     * escapados. En ese caso el resultado de la fusión se lee directamente como XML,
+     * sin pasar por jsoup. Se calcula al guardar la plantilla.
+     *
+     * @see com.example.dinadocs.services.TemplateProcessor#isXhtmlReady(String)
+     */
+    @JsonIgnore
+    @Column(name = "xhtml_ready")
+    private boolean xhtmlReady;
+
+    /**
+     * Nombre del motor con el que se renderiza la plantilla: el motor ligero si solo usa
+     * las etiquetas y estilos que admite, o el completo en otro caso. Se elige al guardar
+     * la plantilla; si es null se usa el motor completo.
+     *
+     * @see com.example.dinadocs.services.RenderEngines#select(Template)
+     */
+    @JsonIgnore
+    @Column(name = "render_engine")
+    private String renderEngine;
+
     /**
      * Usuario propietario de la plantilla.
      * Relación ManyToOne con carga LAZY.
@@ -69,17 +129,67 @@ public class Template {
      * Lista de identificadores (placeholders) que la plantilla requiere
      * para ser completada. Ejemplos: "nombre_cliente", "fecha", "total".
      * 
-     * <p>Los placeholders se extraen automáticamente del contenido HTML
-     * usando expresiones regulares que buscan patrones {{placeholder}}.
-     * Se almacenan en una tabla auxiliar (template_placeholders).
+     * <p>Es la vista aplanada de {@link #placeholderSchema}: las secciones aparecen
+     * como "#x" / "^x" ... "/x". Se almacenan como JSON en la propia fila, de modo que
+     * listar plantillas no lanza una consulta adicional por cada una.
      * 
-     * @see com.example.dinadocs.services.TemplateService#extractPlaceholders(String)
+     * @see com.example.dinadocs.services.TemplateProcessor#extractPlaceholders(String)
      */
-    @ElementCollection
-    @CollectionTable(name = "template_placeholders", joinColumns = @JoinColumn(name = "template_id"))
-    @Column(name = "placeholder")
+    @Convert(converter = PlaceholderListConverter.class)
+    @Column(name = "placeholders", columnDefinition = "TEXT")
     private List<String> placeholders;
 
+    /**
+     * Esquema estructurado de placeholders: campos, secciones (listas o condicionales),
+     * secciones invertidas y su anidamiento. Se genera al guardar la plantilla con un
+     * único recorrido del contenido y se almacena como JSON en la misma fila.
+     *
+     * @see PlaceholderNode
+     * @see com.example.dinadocs.services.TemplateProcessor#scanPlaceholders(String)
+     */
+    @Convert(converter = PlaceholderSchemaConverter.class)
+    @Column(name = "placeholder_schema", columnDefinition = "TEXT")
+    private List<PlaceholderNode> placeholderSchema;
+
+    /**
+     * Trie de claves requeridas, derivado de {@link #placeholderSchema} al guardar la plantilla.
+     * Permite validar los datos de una solicitud en un único recorrido lineal.
+     *
+     * @see PlaceholderTrie
+     */
+    @JsonIgnore
+    @Convert(converter = PlaceholderTrieConverter.class)
+    @Column(name = "validation_trie", columnDefinition = "TEXT")
+    private PlaceholderTrie validationTrie;
+
+    /**
+     * Número de placeholders del esquema, calculado al guardar la plantilla.
+     * Permite listar las plantillas sin cargar sus placeholders.
+     *
+     * @see PlaceholderNode#count(List)
+     */
+    @JsonIgnore
+    @Column(name = "placeholder_count", nullable = false)
+    private int placeholderCount;
+
+    /**
+     * Fecha de la última modificación. Se actualiza automáticamente al crear
+     * o modificar la plantilla.
+     */
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    /**
+     * Versión inmutable con el contenido actual de la plantilla. Se crea una nueva cada
+     * vez que cambia el contenido compilado.
+     *
+     * @see com.example.dinadocs.services.TemplateService
+     */
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "current_version_id")
+    private TemplateVersion currentVersion;
+
     /**
      * Constructor por defecto requerido por JPA.
      */
@@ -87,6 +197,63 @@ public class Template {
 
     }
 
+    /**
+     * Crea una copia desacoplada de la sesión JPA para compartirla entre solicitudes
+     * (ver {@link com.example.dinadocs.services.TemplateSnapshotCache}). Las listas de la
+     * copia son inmutables, el propietario solo conserva su id y la versión actual es una
+     * referencia sin contenido ({@link TemplateVersion#reference()}). Debe llamarse con la
+     * sesión abierta, porque inicializa la versión actual.
+     *
+     * @return la copia, que no debe modificarse
+     */
+    public Template snapshot() {
+        Template copy = new Template();
+        copy.id = id;
+        copy.name = name;
+        copy.nameKey = nameKey;
+        copy.slug = slug;
+        copy.content = content;
+        copy.compiledContent = compiledContent;
+        copy.xhtmlReady = xhtmlReady;
+        copy.renderEngine = renderEngine;
+        copy.isPublic = isPublic;
+        copy.placeholders = placeholders == null ? null : List.copyOf(placeholders);
+        copy.placeholderSchema = placeholderSchema == null ? null : List.copyOf(placeholderSchema);
+        copy.validationTrie = validationTrie;
+        copy.placeholderCount = placeholderCount;
+        copy.updatedAt = updatedAt;
+        if (owner != null) {
+            User ownerRef = new User();
+            ownerRef.setId(owner.getId());
+            copy.owner = ownerRef;
+        }
+        if (currentVersion != null) {
+            copy.currentVersion = currentVersion.reference();
+        }
+        return copy;
+    }
+
+    /**
+     * Crea una copia de la plantilla con el contenido de otra de sus versiones. Los metadatos
+     * (nombre, propietario, visibilidad) son los de esta copia.
+     *
+     * @param version la versión a usar
+     * @return la copia, que no debe modificarse
+     */
+    public Template atVersion(TemplateVersion version) {
+        Template copy = snapshot();
+        copy.content = version.getContent();
+        copy.compiledContent = version.getCompiledContent();
+        copy.xhtmlReady = version.isXhtmlReady();
+        copy.renderEngine = version.getRenderEngine();
+        copy.placeholderSchema = version.getPlaceholderSchema() == null ? null : List.copyOf(version.getPlaceholderSchema());
+        copy.placeholders = copy.placeholderSchema == null ? null : List.copyOf(PlaceholderNode.flatten(copy.placeholderSchema));
+        copy.validationTrie = version.getValidationTrie();
+        copy.placeholderCount = copy.placeholderSchema == null ? 0 : PlaceholderNode.count(copy.placeholderSchema);
+        copy.currentVersion = version.reference();
+        return copy;
+    }
+
     /**
      * Obtiene el ID de la plantilla.
      * @return el identificador único
@@ -117,6 +284,24 @@ public class Template {
      */
     public void setName(String name) {
         this.name = name;
+        this.nameKey = TemplateNames.key(name);
+        this.slug = TemplateNames.slug(name);
+    }
+
+    /**
+     * Obtiene la clave normalizada del nombre.
+     * @return la clave, derivada del nombre
+     */
+    public String getNameKey() {
+        return nameKey;
+    }
+
+    /**
+     * Obtiene el slug de la plantilla.
+     * @return el slug, derivado del nombre
+     */
+    public String getSlug() {
+        return slug;
     }
     
     /**
@@ -135,6 +320,22 @@ public class Template {
         this.content = content;
     }
     
+    /**
+     * Obtiene la forma compilada (XHTML normalizado) de la plantilla.
+     * @return el contenido compilado, o null si aún no se ha compilado
+     */
+    public String getCompiledContent() {
+        return compiledContent;
+    }
+
+    /**
+     * Establece la forma compilada de la plantilla.
+     * @param compiledContent el contenido normalizado a XHTML
+     */
+    public void setCompiledContent(String compiledContent) {
+        this.compiledContent = compiledContent;
+    }
+
     /**
      * Obtiene el usuario propietario de la plantilla.
      * @return el usuario owner
@@ -182,4 +383,135 @@ public class Template {
     public void setPlaceholders(List<String> placeholders) {
         this.placeholders = placeholders;
     }
-}
\ No newline at end of file
+
+    /**
+     * Obtiene el esquema estructurado de placeholders.
+     * @return los nodos de primer nivel del esquema
+     */
+    public List<PlaceholderNode> getPlaceholderSchema() {
+        return placeholderSchema;
+    }
+
+    /**
+     * Establece el esquema estructurado de placeholders.
+     * @param placeholderSchema los nodos de primer nivel del esquema
+     */
+    public void setPlaceholderSchema(List<PlaceholderNode> placeholderSchema) {
+        this.placeholderSchema = placeholderSchema;
+    }
+
+    /**
+     * Obtiene el trie de validación precalculado.
+     * @return el trie de claves requeridas
+     */
+    public PlaceholderTrie getValidationTrie() {
+        return validationTrie;
+    }
+
+    /**
+     * Establece el trie de validación precalculado.
+     * @param validationTrie el trie de claves requeridas
+     */
+    public void setValidationTrie(PlaceholderTrie validationTrie) {
+        this.validationTrie = validationTrie;
+    }
+
+    /**
+     * Indica si la plantilla compilada puede leerse directamente como XHTML.
+     * @return true si la plantilla admite la ruta rápida sin jsoup
+     */
+    public boolean isXhtmlReady() {
+        return xhtmlReady;
+    }
+
+    /**
+     * Marca si la plantilla compilada puede leerse directamente como XHTML.
+     * @param xhtmlReady true si la plantilla admite la ruta rápida sin jsoup
+     */
+    public void setXhtmlReady(boolean xhtmlReady) {
+        this.xhtmlReady = xhtmlReady;
+    }
+
+    /**
+     * Obtiene el motor de renderizado elegido al guardar la plantilla.
+     * @return el nombre del motor, o null si aún no se ha elegido
+     */
+    public String getRenderEngine() {
+        return renderEngine;
+    }
+
+    /**
+     * Establece el motor de renderizado de la plantilla.
+     * @param renderEngine el nombre del motor
+     */
+    public void setRenderEngine(String renderEngine) {
+        this.renderEngine = renderEngine;
+    }
+
+    /**
+     * Obtiene el número de placeholders del esquema.
+     * @return el número de campos y secciones
+     */
+    public int getPlaceholderCount() {
+        return placeholderCount;
+    }
+
+    /**
+     * Establece el número de placeholders del esquema.
+     * @param placeholderCount el número de campos y secciones
+     */
+    public void setPlaceholderCount(int placeholderCount) {
+        this.placeholderCount = placeholderCount;
+    }
+
+    /**
+     * Obtiene la fecha de la última modificación.
+     * @return la fecha, o null si la plantilla no se ha guardado
+     */
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Establece la fecha de la última modificación.
+     * @param updatedAt la fecha
+     */
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Obtiene la versión actual de la plantilla.
+     * @return la versión actual, o null si la plantilla aún no tiene versiones
+     */
+    public TemplateVersion getCurrentVersion() {
+        return currentVersion;
+    }
+
+    /**
+     * Establece la versión actual de la plantilla.
+     * @param currentVersion la versión a marcar como actual
+     */
+    public void setCurrentVersion(TemplateVersion currentVersion) {
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * Número de la versión actual, que el cliente puede indicar al generar un documento
+     * para fijar esa versión.
+     * @return el número de la versión actual, o null si aún no tiene versiones
+     */
+    @JsonProperty("version")
+    public Integer getVersionNumber() {
+        return currentVersion == null ? null : currentVersion.getVersionNumber();
+    }
+
+    /**
+     * Actualiza la fecha de modificación antes de insertar o actualizar la fila.
+     */
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        this.updatedAt = Instant.now();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.dinadocs.models;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de los nombres de plantilla.
+ *
+ * <p>La clave de nombre ({@link #key(String)}) es la que se usa para resolver la plantilla de
+ * una solicitud de generación: "Factura", " factura " y "FACTURA" son la misma plantilla, igual
+ * que "Cotización" y "cotizacion". Es única en la tabla de plantillas. El slug
+ * ({@link #slug(String)}) es la forma apta para URLs y no es única.
+ *
+ * @see Template#getNameKey()
+ * @see Template#getSlug()
+ */
+public final class TemplateNames {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern NON_SLUG = Pattern.compile("[^a-z0-9]+");
+
+    private TemplateNames() {
+    }
+
+    /**
+     * Calcula la clave de un nombre: sin acentos, en minúsculas y con los espacios
+     * recortados y reducidos a uno solo.
+     *
+     * @param name el nombre de la plantilla
+     * @return la clave, o null si el nombre es null
+     */
+    public static String key(String name) {
+        if (name == null) {
+            return null;
+        }
+        String stripped = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        return SPACES.matcher(stripped.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    /**
+     * Calcula el slug de un nombre: la clave con todo lo que no sea letra o dígito
+     * sustituido por guiones. Ejemplo: "Cotización 2025 (Q1)" da "cotizacion-2025-q1".
+     * Si no queda ninguna letra ni dígito latinos (por ejemplo, "請求書"), el slug se deriva
+     * del hash de la clave: "plantilla-" seguido de ocho dígitos hexadecimales.
+     *
+     * @param name el nombre de la plantilla
+     * @return el slug, o null si el nombre es null
+     */
+    public static String slug(String name) {
+        String key = key(name);
+        if (key == null) {
+            return null;
+        }
+        String slug = NON_SLUG.matcher(key).replaceAll("-");
+        int start = 0;
+        int end = slug.length();
+        while (start < end && slug.charAt(start) == '-') {
+            start++;
+        }
+        while (end > start && slug.charAt(end - 1) == '-') {
+            end--;
+        }
+        if (start == end) {
+            return key.isEmpty() ? "" : String.format("plantilla-%08x", key.hashCode());
+        }
+        return slug.substring(start, end);
+    }
+}
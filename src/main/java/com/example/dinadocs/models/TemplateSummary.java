@@ -0,0 +1,21 @@
+package com.example.dinadocs.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * Vista resumida de una plantilla para los listados: solo sus metadatos, sin el
+ * contenido ni los placeholders. Se construye directamente en la consulta
+ * (proyección JPA), así que no se leen las columnas de contenido.
+ *
+ * @param id identificador de la plantilla
+ * @param name nombre de la plantilla
+ * @param isPublic true si la plantilla es pública (se serializa como {@code public}, igual que en {@link Template})
+ * @param placeholderCount número de placeholders de la plantilla
+ * @param updatedAt fecha de la última modificación
+ * @see com.example.dinadocs.repositories.TemplateRepository
+ */
+public record TemplateSummary(Long id, String name, @JsonProperty("public") boolean isPublic,
+                              int placeholderCount, Instant updatedAt) {
+}
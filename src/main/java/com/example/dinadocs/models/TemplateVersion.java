@@ -0,0 +1,205 @@
+package com.example.dinadocs.models;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Immutable;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Entidad JPA que representa una versión inmutable de una plantilla.
+ *
+ * <p>Cada vez que cambia el contenido de una plantilla se guarda una versión nueva con el
+ * contenido compilado, los datos derivados que se usan al renderizar y el SHA-256 de la forma
+ * compilada; la fila de {@link Template} apunta a la versión actual. Las versiones nunca se
+ * modifican, así que las cachés que dependen del contenido (plantillas compiladas, PDFs
+ * renderizados) pueden usar {@link #getContentHash()} como clave sin invalidarse nunca.
+ *
+ * <p>Estructura de la tabla en base de datos:
+ * <ul>
+ *   <li>Tabla: plantilla_versiones</li>
+ *   <li>Clave única (template_id, version_number)</li>
+ * </ul>
+ *
+ * <p>Las versiones actuales de una lista de plantillas se cargan en lotes ({@link BatchSize}),
+ * no una consulta por plantilla.
+ *
+ * @see Template#getCurrentVersion()
+ * @see com.example.dinadocs.services.TemplateService
+ */
+@Entity
+@Immutable
+@BatchSize(size = 50)
+@Table(name = "plantilla_versiones",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"template_id", "version_number"}))
+public class TemplateVersion {
+
+    /**
+     * Identificador único de la versión (clave primaria).
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Id de la plantilla a la que pertenece la versión. Se guarda como valor y no como
+     * relación para que la plantilla y sus versiones puedan borrarse sin depender del orden.
+     */
+    @Column(name = "template_id", nullable = false)
+    private Long templateId;
+
+    /**
+     * Número de la versión dentro de su plantilla, empezando en 1.
+     */
+    @Column(name = "version_number", nullable = false)
+    private int versionNumber;
+
+    /**
+     * SHA-256 (hexadecimal) del contenido compilado.
+     */
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    /**
+     * Contenido HTML original de la versión.
+     */
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    /**
+     * Forma compilada de la versión.
+     * @see Template#getCompiledContent()
+     */
+    @Column(name = "compiled_content", columnDefinition = "TEXT")
+    private String compiledContent;
+
+    /**
+     * @see Template#isXhtmlReady()
+     */
+    @Column(name = "xhtml_ready")
+    private boolean xhtmlReady;
+
+    /**
+     * @see Template#getRenderEngine()
+     */
+    @Column(name = "render_engine")
+    private String renderEngine;
+
+    /**
+     * @see Template#getPlaceholderSchema()
+     */
+    @Convert(converter = PlaceholderSchemaConverter.class)
+    @Column(name = "placeholder_schema", columnDefinition = "TEXT")
+    private List<PlaceholderNode> placeholderSchema;
+
+    /**
+     * @see Template#getValidationTrie()
+     */
+    @Convert(converter = PlaceholderTrieConverter.class)
+    @Column(name = "validation_trie", columnDefinition = "TEXT")
+    private PlaceholderTrie validationTrie;
+
+    /**
+     * Fecha de creación de la versión.
+     */
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    /**
+     * Constructor por defecto requerido por JPA.
+     */
+    protected TemplateVersion() {
+    }
+
+    /**
+     * Crea una versión con el estado actual de una plantilla ya persistida y compilada.
+     *
+     * @param template la plantilla
+     * @param versionNumber el número de la versión
+     * @param contentHash el SHA-256 del contenido compilado
+     */
+    public TemplateVersion(Template template, int versionNumber, String contentHash) {
+        this.templateId = template.getId();
+        this.versionNumber = versionNumber;
+        this.contentHash = contentHash;
+        this.content = template.getContent();
+        this.compiledContent = template.getCompiledContent();
+        this.xhtmlReady = template.isXhtmlReady();
+        this.renderEngine = template.getRenderEngine();
+        this.placeholderSchema = template.getPlaceholderSchema();
+        this.validationTrie = template.getValidationTrie();
+        this.createdAt = Instant.now();
+    }
+
+    /**
+     * Crea una referencia a esta versión sin contenido (id, plantilla, número y hash), para
+     * las copias compartidas de {@link Template#snapshot()}.
+     *
+     * @return la referencia
+     */
+    public TemplateVersion reference() {
+        TemplateVersion reference = new TemplateVersion();
+        reference.id = id;
+        reference.templateId = templateId;
+        reference.versionNumber = versionNumber;
+        reference.contentHash = contentHash;
+        reference.createdAt = createdAt;
+        return reference;
+    }
+
+    /** @return el ID de la versión */
+    public Long getId() {
+        return id;
+    }
+
+    /** @return el ID de la plantilla */
+    public Long getTemplateId() {
+        return templateId;
+    }
+
+    /** @return el número de la versión */
+    public int getVersionNumber() {
+        return versionNumber;
+    }
+
+    /** @return el SHA-256 del contenido compilado */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /** @return el contenido HTML original */
+    public String getContent() {
+        return content;
+    }
+
+    /** @return el contenido compilado */
+    public String getCompiledContent() {
+        return compiledContent;
+    }
+
+    /** @return true si el contenido compilado admite la ruta rápida XHTML */
+    public boolean isXhtmlReady() {
+        return xhtmlReady;
+    }
+
+    /** @return el nombre del motor de renderizado */
+    public String getRenderEngine() {
+        return renderEngine;
+    }
+
+    /** @return el esquema de placeholders */
+    public List<PlaceholderNode> getPlaceholderSchema() {
+        return placeholderSchema;
+    }
+
+    /** @return el trie de validación */
+    public PlaceholderTrie getValidationTrie() {
+        return validationTrie;
+    }
+
+    /** @return la fecha de creación */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.dinadocs.repositories;
+
+import com.example.dinadocs.models.GenerationJob;
+import com.example.dinadocs.models.JobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositorio para la entidad GenerationJob.
+ *
+ */
+@Repository
+public interface GenerationJobRepository extends JpaRepository<GenerationJob, Long> {
+
+    /**
+     * Lista los trabajos en alguno de los estados indicados, del más antiguo al más reciente.
+     * Se usa al iniciar la aplicación para reanudar los trabajos sin terminar.
+     *
+     * @param statuses los estados buscados
+     * @return lista de trabajos
+     */
+    List<GenerationJob> findByStatusInOrderByIdAsc(Collection<JobStatus> statuses);
+}
@@ -0,0 +1,13 @@
+package com.example.dinadocs.repositories;
+
+import com.example.dinadocs.models.GenerationJobResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repositorio para los PDFs generados por los trabajos asíncronos.
+ *
+ */
+@Repository
+public interface GenerationJobResultRepository extends JpaRepository<GenerationJobResult, Long> {
+}
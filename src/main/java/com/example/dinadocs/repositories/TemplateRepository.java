@@ -1,8 +1,14 @@
 package com.example.dinadocs.repositories;
 
 import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateSummary;
 import com.example.dinadocs.models.User;
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -16,27 +22,69 @@ import java.util.Optional;
 public interface TemplateRepository extends JpaRepository<Template, Long> {
 
     /**
-     * Método Custom: Busca una plantilla por su nombre.
+     * Busca una plantilla por la clave normalizada de su nombre (índice único name_key).
+     * Es la búsqueda de cada solicitud de generación.
      *
-     * @param name el nombre de la plantilla
+     * @param nameKey la clave del nombre, calculada con {@link com.example.dinadocs.models.TemplateNames#key(String)}
      * @return Optional con la plantilla si existe
      */
-    Optional<Template> findByName(String name);
+    Optional<Template> findByNameKey(String nameKey);
 
     /**
-     * Método Custom: Lista las plantillas públicas O las que pertenecen al usuario.
-     * Esta es la consulta clave para la lógica de Nivel 2.
+     * Busca una plantilla por id y bloquea su fila hasta el final de la transacción, para que
+     * las modificaciones concurrentes de la misma plantilla se apliquen una detrás de otra
+     * (y cada una numere su versión a partir de la anterior).
      *
-     * @param user el usuario propietario
-     * @return lista de plantillas accesibles
+     * @param id el identificador de la plantilla
+     * @return Optional con la plantilla si existe
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from Template t where t.id = :id")
+    Optional<Template> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Comprueba si otra plantilla ya usa la clave de nombre.
+     *
+     * @param nameKey la clave del nombre
+     * @param excludedId el id de la plantilla que se está modificando (0 si es nueva)
+     * @return true si alguna otra plantilla tiene esa clave
+     */
+    @Query("select count(t) > 0 from Template t where t.nameKey = :nameKey and t.id <> :excludedId")
+    boolean existsOtherWithNameKey(@Param("nameKey") String nameKey, @Param("excludedId") long excludedId);
+
+    /**
+     * Lista los resúmenes de todas las plantillas con id mayor que el cursor, por id ascendente
+     * (paginación por clave: cada página empieza después del último id de la anterior).
+     *
+     * @param after el último id de la página anterior (0 para la primera)
+     * @param limit el número máximo de resultados
+     * @return los resúmenes de la página
      */
-    List<Template> findByIsPublicTrueOrOwner(User user);
+    @Query("select new com.example.dinadocs.models.TemplateSummary(t.id, t.name, t.isPublic, t.placeholderCount, t.updatedAt)"
+            + " from Template t where t.id > :after order by t.id")
+    List<TemplateSummary> findSummaries(@Param("after") long after, Limit limit);
 
     /**
-     * Busca solo las plantillas que son públicas.
-     * (metodo TEMPORAL para probar plantillas sin iniciar sesion con un usuario valido)
-     * 
-     * @return lista de plantillas públicas
+     * Lista los resúmenes de las plantillas públicas con id mayor que el cursor, por id ascendente.
+     *
+     * @param after el último id de la página anterior (0 para la primera)
+     * @param limit el número máximo de resultados
+     * @return los resúmenes de la página
+     */
+    @Query("select new com.example.dinadocs.models.TemplateSummary(t.id, t.name, t.isPublic, t.placeholderCount, t.updatedAt)"
+            + " from Template t where t.isPublic = true and t.id > :after order by t.id")
+    List<TemplateSummary> findPublicSummaries(@Param("after") long after, Limit limit);
+
+    /**
+     * Lista los resúmenes de las plantillas públicas o del usuario con id mayor que el cursor,
+     * por id ascendente.
+     *
+     * @param owner el usuario propietario
+     * @param after el último id de la página anterior (0 para la primera)
+     * @param limit el número máximo de resultados
+     * @return los resúmenes de la página
      */
-    List<Template> findByIsPublicTrue();
-}
\ No newline at end of file
+    @Query("select new com.example.dinadocs.models.TemplateSummary(t.id, t.name, t.isPublic, t.placeholderCount, t.updatedAt)"
+            + " from Template t where (t.isPublic = true or t.owner = :owner) and t.id > :after order by t.id")
+    List<TemplateSummary> findPublicOrOwnedSummaries(@Param("owner") User owner, @Param("after") long after, Limit limit);
+}
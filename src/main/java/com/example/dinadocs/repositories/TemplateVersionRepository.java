@@ -0,0 +1,42 @@
+package com.example.dinadocs.repositories;
+
+import com.example.dinadocs.models.TemplateVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repositorio para la entidad TemplateVersion.
+ * Las versiones solo se crean y se borran junto con su plantilla; nunca se modifican.
+ */
+@Repository
+public interface TemplateVersionRepository extends JpaRepository<TemplateVersion, Long> {
+
+    /**
+     * Busca una versión concreta de una plantilla.
+     *
+     * @param templateId el ID de la plantilla
+     * @param versionNumber el número de la versión
+     * @return Optional con la versión si existe
+     */
+    Optional<TemplateVersion> findByTemplateIdAndVersionNumber(Long templateId, int versionNumber);
+
+    /**
+     * Obtiene el número de la última versión de una plantilla.
+     *
+     * @param templateId el ID de la plantilla
+     * @return el número de la última versión, o 0 si no tiene ninguna
+     */
+    @Query("select coalesce(max(v.versionNumber), 0) from TemplateVersion v where v.templateId = :templateId")
+    int findLatestVersionNumber(@Param("templateId") Long templateId);
+
+    /**
+     * Borra todas las versiones de una plantilla.
+     *
+     * @param templateId el ID de la plantilla
+     */
+    void deleteByTemplateId(Long templateId);
+}
@@ -0,0 +1,151 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.cache.BoundedCache;
+import com.example.dinadocs.cache.ContentHash;
+import com.lowagie.text.Image;
+import org.xhtmlrenderer.pdf.ITextFSImage;
+import org.xhtmlrenderer.pdf.ITextOutputDevice;
+import org.xhtmlrenderer.pdf.ITextUserAgent;
+import org.xhtmlrenderer.resource.ImageResource;
+import org.xhtmlrenderer.util.ContentTypeDetectingInputStreamWrapper;
+import org.xhtmlrenderer.util.IOUtil;
+import org.xhtmlrenderer.util.ImageUtil;
+import org.xhtmlrenderer.util.XRLog;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Agente de usuario de Flying Saucer que comparte entre renderizados las imágenes ya
+ * decodificadas de las plantillas y de los datos.
+ *
+ * <p>El agente de Flying Saucer guarda las imágenes en una caché propia, que se pierde
+ * con cada renderizador. Este agente las guarda en una {@link BoundedCache} común, con
+ * clave la URL resuelta o, para las imágenes embebidas ({@code data:}), el SHA-256 de la URI.
+ * La caché guarda la imagen ya escalada a la resolución de salida y cada renderizado recibe
+ * una copia, igual que hace Flying Saucer con su propia caché.
+ *
+ * <p>Si se configura un directorio local, las URLs {@code http(s)} se sirven desde ese
+ * directorio por nombre de fichero (pensado para pruebas y entornos sin red).
+ * Los PDFs usados como imagen se delegan en el comportamiento original.
+ */
+class CachingUserAgent extends ITextUserAgent {
+
+    private final BoundedCache<String, CachedImage> images;
+    private final int dotsPerPixel;
+    private final Path localDirectory;
+
+    /**
+     * Imagen decodificada y escalada junto con su tamaño en bytes (peso en la caché).
+     */
+    record CachedImage(Image image, long size) {
+    }
+
+    /**
+     * @param outputDevice dispositivo de salida del renderizador
+     * @param dotsPerPixel puntos por píxel del renderizador
+     * @param images caché compartida de imágenes decodificadas
+     * @param localDirectory directorio que sustituye a las descargas remotas (null para descargar)
+     */
+    CachingUserAgent(ITextOutputDevice outputDevice, int dotsPerPixel,
+                     BoundedCache<String, CachedImage> images, Path localDirectory) {
+        super(outputDevice, dotsPerPixel);
+        this.images = images;
+        this.dotsPerPixel = dotsPerPixel;
+        this.localDirectory = localDirectory;
+    }
+
+    @Override
+    public ImageResource getImageResource(String uri) {
+        boolean embedded = ImageUtil.isEmbeddedBase64Image(uri);
+        String resolved = embedded ? uri : resolveURI(uri);
+        String key = embedded ? "data:" + ContentHash.sha256(uri) : resolved;
+
+        CachedImage cached = images.get(key);
+        if (cached == null) {
+            byte[] bytes = embedded ? embeddedImage(uri) : readImage(resolved);
+            if (bytes == null) {
+                // PDF como imagen: se resuelve con el comportamiento original
+                return super.getImageResource(uri);
+            }
+            cached = decode(bytes, resolved);
+            if (cached == null) {
+                return new ImageResource(embedded ? null : resolved, null);
+            }
+            images.put(key, cached);
+        }
+        return new ImageResource(embedded ? null : resolved,
+                (ITextFSImage) new ITextFSImage(cached.image()).clone());
+    }
+
+    private static byte[] embeddedImage(String uri) {
+        try {
+            byte[] bytes = ImageUtil.getEmbeddedBase64Image(uri);
+            return bytes == null ? new byte[0] : bytes;
+        } catch (IllegalArgumentException e) {
+            XRLog.exception("Can't read XHTML embedded image.", e);
+            return new byte[0];
+        }
+    }
+
+    /**
+     * Lee los bytes de una imagen remota o local.
+     *
+     * @return los bytes leídos, un array vacío si no se pudo leer o null si el recurso es un PDF
+     */
+    private byte[] readImage(String resolved) {
+        InputStream is = resolveAndOpenStream(resolved);
+        if (is == null) {
+            return new byte[0];
+        }
+        try (ContentTypeDetectingInputStreamWrapper in = new ContentTypeDetectingInputStreamWrapper(is)) {
+            return in.isPdf() ? null : IOUtil.readBytes(in);
+        } catch (IOException e) {
+            XRLog.exception("Can't read image file; unexpected problem for URI '" + resolved + "'", e);
+            return new byte[0];
+        }
+    }
+
+    private CachedImage decode(byte[] bytes, String uri) {
+        if (bytes.length == 0) {
+            return null;
+        }
+        try {
+            Image image = Image.getInstance(bytes);
+            if (dotsPerPixel != 1) {
+                image.scaleAbsolute(image.getPlainWidth() * dotsPerPixel, image.getPlainHeight() * dotsPerPixel);
+            }
+            byte[] raw = image.getRawData();
+            long size = raw == null || raw == bytes ? bytes.length : bytes.length + raw.length;
+            return new CachedImage(image, size);
+        } catch (Exception e) {
+            XRLog.exception("Can't read image file; unexpected problem for URI '" + uri + "'", e);
+            return null;
+        }
+    }
+
+    @Override
+    protected InputStream openStream(String uri) throws IOException {
+        if (localDirectory == null || !(uri.startsWith("http://") || uri.startsWith("https://"))) {
+            return super.openStream(uri);
+        }
+        String path;
+        try {
+            path = new URI(uri).getPath();
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException(uri);
+        }
+        String fileName = path == null ? "" : path.substring(path.lastIndexOf('/') + 1);
+        Path file = localDirectory.resolve(fileName).normalize();
+        if (fileName.isEmpty() || !file.startsWith(localDirectory) || !Files.isRegularFile(file)) {
+            throw new FileNotFoundException(uri);
+        }
+        return Files.newInputStream(file);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.cache.BoundedCache;
+import com.example.dinadocs.cache.ContentHash;
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xhtmlrenderer.util.XRLog;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.logging.Level;
+
+/**
+ * Manejador XHTML de Flying Saucer que reutiliza las hojas de estilo ya parseadas
+ * de los bloques {@code <style>} de las plantillas.
+ *
+ * <p>Flying Saucer parsea el CSS de cada bloque {@code <style>} en cada renderizado.
+ * Este manejador calcula el SHA-256 del CSS y devuelve la hoja ya parseada desde una
+ * {@link BoundedCache}; la hoja se entrega como una referencia externa con URI sintética
+ * ({@value #URI_SCHEME}{@code :<hash>}) para que Flying Saucer la use sin volver a parsearla.
+ * Las hojas parseadas no se modifican durante el renderizado, por lo que se comparten
+ * entre solicitudes concurrentes.
+ */
+class CachingXhtmlNamespaceHandler extends XhtmlNamespaceHandler {
+
+    /** Esquema de las URIs sintéticas asignadas a las hojas en caché. */
+    static final String URI_SCHEME = "dinadocs-css";
+
+    private final BoundedCache<String, CachedStylesheet> stylesheets;
+
+    /**
+     * Hoja de estilos parseada junto con la longitud del CSS original (peso en la caché).
+     */
+    record CachedStylesheet(Stylesheet stylesheet, long cssLength) {
+    }
+
+    /**
+     * @param stylesheets caché de hojas parseadas, con clave el SHA-256 del CSS
+     */
+    CachingXhtmlNamespaceHandler(BoundedCache<String, CachedStylesheet> stylesheets) {
+        this.stylesheets = stylesheets;
+    }
+
+    @Override
+    protected StylesheetInfo readStyleElement(Element style) {
+        StylesheetInfo info = super.readStyleElement(style);
+        if (info == null || !info.isInline()) {
+            return info;
+        }
+        String css = info.getContent();
+        String uri = URI_SCHEME + ":" + ContentHash.sha256(css);
+        CachedStylesheet cached = stylesheets.computeIfAbsent(uri, key -> parse(key, css));
+
+        info.setUri(uri);
+        info.setStylesheet(cached.stylesheet());
+        info.setContent(null);
+        return info;
+    }
+
+    private static CachedStylesheet parse(String uri, String css) {
+        // Mismo registro de advertencias que usa Flying Saucer al parsear CSS
+        CSSParser parser = new CSSParser((source, message) ->
+                XRLog.cssParse(Level.WARNING, "(" + source + ") " + message));
+        try {
+            Stylesheet sheet = parser.parseStylesheet(uri, StylesheetInfo.AUTHOR, new StringReader(css));
+            return new CachedStylesheet(sheet, css.length());
+        } catch (IOException e) {
+            // StringReader no lanza IOException; se conserva el contrato del parser
+            throw new IllegalStateException("No se pudo parsear el CSS de la plantilla", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.models.Template;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import java.io.OutputStream;
+
+/**
+ * Motor completo: maqueta el documento con CSS mediante Flying Saucer.
+ * Admite cualquier plantilla, así que es el motor por defecto y el último en el orden.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class FlyingSaucerRenderEngine implements RenderEngine {
+
+    /** Nombre del motor. */
+    public static final String NAME = "flying-saucer";
+
+    private final PdfRendererFactory rendererFactory;
+
+    /**
+     * @param rendererFactory fábrica de renderizadores con las fuentes ya registradas
+     */
+    public FlyingSaucerRenderEngine(PdfRendererFactory rendererFactory) {
+        this.rendererFactory = rendererFactory;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(Template template) {
+        return true;
+    }
+
+    @Override
+    public void render(Document document, OutputStream outputStream) {
+        ITextRenderer renderer = rendererFactory.createRenderer();
+        try {
+            renderer.setDocument(document, rendererFactory.getBaseUrl(), rendererFactory.getNamespaceHandler());
+
+            renderer.layout();
+            renderer.createPDF(outputStream);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Error interno al convertir HTML a PDF: " + e.getMessage(), e);
+        } finally {
+            rendererFactory.release(renderer);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.models.GenerationJob;
+import com.example.dinadocs.models.GenerationJobResult;
+import com.example.dinadocs.models.GenerationRequest;
+import com.example.dinadocs.models.JobStatus;
+import com.example.dinadocs.models.Role;
+import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.User;
+import com.example.dinadocs.repositories.GenerationJobRepository;
+import com.example.dinadocs.repositories.GenerationJobResultRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servicio (capa de lógica de negocio) para la generación asíncrona de PDFs.
+ *
+ * <p>Cada solicitud se guarda como un {@link GenerationJob} pendiente y se encola en un
+ * conjunto de trabajadores, que la genera con {@link PdfGenerationService} y guarda el PDF.
+ * Los trabajos se persisten, así que al iniciar la aplicación se reanudan los que
+ * quedaron pendientes o a medias. Si la cola de renderizado está llena, el trabajo
+ * vuelve a quedar pendiente y se reintenta tras el tiempo sugerido.
+ *
+ * <p>La cola de los trabajadores está acotada ({@code dinadocs.jobs.queue-capacity}): con la
+ * cola llena, un trabajo nuevo se rechaza con {@link RenderRejectedException} (el controlador
+ * responde 429 con {@code Retry-After}), igual que en {@link RenderExecutor}.
+ *
+ * @see com.example.dinadocs.controllers.GenerationJobController
+ */
+@Service
+public class GenerationJobService implements DisposableBean {
+
+    private final GenerationJobRepository jobRepository;
+    private final GenerationJobResultRepository resultRepository;
+    private final PdfGenerationService pdfService;
+    private final ScheduledThreadPoolExecutor workers;
+    private final int queueCapacity;
+    private final long retryAfterSeconds;
+    /** Trabajos encolados que aún no han empezado a procesarse. */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param jobRepository Repositorio de trabajos.
+     * @param resultRepository Repositorio de PDFs generados.
+     * @param pdfService Servicio que genera cada PDF.
+     * @param workerCount Número de trabajadores que procesan trabajos en paralelo.
+     * @param queueCapacity Número máximo de trabajos encolados pendientes de procesarse.
+     * @param retryAfterSeconds Segundos sugeridos al cliente cuando la cola está llena.
+     */
+    public GenerationJobService(GenerationJobRepository jobRepository,
+                                GenerationJobResultRepository resultRepository,
+                                PdfGenerationService pdfService,
+                                @Value("${dinadocs.jobs.workers:2}") int workerCount,
+                                @Value("${dinadocs.jobs.queue-capacity:1000}") int queueCapacity,
+                                @Value("${dinadocs.pdf.render.retry-after-seconds:5}") long retryAfterSeconds) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("La capacidad de la cola de trabajos debe ser positiva.");
+        }
+        this.jobRepository = jobRepository;
+        this.resultRepository = resultRepository;
+        this.pdfService = pdfService;
+        this.queueCapacity = queueCapacity;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.workers = new ScheduledThreadPoolExecutor(Math.max(1, workerCount),
+                Thread.ofPlatform().name("dinadocs-job-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Valida la solicitud, guarda el trabajo como pendiente y lo encola.
+     *
+     * @param request la solicitud de generación
+     * @param owner el usuario que envía el trabajo
+     * @return el trabajo creado
+     * @throws IllegalArgumentException Si la validación de datos falla.
+     * @throws NoSuchElementException Si el 'templateType' no se encuentra en la BD.
+     * @throws RenderRejectedException Si la cola de trabajos está llena.
+     */
+    public GenerationJob submit(GenerationRequest request, User owner) {
+        pdfService.validateData(request);
+        Template template = pdfService.loadTemplate(request.getTemplateType(), request.getTemplateVersion());
+
+        // Se reserva el hueco en la cola antes de guardar, para no dejar trabajos sin encolar
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            throw new RenderRejectedException("La cola de trabajos está llena. Inténtelo de nuevo más tarde.",
+                    retryAfterSeconds);
+        }
+        GenerationJob job = new GenerationJob(request, owner);
+        if (job.getTemplateVersion() == null) {
+            // Se fija la versión actual: editar la plantilla después no cambia el resultado
+            job.setTemplateVersion(template.getVersionNumber());
+        }
+        try {
+            job = jobRepository.save(job);
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+        schedule(job.getId(), 0);
+        return job;
+    }
+
+    /**
+     * Obtiene un trabajo del usuario. Los trabajos de otros usuarios se tratan como
+     * inexistentes, salvo para un ADMIN.
+     *
+     * @param id el ID del trabajo
+     * @param authUser el usuario autenticado
+     * @return el trabajo
+     * @throws NoSuchElementException si no existe o no pertenece al usuario
+     */
+    public GenerationJob findById(Long id, User authUser) {
+        GenerationJob job = jobRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Trabajo no encontrado con id: " + id));
+
+        boolean isOwner = job.getOwner() != null && authUser != null
+                && Objects.equals(job.getOwner().getId(), authUser.getId());
+        boolean isAdmin = authUser != null && authUser.getRole() == Role.ADMIN;
+        if (!isOwner && !isAdmin) {
+            throw new NoSuchElementException("Trabajo no encontrado con id: " + id);
+        }
+        return job;
+    }
+
+    /**
+     * Obtiene el PDF generado por un trabajo completado.
+     *
+     * @param id el ID del trabajo
+     * @param authUser el usuario autenticado
+     * @return el PDF generado
+     * @throws NoSuchElementException si no existe o no pertenece al usuario
+     * @throws IllegalStateException si el trabajo aún no ha terminado o falló
+     */
+    public byte[] getResult(Long id, User authUser) {
+        GenerationJob job = findById(id, authUser);
+        if (job.getStatus() != JobStatus.COMPLETADO) {
+            throw new IllegalStateException("El trabajo " + id + " no tiene resultado (estado: " + job.getStatus() + ").");
+        }
+        return resultRepository.findById(id)
+                .map(GenerationJobResult::getContent)
+                .orElseThrow(() -> new NoSuchElementException("Resultado no encontrado para el trabajo: " + id));
+    }
+
+    /**
+     * Reanuda al iniciar la aplicación los trabajos pendientes y los que quedaron
+     * en proceso cuando se detuvo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingJobs() {
+        List<GenerationJob> unfinished = jobRepository.findByStatusInOrderByIdAsc(
+                EnumSet.of(JobStatus.PENDIENTE, JobStatus.EN_PROCESO));
+        for (GenerationJob job : unfinished) {
+            if (job.getStatus() == JobStatus.EN_PROCESO) {
+                job.setStatus(JobStatus.PENDIENTE);
+                job.setStartedAt(null);
+                jobRepository.save(job);
+            }
+            enqueue(job.getId(), 0);
+        }
+        if (!unfinished.isEmpty()) {
+            System.out.println("Trabajos de generación reanudados: " + unfinished.size());
+        }
+    }
+
+    private void enqueue(Long jobId, long delaySeconds) {
+        queued.incrementAndGet();
+        schedule(jobId, delaySeconds);
+    }
+
+    /** Programa un trabajo cuyo hueco en la cola ya está reservado. */
+    private void schedule(Long jobId, long delaySeconds) {
+        workers.schedule(() -> {
+            queued.decrementAndGet();
+            process(jobId);
+        }, delaySeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return el número de trabajos encolados pendientes de procesarse
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Genera el PDF de un trabajo pendiente y guarda el resultado o el motivo del fallo.
+     * @param jobId el ID del trabajo
+     */
+    void process(Long jobId) {
+        GenerationJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != JobStatus.PENDIENTE) {
+            return;
+        }
+        job.setStatus(JobStatus.EN_PROCESO);
+        job.setStartedAt(Instant.now());
+        job = jobRepository.save(job);
+
+        try {
+            byte[] pdf = pdfService.generatePdf(job.toRequest());
+            resultRepository.save(new GenerationJobResult(jobId, pdf));
+            job.setStatus(JobStatus.COMPLETADO);
+        } catch (RenderRejectedException e) {
+            // Cola de renderizado llena: se reintenta más tarde
+            job.setStatus(JobStatus.PENDIENTE);
+            job.setStartedAt(null);
+            jobRepository.save(job);
+            enqueue(jobId, e.getRetryAfterSeconds());
+            return;
+        } catch (Throwable e) {
+            // También los Error (por ejemplo OutOfMemoryError): el trabajo no debe quedar EN_PROCESO
+            job.setStatus(JobStatus.FALLIDO);
+            job.setErrorMessage(truncate(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        }
+        job.setCompletedAt(Instant.now());
+        jobRepository.save(job);
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "Error desconocido";
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+    }
+}
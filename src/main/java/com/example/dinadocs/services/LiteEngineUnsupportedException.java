@@ -0,0 +1,19 @@
+package com.example.dinadocs.services;
+
+/**
+ * Se lanza cuando el motor ligero no puede renderizar un documento concreto (por ejemplo, un
+ * carácter sin glifo en las fuentes estándar). No se habrá escrito nada en la salida, así que
+ * el documento puede renderizarse de nuevo con el motor completo.
+ *
+ * @see LiteRenderEngine
+ */
+public class LiteEngineUnsupportedException extends RuntimeException {
+
+    /**
+     * @param message la descripción del problema
+     * @param cause la causa original
+     */
+    public LiteEngineUnsupportedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
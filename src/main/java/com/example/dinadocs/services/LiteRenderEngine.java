@@ -0,0 +1,494 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.models.Template;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Motor ligero: dibuja directamente con PDFBox un subconjunto reducido de HTML, sin
+ * cascada CSS ni árbol de maquetación. Sirve para cartas, avisos y documentos de texto
+ * con títulos, párrafos y listas, que así se generan mucho más rápido.
+ *
+ * <p>Admite las plantillas XHTML (ver {@link Template#isXhtmlReady()}) que solo usan
+ * {@code div}, {@code p}, títulos, listas, {@code b}, {@code strong}, {@code i}, {@code em},
+ * {@code span} y {@code br} y, como estilo en línea,
+ * {@code text-align}, {@code font-weight} y {@code font-style} con valores fijos. Las
+ * plantillas con hojas de estilo, tablas, imágenes, enlaces o texto justificado se quedan en
+ * Flying Saucer.
+ *
+ * <p>Reproduce la hoja de estilos por defecto de Flying Saucer (página carta, márgenes de
+ * media pulgada, Times de 12 puntos, márgenes de títulos, párrafos y listas) para que el
+ * resultado sea equivalente. Si un texto tiene caracteres que las fuentes estándar no
+ * pueden codificar, lanza {@link LiteEngineUnsupportedException} y el documento se
+ * renderiza con el motor completo.
+ */
+@Component
+@Order(0)
+public class LiteRenderEngine implements RenderEngine {
+
+    /** Nombre del motor. */
+    public static final String NAME = "lite";
+
+    /** Elementos de bloque admitidos. */
+    private static final Set<String> BLOCK_ELEMENTS = Set.of("html", "body", "div", "p",
+            "h1", "h2", "h3", "h4", "h5", "h6", "ul", "ol", "li");
+
+    /** Elementos en línea admitidos. */
+    private static final Set<String> INLINE_ELEMENTS = Set.of("b", "strong", "i", "em", "span", "br");
+
+    /** Elementos de la cabecera admitidos (no se dibujan). */
+    private static final Set<String> HEAD_ELEMENTS = Set.of("head", "title", "meta");
+
+    private static final Set<String> ALLOWED_ATTRIBUTES = Set.of("class", "id", "lang", "xml:lang", "xmlns", "style");
+
+    /** Propiedades de estilo en línea admitidas y sus valores. */
+    private static final Map<String, Set<String>> ALLOWED_STYLES = Map.of(
+            "text-align", Set.of("left", "center", "right"),
+            "font-weight", Set.of("normal", "bold", "bolder", "400", "700"),
+            "font-style", Set.of("normal", "italic", "oblique"));
+
+    private static final PDRectangle PAGE_SIZE = PDRectangle.LETTER;
+
+    /** Margen de la página (0.5in) más el del {@code body} (8px). */
+    private static final float PAGE_MARGIN = 36f + 6f;
+
+    private static final float BASE_FONT_SIZE = 12f;
+    private static final float LINE_HEIGHT = 1.15f;
+
+    /** Sangría de las listas (40px). */
+    private static final float LIST_INDENT = 30f;
+
+    private static final float MARKER_GAP = 6f;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(Template template) {
+        if (!template.isXhtmlReady() || template.getCompiledContent() == null) {
+            return false;
+        }
+        for (Element element : Jsoup.parse(template.getCompiledContent()).getAllElements()) {
+            if (element.tagName().equals("#root")) {
+                continue;
+            }
+            if (!isSupported(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSupported(Element element) {
+        String name = element.tagName();
+        if (!BLOCK_ELEMENTS.contains(name) && !INLINE_ELEMENTS.contains(name) && !HEAD_ELEMENTS.contains(name)) {
+            return false;
+        }
+        for (Attribute attribute : element.attributes()) {
+            String key = attribute.getKey().toLowerCase(Locale.ROOT);
+            if (!ALLOWED_ATTRIBUTES.contains(key) && !(name.equals("meta") && key.matches("charset|name|content|http-equiv"))) {
+                return false;
+            }
+            if (key.equals("style") && !isSupportedStyle(attribute.getValue())) {
+                return false;
+            }
+        }
+        if (INLINE_ELEMENTS.contains(name)) {
+            // Los elementos en línea no pueden contener bloques
+            for (Element descendant : element.getAllElements()) {
+                if (BLOCK_ELEMENTS.contains(descendant.tagName())) {
+                    return false;
+                }
+            }
+        }
+        boolean list = name.equals("ul") || name.equals("ol");
+        for (Element child : element.children()) {
+            if (list != child.tagName().equals("li")) {
+                return false;
+            }
+        }
+        if (list) {
+            // Entre los elementos de una lista solo puede haber etiquetas Mustache
+            for (TextNode text : element.textNodes()) {
+                if (!text.getWholeText().replaceAll("\\{\\{[^}]*}}", "").isBlank()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSupportedStyle(String style) {
+        if (style.contains("{{")) {
+            return false;
+        }
+        for (String declaration : style.split(";")) {
+            if (declaration.isBlank()) {
+                continue;
+            }
+            int colon = declaration.indexOf(':');
+            if (colon < 0) {
+                return false;
+            }
+            String property = declaration.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = declaration.substring(colon + 1).trim().toLowerCase(Locale.ROOT);
+            Set<String> values = ALLOWED_STYLES.get(property);
+            if (values == null || !values.contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void render(Document document, OutputStream outputStream) {
+        try (PDDocument pdf = new PDDocument()) {
+            Writer writer = new Writer(pdf);
+            try {
+                Node title = first(document, "title");
+                if (title != null && !title.getTextContent().isBlank()) {
+                    pdf.getDocumentInformation().setTitle(title.getTextContent().trim());
+                }
+                Node body = first(document, "body");
+                writer.block(body != null ? body : document.getDocumentElement(),
+                        new TextStyle(BASE_FONT_SIZE, false, false, "left"), PAGE_MARGIN,
+                        PAGE_SIZE.getWidth() - PAGE_MARGIN, null);
+            } finally {
+                writer.closePage();
+            }
+            pdf.save(outputStream);
+        } catch (IOException e) {
+            throw new RuntimeException("Error interno al convertir HTML a PDF: " + e.getMessage(), e);
+        }
+    }
+
+    private static Node first(Document document, String name) {
+        NodeList nodes = document.getElementsByTagName(name);
+        if (nodes.getLength() == 0) {
+            nodes = document.getElementsByTagNameNS("*", name);
+        }
+        return nodes.getLength() > 0 ? nodes.item(0) : null;
+    }
+
+    private static String nameOf(Node node) {
+        String name = node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Estilo del texto heredado por los elementos.
+     */
+    private record TextStyle(float size, boolean bold, boolean italic, String align) {
+
+        PDFont font() {
+            if (bold) {
+                return italic ? PDType1Font.TIMES_BOLD_ITALIC : PDType1Font.TIMES_BOLD;
+            }
+            return italic ? PDType1Font.TIMES_ITALIC : PDType1Font.TIMES_ROMAN;
+        }
+
+        /** Aplica los estilos por defecto del elemento y su atributo {@code style}. */
+        TextStyle forElement(String name, String inlineStyle) {
+            float newSize = switch (name) {
+                case "h1" -> BASE_FONT_SIZE * 2f;
+                case "h2" -> BASE_FONT_SIZE * 1.5f;
+                case "h3" -> BASE_FONT_SIZE * 1.17f;
+                case "h5" -> BASE_FONT_SIZE * 0.83f;
+                case "h6" -> BASE_FONT_SIZE * 0.75f;
+                default -> size;
+            };
+            boolean newBold = bold || name.matches("h[1-6]|b|strong");
+            boolean newItalic = italic || name.equals("i") || name.equals("em");
+            String newAlign = align;
+            for (String declaration : inlineStyle.split(";")) {
+                int colon = declaration.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String property = declaration.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = declaration.substring(colon + 1).trim().toLowerCase(Locale.ROOT);
+                switch (property) {
+                    case "text-align" -> newAlign = value;
+                    case "font-weight" -> newBold = value.equals("bold") || value.equals("bolder") || value.equals("700");
+                    case "font-style" -> newItalic = !value.equals("normal");
+                    default -> { }
+                }
+            }
+            return new TextStyle(newSize, newBold, newItalic, newAlign);
+        }
+    }
+
+    /** Margen vertical por defecto de un bloque, en ems (CSS 2.1, apéndice D). */
+    private static float marginEms(String name) {
+        return switch (name) {
+            case "h1" -> 0.67f;
+            case "h2" -> 0.75f;
+            case "h3" -> 0.83f;
+            case "h4", "p" -> 1.12f;
+            case "h5" -> 1.5f;
+            case "h6" -> 1.67f;
+            case "ul", "ol" -> 1.12f;
+            default -> 0f;
+        };
+    }
+
+    /** Fragmento de texto con su estilo, o salto de línea ({@code <br>}) si el texto es null. */
+    private record Run(String text, TextStyle style) {}
+
+    /** Palabra de una línea. */
+    private record Word(String text, TextStyle style, boolean spaceBefore, float width) {}
+
+    /**
+     * Dibuja los bloques de arriba abajo, con márgenes colapsados y saltos de página.
+     */
+    private static final class Writer {
+
+        private final PDDocument pdf;
+        private PDPageContentStream stream;
+        private float y;
+        private float pendingMargin;
+
+        Writer(PDDocument pdf) {
+            this.pdf = pdf;
+        }
+
+        void block(Node element, TextStyle inherited, float left, float right, String marker) throws IOException {
+            String name = nameOf(element);
+            String inlineStyle = element instanceof org.w3c.dom.Element e ? e.getAttribute("style") : "";
+            TextStyle style = inherited.forElement(name, inlineStyle);
+            float margin = marginEms(name) * style.size();
+            if ((name.equals("ul") || name.equals("ol")) && isInsideList(element)) {
+                // Las listas anidadas no tienen margen vertical
+                margin = 0;
+            }
+            addMargin(margin);
+
+            float contentLeft = name.equals("ul") || name.equals("ol") ? left + LIST_INDENT : left;
+            List<Run> runs = new ArrayList<>();
+            int item = 0;
+            NodeList children = element.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                Node child = children.item(i);
+                if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                    runs.add(new Run(child.getNodeValue(), style));
+                } else if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    String childName = nameOf(child);
+                    if (BLOCK_ELEMENTS.contains(childName)) {
+                        marker = paragraph(runs, style, contentLeft, right, marker);
+                        runs.clear();
+                        String childMarker = null;
+                        if (childName.equals("li")) {
+                            item++;
+                            childMarker = name.equals("ol") ? item + "." : "•";
+                        }
+                        block(child, style, contentLeft, right, childMarker);
+                        marker = null;
+                    } else if (!HEAD_ELEMENTS.contains(childName)) {
+                        inline(child, style, runs);
+                    }
+                }
+            }
+            paragraph(runs, style, contentLeft, right, marker);
+            addMargin(margin);
+        }
+
+        private static boolean isInsideList(Node element) {
+            for (Node parent = element.getParentNode(); parent != null; parent = parent.getParentNode()) {
+                if (parent.getNodeType() == Node.ELEMENT_NODE && nameOf(parent).equals("li")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void inline(Node element, TextStyle inherited, List<Run> runs) {
+            String name = nameOf(element);
+            if (name.equals("br")) {
+                runs.add(new Run(null, inherited));
+                return;
+            }
+            String inlineStyle = element instanceof org.w3c.dom.Element e ? e.getAttribute("style") : "";
+            TextStyle style = inherited.forElement(name, inlineStyle);
+            NodeList children = element.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                Node child = children.item(i);
+                if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                    runs.add(new Run(child.getNodeValue(), style));
+                } else if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    inline(child, style, runs);
+                }
+            }
+        }
+
+        private void addMargin(float margin) {
+            pendingMargin = Math.max(pendingMargin, margin);
+        }
+
+        /**
+         * Reparte el texto en líneas y las dibuja.
+         *
+         * @return el marcador de lista si no se ha dibujado (no había texto)
+         */
+        private String paragraph(List<Run> runs, TextStyle style, float left, float right, String marker)
+                throws IOException {
+            List<List<Word>> lines = breakLines(runs, right - left);
+            if (lines.isEmpty()) {
+                return marker;
+            }
+            for (List<Word> line : lines) {
+                drawLine(line, style, left, right, marker);
+                marker = null;
+            }
+            return null;
+        }
+
+        private List<List<Word>> breakLines(List<Run> runs, float width) throws IOException {
+            List<List<Word>> lines = new ArrayList<>();
+            List<Word> line = new ArrayList<>();
+            float lineWidth = 0;
+            boolean space = false;
+            for (Run run : runs) {
+                if (run.text() == null) {
+                    lines.add(line);
+                    line = new ArrayList<>();
+                    lineWidth = 0;
+                    space = false;
+                    continue;
+                }
+                String text = run.text();
+                int i = 0;
+                while (i < text.length()) {
+                    if (isCollapsibleSpace(text.charAt(i))) {
+                        space = true;
+                        i++;
+                        continue;
+                    }
+                    int end = i;
+                    while (end < text.length() && !isCollapsibleSpace(text.charAt(end))) {
+                        end++;
+                    }
+                    String word = text.substring(i, end);
+                    PDFont font = run.style().font();
+                    float wordWidth = textWidth(font, word, run.style().size());
+                    float spaceWidth = space && !line.isEmpty() ? textWidth(font, " ", run.style().size()) : 0;
+                    if (!line.isEmpty() && lineWidth + spaceWidth + wordWidth > width && space) {
+                        lines.add(line);
+                        line = new ArrayList<>();
+                        lineWidth = 0;
+                        spaceWidth = 0;
+                    }
+                    line.add(new Word(word, run.style(), spaceWidth > 0, wordWidth));
+                    lineWidth += spaceWidth + wordWidth;
+                    space = false;
+                    i = end;
+                }
+            }
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+            return lines;
+        }
+
+        private static boolean isCollapsibleSpace(char c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+        }
+
+        private static float textWidth(PDFont font, String text, float size) throws IOException {
+            try {
+                return font.getStringWidth(text) / 1000f * size;
+            } catch (IllegalArgumentException e) {
+                throw new LiteEngineUnsupportedException("El motor ligero no puede codificar el texto: " + e.getMessage(), e);
+            }
+        }
+
+        private void drawLine(List<Word> line, TextStyle style, float left, float right, String marker)
+                throws IOException {
+            float size = style.size();
+            float width = 0;
+            for (Word word : line) {
+                size = Math.max(size, word.style().size());
+                width += word.width() + (word.spaceBefore() ? textWidth(word.style().font(), " ", word.style().size()) : 0);
+            }
+            float lineHeight = size * LINE_HEIGHT;
+            if (stream == null || y - pendingMargin - lineHeight < PAGE_MARGIN) {
+                newPage();
+            } else {
+                y -= pendingMargin;
+            }
+            pendingMargin = 0;
+            float baseline = y - (lineHeight - size) / 2f - size * 0.8f;
+
+            float x = switch (style.align()) {
+                case "center" -> left + (right - left - width) / 2f;
+                case "right" -> right - width;
+                default -> left;
+            };
+            if (marker != null) {
+                float markerWidth = textWidth(style.font(), marker, style.size());
+                showText(marker, style, left - MARKER_GAP - markerWidth, baseline);
+            }
+            for (Word word : line) {
+                if (word.spaceBefore()) {
+                    x += textWidth(word.style().font(), " ", word.style().size());
+                }
+                showText(word.text(), word.style(), x, baseline);
+                x += word.width();
+            }
+            y -= lineHeight;
+        }
+
+        private void showText(String text, TextStyle style, float x, float baseline) throws IOException {
+            stream.beginText();
+            stream.setFont(style.font(), style.size());
+            stream.newLineAtOffset(x, baseline);
+            try {
+                stream.showText(text);
+            } catch (IllegalArgumentException e) {
+                throw new LiteEngineUnsupportedException("El motor ligero no puede codificar el texto: " + e.getMessage(), e);
+            }
+            stream.endText();
+        }
+
+        private void newPage() throws IOException {
+            closePage();
+            PDPage page = new PDPage(PAGE_SIZE);
+            pdf.addPage(page);
+            stream = new PDPageContentStream(pdf, page);
+            // El margen pendiente se conserva en la primera página y se descarta tras un salto
+            y = PAGE_SIZE.getHeight() - PAGE_MARGIN - (pdf.getNumberOfPages() == 1 ? pendingMargin : 0);
+        }
+
+        void closePage() throws IOException {
+            if (stream != null) {
+                stream.close();
+                stream = null;
+            } else if (pdf.getNumberOfPages() == 0) {
+                // Documento sin texto: una página en blanco, como Flying Saucer
+                pdf.addPage(new PDPage(PAGE_SIZE));
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.dinadocs.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Conjunto de búferes reutilizables en los que se escribe el PDF renderizado.
+ *
+ * <p>Un {@link ByteArrayOutputStream} nuevo por documento crece copiándose a sí mismo varias
+ * veces y termina con otra copia en {@code toByteArray()}. Los búferes de este conjunto
+ * conservan su capacidad entre usos, y su contenido se expone como {@link ByteBuffer} sin
+ * copiarlo, de modo que puede escribirse directamente en la respuesta. Los que han crecido
+ * por encima del tamaño máximo retenido se descartan al liberarse.
+ *
+ * <p>Registra el indicador {@code dinadocs.pdf.buffer.pool.idle} y el contador
+ * {@code dinadocs.pdf.buffer.pool.allocations} (búferes creados porque no había ninguno libre).
+ */
+@Component
+public class PdfBufferPool implements MeterBinder {
+
+    /** Capacidad inicial de un búfer nuevo. */
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private final BlockingQueue<PooledBuffer> idle;
+    private final int maxRetainedBytes;
+    private final LongAdder allocations = new LongAdder();
+
+    /**
+     * @param size número máximo de búferes libres retenidos (0 para usar el número de procesadores)
+     * @param maxRetainedBytes capacidad máxima (en bytes) de un búfer para volver al conjunto
+     */
+    public PdfBufferPool(@Value("${dinadocs.pdf.buffer-pool.size:0}") int size,
+                         @Value("${dinadocs.pdf.buffer-pool.max-retained-size:8388608}") int maxRetainedBytes) {
+        this.idle = new ArrayBlockingQueue<>(size > 0 ? size : Runtime.getRuntime().availableProcessors());
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    /**
+     * Obtiene un búfer vacío. Debe devolverse con {@link PooledBuffer#release()} al terminar.
+     *
+     * @return el búfer
+     */
+    public PooledBuffer acquire() {
+        PooledBuffer buffer = idle.poll();
+        if (buffer == null) {
+            allocations.increment();
+            buffer = new PooledBuffer(this);
+        }
+        buffer.released = false;
+        return buffer;
+    }
+
+    private void recycle(PooledBuffer buffer) {
+        if (buffer.capacity() <= maxRetainedBytes) {
+            buffer.reset();
+            idle.offer(buffer);
+        }
+    }
+
+    /**
+     * @return número de búferes libres
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return número de búferes creados
+     */
+    public long getAllocationCount() {
+        return allocations.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("dinadocs.pdf.buffer.pool.idle", idle, BlockingQueue::size)
+                .description("Búferes de salida de PDF libres")
+                .register(registry);
+        FunctionCounter.builder("dinadocs.pdf.buffer.pool.allocations", allocations, LongAdder::sum)
+                .description("Búferes de salida de PDF creados por no haber ninguno libre")
+                .register(registry);
+    }
+
+    /**
+     * Búfer de salida de un PDF, que expone su contenido sin copiarlo.
+     */
+    public static final class PooledBuffer extends ByteArrayOutputStream {
+
+        private final PdfBufferPool pool;
+        private boolean released;
+
+        private PooledBuffer(PdfBufferPool pool) {
+            super(INITIAL_CAPACITY);
+            this.pool = pool;
+        }
+
+        /**
+         * @return una vista del contenido escrito, válida hasta {@link #release()}
+         */
+        public synchronized ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        synchronized int capacity() {
+            return buf.length;
+        }
+
+        /**
+         * Devuelve el búfer al conjunto. Las llamadas repetidas no tienen efecto.
+         */
+        public void release() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            pool.recycle(this);
+        }
+
+        /**
+         * Marca el búfer como liberado sin devolverlo al conjunto. Se usa cuando el renderizado
+         * falla o se interrumpe la espera: la tarea puede seguir escribiendo en él, así que no
+         * debe entregarse a otra solicitud.
+         */
+        public synchronized void discard() {
+            released = true;
+        }
+    }
+}
@@ -1,18 +1,46 @@
 package com.example.dinadocs.services;
 
+import com.example.dinadocs.cache.ContentHash;
+import com.example.dinadocs.models.BatchGenerationRequest;
 import com.example.dinadocs.models.GenerationRequest;
+import com.example.dinadocs.models.PlaceholderTrie;
 import com.example.dinadocs.models.Template;
-import com.example.dinadocs.repositories.TemplateRepository;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
-import org.jsoup.nodes.Document;
-import org.jsoup.Jsoup;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import org.jsoup.helper.W3CDom;
+import org.jsoup.parser.Parser;
 import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Servicio (capa de lógica de negocio) para el módulo de generación de PDFs.
@@ -23,17 +51,56 @@ import java.util.List;
 @Service
 public class PdfGenerationService {
 
-    private final TemplateRepository templateRepository;
+    /** Tamaño del búfer de la tubería entre la fusión Mustache y el parser HTML. */
+    private static final int PIPE_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Ejecuta la fusión Mustache, que escribe en la tubería que lee el renderizado. Son hilos de
+     * plataforma: las esperas de {@link PipedReader}/{@link PipedWriter} son {@code synchronized}
+     * y en un hilo virtual bloquearían su hilo portador. Hay como mucho uno por renderizado en
+     * curso, así que su número ya está acotado por el {@link RenderExecutor}.
+     */
+    private static final Executor MERGE_EXECUTOR =
+            Executors.newCachedThreadPool(Thread.ofPlatform().name("dinadocs-merge-", 0).daemon(true).factory());
+
+    /** Número máximo de errores detallados en la entrada {@code errores.txt} de un lote. */
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final TemplateSnapshotCache templateCache;
     private final TemplateProcessor templateProcessor;
+    private final PdfRendererFactory rendererFactory;
+    private final RenderExecutor renderExecutor;
+    private final PdfMerger pdfMerger;
+    private final RenderedPdfCache pdfCache;
+    private final PdfBufferPool bufferPool;
+    private final SectionChunker sectionChunker;
+    private final RenderEngines renderEngines;
 
     /**
      * Constructor para inyección de dependencias.
-     * @param templateRepository Repositorio para acceder a las plantillas en la BD.
+     * @param templateCache Caché de lectura de las plantillas de la BD.
      * @param templateProcessor Procesador de plantillas para la fusión de datos.
+     * @param rendererFactory Fábrica de renderizadores con las fuentes ya registradas.
+     * @param renderExecutor Ejecutor acotado en el que se fusiona y renderiza cada documento.
+     * @param pdfMerger Concatenador de PDFs para la salida por lotes en un único documento.
+     * @param pdfCache Caché de PDFs ya renderizados, por versión de plantilla y datos.
+     * @param bufferPool Búferes reutilizables en los que se escribe cada PDF.
+     * @param sectionChunker Divide en bloques los documentos con secciones repetidas muy largas.
+     * @param renderEngines Motores de renderizado; cada plantilla usa el elegido al guardarla.
      */
-    public PdfGenerationService(TemplateRepository templateRepository, TemplateProcessor templateProcessor) {
-        this.templateRepository = templateRepository;
+    public PdfGenerationService(TemplateSnapshotCache templateCache, TemplateProcessor templateProcessor,
+                                PdfRendererFactory rendererFactory, RenderExecutor renderExecutor,
+                                PdfMerger pdfMerger, RenderedPdfCache pdfCache, PdfBufferPool bufferPool,
+                                SectionChunker sectionChunker, RenderEngines renderEngines) {
+        this.templateCache = templateCache;
         this.templateProcessor = templateProcessor;
+        this.rendererFactory = rendererFactory;
+        this.renderExecutor = renderExecutor;
+        this.pdfMerger = pdfMerger;
+        this.pdfCache = pdfCache;
+        this.bufferPool = bufferPool;
+        this.sectionChunker = sectionChunker;
+        this.renderEngines = renderEngines;
     }
    
     /**
@@ -43,24 +110,439 @@ public class PdfGenerationService {
      * @return Un array de bytes (byte[]) que representa el archivo PDF generado.
      * @throws IllegalArgumentException Si la validación de datos falla.
      * @throws NoSuchElementException Si el 'templateType' no se encuentra en la BD.
+     * @throws RenderRejectedException Si la cola de renderizado está llena.
      * @throws RuntimeException Si la conversión de PDF falla.
      */
     public byte[] generatePdf(GenerationRequest request) {
-        
+        try (RenderedPdf document = generateDocument(request, null)) {
+            return document.content();
+        }
+    }
+
+    /**
+     * Genera el PDF de una solicitud junto con su {@code ETag}, reutilizando los documentos ya
+     * renderizados con la misma versión de plantilla y los mismos datos (ver {@link RenderedPdfCache}).
+     * Si el cliente ya tiene esa versión ({@code If-None-Match}), no se renderiza nada.
+     *
+     * <p>El PDF se renderiza en un búfer de {@link PdfBufferPool}, que se devuelve al cerrar el
+     * documento; quien lo llama debe cerrarlo después de escribir el cuerpo.
+     *
+     * @param request El DTO (GenerationRequest) con el tipo de plantilla y los datos.
+     * @param ifNoneMatch El valor de la cabecera {@code If-None-Match}, o null.
+     * @return El documento; su cuerpo es null si el cliente ya tiene esa versión.
+     * @throws IllegalArgumentException Si la validación de datos falla.
+     * @throws NoSuchElementException Si el 'templateType' no se encuentra en la BD.
+     * @throws RenderRejectedException Si la cola de renderizado está llena.
+     * @throws RuntimeException Si la conversión de PDF falla.
+     */
+    public RenderedPdf generateDocument(GenerationRequest request, String ifNoneMatch) {
+
         validateData(request);
 
-        String templateType = request.getTemplateType();
-        Template template = loadTemplateByType(templateType);
+        Template template = loadTemplate(request.getTemplateType(), request.getTemplateVersion());
         Map<String, Object> data = request.getData();
 
+        String key = pdfCache.key(contentHash(template), data);
+        String etag = "\"" + key + "\"";
+        if (matchesEtag(ifNoneMatch, etag)) {
+            return RenderedPdf.notModified(etag);
+        }
+        ByteBuffer cached = pdfCache.get(key);
+        if (cached != null) {
+            return new RenderedPdf(etag, cached);
+        }
+
         validatePlaceholders(template, data);
 
-        // Procesar la plantilla dinámicamente usando TemplateProcessor
-        String processedTemplate = templateProcessor.processTemplate(template.getContent(), data);
+        // Fusionar y maquetar en el ejecutor de renderizado, sobre un búfer reutilizable
+        PdfBufferPool.PooledBuffer buffer = bufferPool.acquire();
+        try {
+            renderTo(template, data, buffer, true);
+        } catch (RuntimeException e) {
+            // Si se interrumpió la espera, la maquetación puede seguir escribiendo en el búfer:
+            // no se devuelve al conjunto, para que no lo reciba (ni lo cachee) otra solicitud
+            buffer.discard();
+            throw e;
+        }
+        ByteBuffer pdf = buffer.asByteBuffer();
+        pdfCache.put(key, pdf);
+        return new RenderedPdf(etag, pdf, buffer::release);
+    }
+
+    /**
+     * Comprueba si alguna de las etiquetas de {@code If-None-Match} coincide con la del documento.
+     * Se aceptan listas separadas por comas, etiquetas débiles ({@code W/}) y el comodín {@code *}.
+     */
+    static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * PDF generado y su {@code ETag} (la clave de contenido entre comillas).
+     * El cuerpo puede ser un array de la caché en memoria, un fichero proyectado en memoria
+     * (aciertos de la caché en disco) o un búfer reutilizable recién renderizado; en los dos
+     * últimos casos conviene escribirlo con {@link #writeTo} y cerrar el documento después.
+     *
+     * @param etag la etiqueta de la versión del documento
+     * @param body el PDF, o null si el cliente ya tiene esa versión
+     * @param release acción que devuelve el búfer al cerrar el documento, o null
+     */
+    public record RenderedPdf(String etag, ByteBuffer body, Runnable release) implements AutoCloseable {
+
+        /**
+         * @param etag la etiqueta de la versión del documento
+         * @param body el PDF
+         */
+        public RenderedPdf(String etag, ByteBuffer body) {
+            this(etag, body, null);
+        }
+
+        /**
+         * @param etag la etiqueta de la versión del documento
+         * @param content el PDF
+         */
+        public RenderedPdf(String etag, byte[] content) {
+            this(etag, ByteBuffer.wrap(content), null);
+        }
+
+        /**
+         * @param etag la etiqueta que el cliente ya tiene
+         * @return un documento sin cuerpo (respuesta 304)
+         */
+        public static RenderedPdf notModified(String etag) {
+            return new RenderedPdf(etag, (ByteBuffer) null, null);
+        }
+
+        /**
+         * @return true si el cliente ya tiene esta versión y no hay que enviar el contenido
+         */
+        public boolean isNotModified() {
+            return body == null;
+        }
+
+        /**
+         * @return true si el cuerpo es un array propio en el heap, que puede enviarse tal cual
+         */
+        public boolean isInMemory() {
+            return body != null && body.hasArray() && release == null;
+        }
+
+        /**
+         * @return el tamaño del PDF en bytes
+         */
+        public int size() {
+            return body == null ? 0 : body.remaining();
+        }
+
+        /**
+         * Devuelve el PDF como array. Solo se evita la copia si el cuerpo es un array propio.
+         *
+         * @return el PDF, o null si el cliente ya tiene esa versión
+         */
+        public byte[] content() {
+            if (body == null) {
+                return null;
+            }
+            if (release == null && body.hasArray() && body.arrayOffset() == 0 && body.position() == 0
+                    && body.remaining() == body.array().length) {
+                return body.array();
+            }
+            byte[] copy = new byte[body.remaining()];
+            body.duplicate().get(copy);
+            return copy;
+        }
+
+        /**
+         * Escribe el PDF sin copiarlo entero al heap.
+         *
+         * @param out el flujo de salida (no se cierra)
+         * @throws IOException si falla la escritura
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            if (body.hasArray()) {
+                out.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+                return;
+            }
+            WritableByteChannel channel = Channels.newChannel(out);
+            ByteBuffer remaining = body.duplicate();
+            while (remaining.hasRemaining()) {
+                channel.write(remaining);
+            }
+        }
+
+        /**
+         * Devuelve el búfer reutilizable, si lo hay. El cuerpo deja de ser válido.
+         */
+        @Override
+        public void close() {
+            if (release != null) {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Valida una solicitud de generación por lotes y carga su plantilla una sola vez.
+     * Se llama antes de empezar a escribir la respuesta, para poder responder 400/404.
+     *
+     * @param request El DTO con el tipo de plantilla y las filas de datos.
+     * @return La plantilla a usar para todas las filas.
+     * @throws IllegalArgumentException Si no hay filas, alguna fila está vacía o falta el 'templateType'.
+     * @throws NoSuchElementException Si el 'templateType' no se encuentra en la BD.
+     */
+    public Template prepareBatch(BatchGenerationRequest request) {
+        List<Map<String, Object>> rows = request.getData();
+        if (rows == null || rows.isEmpty()) {
+            throw new IllegalArgumentException("Las filas de datos (data) del lote no pueden estar vacías.");
+        }
+        if (request.getTemplateType() == null || request.getTemplateType().trim().isEmpty()) {
+            throw new IllegalArgumentException("El tipo de plantilla (templateType) no puede estar vacío.");
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i) == null || rows.get(i).isEmpty()) {
+                throw new IllegalArgumentException("La fila " + (i + 1) + " del lote no tiene datos.");
+            }
+        }
+        return loadTemplate(request.getTemplateType(), request.getTemplateVersion());
+    }
 
-        byte[] pdfBytes = convertHtmlToPdf(processedTemplate);
-        
-        return pdfBytes;
+    /**
+     * Admite un lote en el ejecutor de renderizado. Se llama antes de empezar a escribir la
+     * respuesta, para poder responder 429 si el servicio está saturado; el lote admitido ya no
+     * se rechaza a medias. Reserva como mucho el doble de plazas que hilos de renderizado: una
+     * fila por hilo y otra esperando, para que los hilos no se paren mientras se escribe.
+     *
+     * @return el lote, que hay que cerrar al terminar de escribir la respuesta
+     * @throws RenderRejectedException Si la cola de renderizado está llena.
+     */
+    public RenderExecutor.Batch openBatch() {
+        return renderExecutor.openBatch(2 * renderExecutor.getThreadCount());
+    }
+
+    /**
+     * Genera un PDF por fila con la misma plantilla y los escribe en flujo como un archivo ZIP.
+     * La plantilla se compila una sola vez (caché de {@link TemplateProcessor}) y las filas se
+     * renderizan en paralelo en el ejecutor de renderizado, con las plazas reservadas al lote.
+     *
+     * <p>Como mucho tantas filas como plazas tiene el lote están en curso a la vez: las entradas
+     * se escriben en la respuesta en el orden de las filas, cada una en cuanto están listas ella y
+     * las anteriores, y solo entonces se lanza la fila siguiente. Así la memoria usada no depende
+     * del tamaño del lote. Una fila que falla no interrumpe el lote: su error se anota en la
+     * entrada {@code errores.txt}, que se escribe al final.
+     *
+     * @param template La plantilla obtenida con {@link #prepareBatch(BatchGenerationRequest)}.
+     * @param rows Las filas de datos.
+     * @param batch El lote obtenido con {@link #openBatch()} (no se cierra).
+     * @param out El flujo donde se escribe el ZIP (no se cierra).
+     * @throws IOException Si falla la escritura del ZIP (por ejemplo, si el cliente se desconecta).
+     */
+    public void writeBatchZip(Template template, List<Map<String, Object>> rows, RenderExecutor.Batch batch,
+                              OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // Los PDFs ya van comprimidos: se prioriza la velocidad
+        zip.setLevel(Deflater.BEST_SPEED);
+        // Se conserva el orden de las filas: como mucho una ventana de filas por delante de la que se escribe
+        Deque<Future<BatchEntry>> inFlight = new ArrayDeque<>();
+        StringBuilder errors = new StringBuilder();
+        int failures = 0;
+        int next = 0;
+        try {
+            while (next < rows.size() && inFlight.size() < batch.getParallelism()) {
+                inFlight.add(submitBatchRow(batch, template, next, rows.get(next)));
+                next++;
+            }
+            while (!inFlight.isEmpty()) {
+                BatchEntry entry = inFlight.poll().get();
+                if (next < rows.size()) {
+                    inFlight.add(submitBatchRow(batch, template, next, rows.get(next)));
+                    next++;
+                }
+
+                if (entry.pdf() != null) {
+                    zip.putNextEntry(new ZipEntry(batchEntryName(template.getName(), entry.index(), rows.size())));
+                    zip.write(entry.pdf());
+                    zip.closeEntry();
+                    zip.flush();
+                } else if (++failures <= MAX_REPORTED_ERRORS) {
+                    errors.append("Fila ").append(entry.index() + 1).append(": ").append(entry.error()).append('\n');
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("La generación del lote fue interrumpida.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error interno al generar el lote: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            // Si la escritura falla, no se sigue renderizando para un cliente que ya no lee
+            inFlight.forEach(future -> future.cancel(true));
+        }
+
+        if (failures > 0) {
+            if (failures > MAX_REPORTED_ERRORS) {
+                errors.append("... y ").append(failures - MAX_REPORTED_ERRORS).append(" filas más con errores.\n");
+            }
+            zip.putNextEntry(new ZipEntry("errores.txt"));
+            zip.write(errors.toString().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Genera un PDF por fila con la misma plantilla y los concatena, en el orden de las filas,
+     * en un único PDF (por ejemplo, para envíos postales). Las filas se renderizan en paralelo
+     * en el ejecutor de renderizado, con la misma ventana acotada que {@link #writeBatchZip};
+     * cada PDF se añade a la fusión (ver {@link PdfMerger}) en cuanto le toca y se descarta.
+     * Como el resultado solo se escribe al final, una fila que falla cancela el lote antes de
+     * enviar ningún byte.
+     *
+     * @param template La plantilla obtenida con {@link #prepareBatch(BatchGenerationRequest)}.
+     * @param rows Las filas de datos.
+     * @param batch El lote obtenido con {@link #openBatch()} (no se cierra).
+     * @param out El flujo donde se escribe el PDF (no se cierra).
+     * @throws IOException Si falla la fusión o la escritura.
+     * @throws IllegalStateException Si alguna fila no se pudo generar.
+     */
+    public void writeMergedPdf(Template template, List<Map<String, Object>> rows, RenderExecutor.Batch batch,
+                               OutputStream out) throws IOException {
+        // Se conserva el orden de las filas: como mucho una ventana de filas por delante de la que se añade
+        Deque<Future<BatchEntry>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        try (PdfMerger.Merge merge = pdfMerger.open()) {
+            while (next < rows.size() && inFlight.size() < batch.getParallelism()) {
+                inFlight.add(submitBatchRow(batch, template, next, rows.get(next)));
+                next++;
+            }
+            while (!inFlight.isEmpty()) {
+                BatchEntry entry = inFlight.poll().get();
+                if (next < rows.size()) {
+                    inFlight.add(submitBatchRow(batch, template, next, rows.get(next)));
+                    next++;
+                }
+                if (entry.pdf() == null) {
+                    throw new IllegalStateException("La fila " + (entry.index() + 1) + " no se pudo generar: " + entry.error());
+                }
+                merge.append(entry.pdf());
+            }
+            merge.writeTo(out);
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("La generación del lote fue interrumpida.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error interno al generar el lote: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private Future<BatchEntry> submitBatchRow(RenderExecutor.Batch batch, Template template, int index,
+                                              Map<String, Object> data) {
+        FutureTask<BatchEntry> row = new FutureTask<>(() -> renderBatchRow(template, index, data));
+        batch.execute(row);
+        return row;
+    }
+
+    private BatchEntry renderBatchRow(Template template, int index, Map<String, Object> data) {
+        try {
+            validatePlaceholders(template, data);
+            return new BatchEntry(index, render(template, data), null);
+        } catch (RuntimeException e) {
+            return new BatchEntry(index, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Nombre de la entrada ZIP de una fila: el nombre de la plantilla (solo caracteres seguros)
+     * y el número de fila con ceros a la izquierda, para que el orden alfabético sea el del lote.
+     */
+    static String batchEntryName(String templateName, int index, int total) {
+        String safeName = templateName.replaceAll("[^A-Za-z0-9_-]", "_");
+        int digits = String.valueOf(total).length();
+        return String.format("%s_%0" + digits + "d.pdf", safeName, index + 1);
+    }
+
+    /**
+     * PDF generado para una fila de un lote, o el motivo por el que falló.
+     */
+    private record BatchEntry(int index, byte[] pdf, String error) {
+    }
+
+    /**
+     * Fusiona la plantilla con los datos y la convierte a PDF; la salida de Mustache
+     * se parsea en flujo mientras se genera.
+     */
+    private byte[] render(Template template, Map<String, Object> data) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        // Las filas de los lotes ya se renderizan en el ejecutor de renderizado, con plaza reservada
+        renderTo(template, data, outputStream, false);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Fusiona la plantilla con los datos y escribe el PDF en el flujo indicado, con el motor
+     * elegido al guardar la plantilla (ver {@link RenderEngines}). Si una sección repetida es
+     * muy larga, el documento se renderiza por bloques con Flying Saucer (ver {@link SectionChunker}).
+     *
+     * <p>Con {@code onRenderExecutor}, todo el renderizado (fusión, parseo y maquetación de todos
+     * los bloques) es una sola tarea del {@link RenderExecutor}: la admisión se decide antes de
+     * fusionar nada y un documento admitido ya no se rechaza a medias.
+     *
+     * @param template la plantilla a renderizar
+     * @param data los datos proporcionados por el usuario
+     * @param outputStream el flujo de salida (no se cierra)
+     * @param onRenderExecutor true para renderizar en el ejecutor de renderizado
+     * @throws RenderRejectedException Si la cola de renderizado está llena.
+     */
+    private void renderTo(Template template, Map<String, Object> data, OutputStream outputStream,
+                          boolean onRenderExecutor) {
+        if (onRenderExecutor) {
+            renderExecutor.execute(() -> {
+                renderNow(template, data, outputStream);
+                return null;
+            });
+        } else {
+            renderNow(template, data, outputStream);
+        }
+    }
+
+    /**
+     * Renderiza el documento en el hilo actual.
+     *
+     * @param template la plantilla a renderizar
+     * @param data los datos proporcionados por el usuario
+     * @param outputStream el flujo de salida (no se cierra)
+     */
+    private void renderNow(Template template, Map<String, Object> data, OutputStream outputStream) {
+        String content = renderableContent(template);
+        SectionChunker.ChunkPlan plan = sectionChunker.plan(content, data);
+        if (plan != null) {
+            convertChunksToPdf(template, plan, data, outputStream);
+            return;
+        }
+        Document document = mergeToDocument(template, content, data);
+        RenderEngine engine = renderEngines.get(template.getRenderEngine());
+        try {
+            engine.render(document, outputStream);
+        } catch (LiteEngineUnsupportedException e) {
+            // El motor no ha escrito nada: se repite con el motor completo en la misma tarea admitida
+            System.out.println("Advertencia: La plantilla '" + template.getName() + "' no se pudo renderizar con el motor '"
+                    + engine.getName() + "', se usará el motor completo: " + e.getMessage());
+            renderEngines.getDefault().render(document, outputStream);
+        }
     }
 
     /**
@@ -68,7 +550,7 @@ public class PdfGenerationService {
      * @param request El DTO de la solicitud.
      * @throws IllegalArgumentException Si 'data' o 'templateType' son nulos o vacíos.
      */
-    private void validateData(GenerationRequest request) {
+    void validateData(GenerationRequest request) {
         Map<String, Object> data = request.getData();
 
         if (data == null || data.isEmpty()) {
@@ -80,86 +562,190 @@ public class PdfGenerationService {
     }
 
     /**
-     * Carga la entidad Template desde la base de datos usando el 'templateType'.
+     * Carga la plantilla usando el 'templateType', desde {@link TemplateSnapshotCache}:
+     * una plantilla ya usada no vuelve a consultarse en la base de datos. El nombre se compara
+     * sin distinguir mayúsculas ni acentos (ver {@link com.example.dinadocs.models.TemplateNames}).
      * @param templateType El nombre (identificador) de la plantilla.
-     * @return La entidad Template.
+     * @return La plantilla (copia compartida, que no debe modificarse).
      * @throws NoSuchElementException Si no se encuentra una plantilla con ese nombre.
      */
     public Template loadTemplateByType(String templateType) {
-        return templateRepository.findByName(templateType)
+        return templateCache.getByName(templateType)
                 .orElseThrow(() -> new NoSuchElementException("La plantilla '" + templateType + "' no existe."));
     }
 
+    /**
+     * Carga la plantilla usando el 'templateType' y, si se indica, con el contenido de una
+     * versión concreta (ver {@link TemplateSnapshotCache#getVersion}).
+     * @param templateType El nombre (identificador) de la plantilla.
+     * @param templateVersion El número de la versión, o null para la actual.
+     * @return La plantilla (copia compartida, que no debe modificarse).
+     * @throws NoSuchElementException Si no se encuentra la plantilla o la versión.
+     */
+    public Template loadTemplate(String templateType, Integer templateVersion) {
+        Template template = loadTemplateByType(templateType);
+        if (templateVersion == null) {
+            return template;
+        }
+        return templateCache.getVersion(template, templateVersion)
+                .orElseThrow(() -> new NoSuchElementException(
+                        "La versión " + templateVersion + " de la plantilla '" + templateType + "' no existe."));
+    }
+
+    /**
+     * Devuelve el hash del contenido que se fusiona, que identifica la versión de la plantilla:
+     * el guardado en su versión o, si no tiene ninguna, el calculado en el momento.
+     * @param template la plantilla a renderizar
+     * @return el SHA-256 del contenido en hexadecimal
+     */
+    private String contentHash(Template template) {
+        if (template.getCurrentVersion() != null) {
+            return template.getCurrentVersion().getContentHash();
+        }
+        return ContentHash.sha256(renderableContent(template));
+    }
+
+    /**
+     * Devuelve el contenido a fusionar: la forma compilada (XHTML normalizado al guardar)
+     * o, para plantillas anteriores a la compilación en escritura, el contenido original.
+     * @param template la plantilla a renderizar
+     * @return el contenido Mustache a procesar
+     */
+    private String renderableContent(Template template) {
+        return template.getCompiledContent() != null ? template.getCompiledContent() : template.getContent();
+    }
+
     /**
      * Valida que todos los marcadores de posición (placeholders) requeridos por la plantilla
      * estén presentes en los datos proporcionados.
+     * Usa el trie de claves precalculado al guardar la plantilla, de modo que los datos
+     * se recorren una sola vez; las claves faltantes solo generan una advertencia.
      *
      * @param template La plantilla que contiene los placeholders requeridos.
      * @param data Los datos proporcionados por el usuario.
-     * @throws IllegalArgumentException Si falta algún placeholder requerido.
      */
     private void validatePlaceholders(Template template, Map<String, Object> data) {
-        for (String placeholder : template.getPlaceholders()) {
-            String normalizedPlaceholder = placeholder.replace("#", "");
-
-            if (!data.containsKey(normalizedPlaceholder)) {
-                System.out.println("Advertencia: Falta el dato para el marcador de posición opcional: " + placeholder);
-                continue;
-            }
+        PlaceholderTrie trie = template.getValidationTrie();
+        if (trie == null && template.getPlaceholderSchema() != null) {
+            trie = PlaceholderTrie.fromSchema(template.getPlaceholderSchema());
+        }
+        if (trie == null || trie.isEmpty()) {
+            return;
+        }
+        for (String placeholder : trie.findMissing(data)) {
+            System.out.println("Advertencia: Falta el dato para el marcador de posición opcional: " + placeholder);
+        }
+    }
 
-            Object value = data.get(normalizedPlaceholder);
-            if (value == null) {
-                System.out.println("Advertencia: El valor para el marcador de posición opcional '" + placeholder + "' es nulo.");
-                continue;
+    /**
+     * Fusiona la plantilla con los datos y construye el DOM que consume el renderizador.
+     * Las plantillas marcadas como XHTML al guardarse se leen directamente con el parser XML;
+     * si la salida fusionada no resulta XML bien formado se repite la fusión con jsoup.
+     *
+     * @param template la plantilla a renderizar
+     * @param content el contenido Mustache a fusionar (el de la plantilla o el de un bloque)
+     * @param data los datos proporcionados por el usuario
+     * @return el documento W3C listo para el renderizador
+     * @throws RuntimeException si la fusión o el parseo fallan
+     */
+    private Document mergeToDocument(Template template, String content, Map<String, Object> data) {
+        if (template.isXhtmlReady()) {
+            try {
+                return merge(template, content, data, XhtmlDocuments::parse);
+            } catch (SAXException e) {
+                System.out.println("Advertencia: La plantilla '" + template.getName()
+                        + "' no produjo XHTML válido, se usará el parser HTML: " + e.getMessage());
             }
+        }
+        return merge(template, content, data, reader ->
+                // jsoup requiere un Reader con soporte de mark/reset
+                new W3CDom().fromJsoup(Parser.htmlParser().parseInput(new BufferedReader(reader, PIPE_BUFFER_SIZE), "")));
+    }
 
-            if (value instanceof List) {
-                List<?> list = (List<?>) value;
-                for (Object item : list) {
-                    if (item instanceof Map) {
-                        Map<?, ?> itemMap = (Map<?, ?>) item;
-                        for (String subPlaceholder : template.getPlaceholders()) {
-                            if (subPlaceholder.startsWith(normalizedPlaceholder + ".")) {
-                                String subKey = subPlaceholder.replace(normalizedPlaceholder + ".", "");
-                                if (!itemMap.containsKey(subKey)) {
-                                    System.out.println("Advertencia: Falta el dato para el marcador de posición opcional: " + subPlaceholder);
-                                }
-                            }
-                        }
-                    }
+    /**
+     * Fusiona la plantilla sin materializar el HTML fusionado como cadena: Mustache escribe
+     * en un hilo de {@link #MERGE_EXECUTOR} sobre una tubería ({@link PipedWriter}) y el parser
+     * lee desde el otro extremo, en el hilo del renderizado, a medida que llegan los caracteres.
+     *
+     * @param template la plantilla a renderizar
+     * @param content el contenido Mustache a fusionar
+     * @param data los datos proporcionados por el usuario
+     * @param parser el parser que construye el DOM a partir de la salida fusionada
+     * @return el documento W3C listo para el renderizador
+     * @throws E si el parser rechaza el contenido
+     * @throws RuntimeException si la fusión falla
+     */
+    private <E extends Exception> Document merge(Template template, String content, Map<String, Object> data,
+                                                             DocumentParser<E> parser) throws E {
+        try (PipedReader reader = new PipedReader(PIPE_BUFFER_SIZE)) {
+            PipedWriter pipe = new PipedWriter(reader);
+            CompletableFuture<Void> merge = CompletableFuture.runAsync(() -> {
+                try (Writer writer = pipe) {
+                    templateProcessor.processTemplate(template.getId(), content, data, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-            }
+            }, MERGE_EXECUTOR);
+
+            Document document = parser.parse(reader);
+            merge.join();
+            return document;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Error interno al fusionar la plantilla: " + cause.getMessage(), cause);
+        } catch (IOException e) {
+            throw new RuntimeException("Error interno al fusionar la plantilla: " + e.getMessage(), e);
         }
     }
 
     /**
+     * Construye un documento W3C a partir de la salida de la fusión.
+     *
+     * @param <E> excepción que lanza el parser si rechaza el contenido
+     */
+    @FunctionalInterface
+    private interface DocumentParser<E extends Exception> {
+        Document parse(Reader reader) throws IOException, E;
+    }
+
+    /**
+     * Renderiza un documento por bloques con un único renderizador: cada bloque se fusiona,
+     * se maqueta y se añade al PDF con {@link ITextRenderer#writeNextDocument(int)}, de modo
+     * que el DOM y el árbol de maquetación del bloque anterior se liberan antes del siguiente.
      *
-     * @param htmlContent El string de HTML/CSS ya fusionado.
-     * @return El archivo PDF como un array de bytes.
+     * @param template la plantilla a renderizar
+     * @param plan el reparto en bloques
+     * @param data los datos proporcionados por el usuario
+     * @param outputStream el flujo de salida (no se cierra)
      * @throws RuntimeException Si la conversión falla.
      */
-    private byte[] convertHtmlToPdf(String htmlContent) {
+    private void convertChunksToPdf(Template template, SectionChunker.ChunkPlan plan, Map<String, Object> data,
+                                    OutputStream outputStream) {
+        ITextRenderer renderer = rendererFactory.createRenderer();
         try {
-            Document document = Jsoup.parse(htmlContent);
-            document.outputSettings().syntax(Document.OutputSettings.Syntax.xml);
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-            ITextRenderer renderer = new ITextRenderer();
-            
-            renderer.setDocumentFromString(document.html());
-            
-            renderer.layout();
-            renderer.createPDF(outputStream);
-
-            byte[] pdfBytes = outputStream.toByteArray();
-            
-            outputStream.close();
-
-            return pdfBytes;
-
-        } catch (Exception e) {
-            throw new RuntimeException("Error interno al convertir HTML a PDF: " + e.getMessage(), e);
+            int pagesWritten = 0;
+            int chunks = plan.chunkCount();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                Document document = mergeToDocument(template, plan.contentFor(chunk), plan.dataFor(chunk, data));
+                try {
+                    renderer.setDocument(document, rendererFactory.getBaseUrl(), rendererFactory.getNamespaceHandler());
+                    renderer.layout();
+                    if (chunk == 0) {
+                        renderer.createPDF(outputStream, false);
+                    } else {
+                        // La numeración de páginas continúa la del bloque anterior
+                        renderer.writeNextDocument(pagesWritten + 1);
+                    }
+                    if (chunk == chunks - 1) {
+                        renderer.finishPDF();
+                    }
+                    pagesWritten += renderer.getRootBox().getLayer().getPages().size();
+                } catch (Exception e) {
+                    throw new RuntimeException("Error interno al convertir HTML a PDF: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            rendererFactory.release(renderer);
         }
     }
 }
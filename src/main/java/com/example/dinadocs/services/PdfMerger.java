@@ -0,0 +1,249 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.cache.ContentHash;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Concatena varios PDFs en uno solo con PDFBox, usando memoria acotada.
+ *
+ * <p>El documento de destino usa {@link MemoryUsageSetting#setupMixed(long)}: los flujos
+ * (contenido de páginas, imágenes, fuentes) se guardan en memoria hasta el límite configurado
+ * y el resto se vuelca a ficheros temporales. Cada PDF de origen se cierra en cuanto sus
+ * páginas se copian al destino.
+ *
+ * <p>Antes de escribir el resultado, las fuentes e imágenes que se repiten entre documentos
+ * (por ejemplo, el logotipo de cada factura) se sustituyen por una única copia, identificada
+ * por el SHA-256 de su contenido, de modo que el PDF final solo las incluye una vez.
+ */
+@Component
+public class PdfMerger {
+
+    private final long maxMainMemoryBytes;
+    private final File tempDirectory;
+
+    /**
+     * @param maxMainMemoryBytes memoria máxima (en bytes) para los flujos de una fusión antes de usar ficheros temporales
+     * @param tempDirectory directorio de los ficheros temporales (vacío para el del sistema)
+     */
+    public PdfMerger(@Value("${dinadocs.pdf.merge.max-main-memory:16777216}") long maxMainMemoryBytes,
+                     @Value("${dinadocs.pdf.merge.temp-dir:}") String tempDirectory) {
+        this.maxMainMemoryBytes = maxMainMemoryBytes;
+        this.tempDirectory = tempDirectory == null || tempDirectory.isBlank() ? null : new File(tempDirectory.trim());
+    }
+
+    /**
+     * Abre una fusión nueva. Debe cerrarse al terminar para liberar los ficheros temporales.
+     *
+     * @return la fusión
+     */
+    public Merge open() {
+        return new Merge(memoryUsage());
+    }
+
+    private MemoryUsageSetting memoryUsage() {
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+        if (tempDirectory != null) {
+            setting.setTempDir(tempDirectory);
+        }
+        return setting;
+    }
+
+    /**
+     * Una fusión en curso: se le añaden PDFs en orden y al final se escribe el resultado.
+     */
+    public static final class Merge implements Closeable {
+
+        private final MemoryUsageSetting memoryUsage;
+        private final PDDocument destination;
+        private final PDFMergerUtility merger = new PDFMergerUtility();
+        private int sharedResources;
+
+        private Merge(MemoryUsageSetting memoryUsage) {
+            this.memoryUsage = memoryUsage;
+            this.destination = new PDDocument(memoryUsage);
+        }
+
+        /**
+         * Añade las páginas de un PDF al final del documento fusionado.
+         *
+         * @param pdf el PDF a añadir
+         * @throws IOException si el PDF no se puede leer
+         */
+        public void append(byte[] pdf) throws IOException {
+            try (PDDocument source = PDDocument.load(pdf, "", null, null, memoryUsage)) {
+                merger.appendDocument(destination, source);
+            }
+        }
+
+        /**
+         * @return el número de páginas fusionadas hasta ahora
+         */
+        public int getPageCount() {
+            return destination.getNumberOfPages();
+        }
+
+        /**
+         * @return el número de referencias a fuentes o imágenes sustituidas por una copia compartida
+         */
+        public int getSharedResourceCount() {
+            return sharedResources;
+        }
+
+        /**
+         * Comparte las fuentes e imágenes repetidas y escribe el documento fusionado.
+         *
+         * @param out el flujo de salida (no se cierra)
+         * @throws IOException si falla la escritura
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            ResourceDeduplicator deduplicator = new ResourceDeduplicator();
+            for (PDPage page : destination.getPages()) {
+                COSBase resources = page.getCOSObject().getDictionaryObject(COSName.RESOURCES);
+                if (resources instanceof COSDictionary dictionary) {
+                    deduplicator.deduplicate(dictionary);
+                }
+            }
+            sharedResources = deduplicator.replaced;
+            destination.save(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            destination.close();
+        }
+    }
+
+    /**
+     * Sustituye, en los diccionarios de recursos, las fuentes e imágenes con el mismo
+     * contenido que otra ya vista por esa primera copia.
+     */
+    private static final class ResourceDeduplicator {
+
+        private final Map<String, COSBase> canonical = new HashMap<>();
+        private final Map<COSBase, String> digests = new IdentityHashMap<>();
+        private final Set<COSDictionary> visitedResources = Collections.newSetFromMap(new IdentityHashMap<>());
+        private int replaced;
+
+        void deduplicate(COSDictionary resources) throws IOException {
+            if (!visitedResources.add(resources)) {
+                return;
+            }
+            deduplicateCategory(resources, COSName.FONT);
+            deduplicateCategory(resources, COSName.XOBJECT);
+        }
+
+        private void deduplicateCategory(COSDictionary resources, COSName category) throws IOException {
+            if (!(resources.getDictionaryObject(category) instanceof COSDictionary entries)) {
+                return;
+            }
+            for (COSName name : entries.keySet()) {
+                COSBase value = entries.getDictionaryObject(name);
+                if (!(value instanceof COSDictionary resource)) {
+                    continue;
+                }
+                // Los formularios XObject tienen sus propios recursos
+                if (resource.getDictionaryObject(COSName.RESOURCES) instanceof COSDictionary nested) {
+                    deduplicate(nested);
+                }
+                COSBase first = canonical.putIfAbsent(digest(resource), resource);
+                if (first != null && first != resource) {
+                    entries.setItem(name, first);
+                    replaced++;
+                }
+            }
+        }
+
+        private String digest(COSBase resource) throws IOException {
+            String digest = digests.get(resource);
+            if (digest == null) {
+                MessageDigest md = ContentHash.newDigest();
+                update(md, resource, Collections.newSetFromMap(new IdentityHashMap<>()));
+                digest = HexFormat.of().formatHex(md.digest());
+                digests.put(resource, digest);
+            }
+            return digest;
+        }
+
+        private static void update(MessageDigest md, COSBase base, Set<COSBase> path) throws IOException {
+            if (base instanceof COSObject object) {
+                base = object.getObject();
+            }
+            if (base == null || base instanceof COSNull) {
+                md.update((byte) 'n');
+            } else if (base instanceof COSName name) {
+                text(md, "/" + name.getName());
+            } else if (base instanceof COSString string) {
+                md.update((byte) 's');
+                md.update(string.getBytes());
+            } else if (base instanceof COSNumber || base instanceof COSBoolean) {
+                text(md, base.toString());
+            } else if (base instanceof COSArray array) {
+                if (!path.add(array)) {
+                    md.update((byte) 'r');
+                    return;
+                }
+                md.update((byte) '[');
+                for (COSBase item : array) {
+                    update(md, item, path);
+                }
+                md.update((byte) ']');
+                path.remove(array);
+            } else if (base instanceof COSDictionary dictionary) {
+                if (!path.add(dictionary)) {
+                    md.update((byte) 'r');
+                    return;
+                }
+                md.update((byte) '<');
+                for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                    text(md, "/" + entry.getKey().getName());
+                    update(md, entry.getValue(), path);
+                }
+                md.update((byte) '>');
+                if (dictionary instanceof COSStream stream) {
+                    try (InputStream raw = stream.createRawInputStream()) {
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = raw.read(buffer)) != -1) {
+                            md.update(buffer, 0, read);
+                        }
+                    }
+                }
+                path.remove(dictionary);
+            }
+        }
+
+        private static void text(MessageDigest md, String text) {
+            md.update(text.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.cache.BoundedCache;
+import com.example.dinadocs.cache.BoundedCacheMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.xhtmlrenderer.extend.NamespaceHandler;
+import org.xhtmlrenderer.pdf.ITextFontResolver;
+import org.xhtmlrenderer.pdf.ITextOutputDevice;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fábrica de renderizadores PDF (Flying Saucer) que evita repetir en cada solicitud
+ * el trabajo costoso de preparar el contexto de renderizado.
+ *
+ * <p>Las fuentes se cargan y registran al iniciar la aplicación en un conjunto de
+ * {@link ITextFontResolver} reutilizables: cada solicitud toma uno libre, crea un
+ * {@link ITextRenderer} ligero sobre él y lo devuelve con {@link #release(ITextRenderer)}.
+ * Un resolver nunca se usa en dos documentos a la vez, porque Flying Saucer modifica su
+ * estado al importar las reglas {@code @font-face} de cada documento. Los {@code BaseFont}
+ * ya analizados se comparten entre todos los resolvers a través de la caché de OpenPDF,
+ * y el {@link NamespaceHandler} es único: conserva la hoja de estilos por defecto y una
+ * caché de las hojas {@code <style>} de las plantillas ya parseadas (ver
+ * {@link CachingXhtmlNamespaceHandler}). Las imágenes decodificadas se comparten entre
+ * renderizadores mediante {@link CachingUserAgent}.
+ *
+ * <p>Registra el temporizador {@code dinadocs.pdf.renderer.setup} (etiqueta {@code source}:
+ * {@code pool} o {@code new}), el indicador {@code dinadocs.pdf.renderer.pool.idle} y las
+ * métricas de las cachés {@code stylesheets} e {@code images} (incluido {@code cache.hit.ratio}).
+ */
+@Component
+public class PdfRendererFactory implements MeterBinder {
+
+    /** URL base de los documentos: el directorio de trabajo, como hace Flying Saucer por defecto. */
+    private static final String BASE_URL = new File(".").toURI().toString();
+
+    private final String fontsDirectory;
+    private final BlockingQueue<ITextFontResolver> idleResolvers;
+    private final BoundedCache<String, CachingXhtmlNamespaceHandler.CachedStylesheet> stylesheets;
+    private final NamespaceHandler namespaceHandler;
+    private final BoundedCache<String, CachingUserAgent.CachedImage> images;
+    private final Path imagesDirectory;
+
+    private volatile Timer pooledSetupTimer;
+    private volatile Timer newSetupTimer;
+
+    /**
+     * Crea una fábrica sin fuentes adicionales, con un resolver por procesador.
+     */
+    public PdfRendererFactory() {
+        this("", 0);
+    }
+
+    /**
+     * Crea la fábrica con los límites por defecto de las cachés de hojas de estilo e imágenes.
+     *
+     * @param fontsDirectory directorio con fuentes TTF/OTF a registrar (vacío para usar solo las fuentes base)
+     * @param poolSize número de resolvers precargados (0 para usar el número de procesadores)
+     */
+    public PdfRendererFactory(String fontsDirectory, int poolSize) {
+        this(fontsDirectory, poolSize, 128, 4L * 1024 * 1024, 256, 64L * 1024 * 1024, Duration.ofMinutes(10), "");
+    }
+
+    /**
+     * Crea la fábrica y precarga los resolvers de fuentes.
+     *
+     * @param fontsDirectory directorio con fuentes TTF/OTF a registrar (vacío para usar solo las fuentes base)
+     * @param poolSize número de resolvers precargados (0 para usar el número de procesadores)
+     * @param stylesheetMaxEntries número máximo de hojas de estilo parseadas en caché
+     * @param stylesheetMaxWeight tamaño máximo acumulado (en caracteres de CSS) de la caché de hojas de estilo
+     * @param imageMaxEntries número máximo de imágenes decodificadas en caché
+     * @param imageMaxWeight tamaño máximo acumulado (en bytes) de la caché de imágenes
+     * @param imageTtl tiempo de vida de cada imagen en caché (cero para no caducar)
+     * @param imagesDirectory directorio que sustituye a las descargas de imágenes remotas (vacío para descargar)
+     */
+    @Autowired
+    public PdfRendererFactory(@Value("${dinadocs.pdf.fonts-dir:}") String fontsDirectory,
+                              @Value("${dinadocs.pdf.renderer.pool-size:0}") int poolSize,
+                              @Value("${dinadocs.pdf.stylesheet-cache.max-entries:128}") int stylesheetMaxEntries,
+                              @Value("${dinadocs.pdf.stylesheet-cache.max-weight:4194304}") long stylesheetMaxWeight,
+                              @Value("${dinadocs.pdf.image-cache.max-entries:256}") int imageMaxEntries,
+                              @Value("${dinadocs.pdf.image-cache.max-weight:67108864}") long imageMaxWeight,
+                              @Value("${dinadocs.pdf.image-cache.ttl:10m}") Duration imageTtl,
+                              @Value("${dinadocs.pdf.images.local-dir:}") String imagesDirectory) {
+        this.stylesheets = new BoundedCache<>("stylesheets", stylesheetMaxEntries, stylesheetMaxWeight,
+                CachingXhtmlNamespaceHandler.CachedStylesheet::cssLength);
+        this.namespaceHandler = new CachingXhtmlNamespaceHandler(stylesheets);
+        this.images = new BoundedCache<>("images", imageMaxEntries, imageMaxWeight,
+                CachingUserAgent.CachedImage::size, imageTtl);
+        this.imagesDirectory = imagesDirectory == null || imagesDirectory.isBlank()
+                ? null : Path.of(imagesDirectory.trim()).toAbsolutePath().normalize();
+        this.fontsDirectory = fontsDirectory == null ? "" : fontsDirectory.trim();
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.idleResolvers = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idleResolvers.offer(newFontResolver());
+        }
+    }
+
+    /**
+     * Entrega un renderizador listo para un documento. Debe devolverse con
+     * {@link #release(ITextRenderer)} al terminar, incluso si el renderizado falla.
+     *
+     * @return un renderizador nuevo sobre un resolver de fuentes precargado
+     */
+    public ITextRenderer createRenderer() {
+        long start = System.nanoTime();
+        ITextFontResolver resolver = idleResolvers.poll();
+        boolean pooled = resolver != null;
+        if (!pooled) {
+            resolver = newFontResolver();
+        }
+        ITextOutputDevice outputDevice = new ITextOutputDevice(ITextRenderer.DEFAULT_DOTS_PER_POINT);
+        CachingUserAgent userAgent = new CachingUserAgent(outputDevice, ITextRenderer.DEFAULT_DOTS_PER_PIXEL,
+                images, imagesDirectory);
+        ITextRenderer renderer = new ITextRenderer(ITextRenderer.DEFAULT_DOTS_PER_POINT,
+                ITextRenderer.DEFAULT_DOTS_PER_PIXEL, outputDevice, userAgent, resolver);
+
+        Timer timer = pooled ? pooledSetupTimer : newSetupTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return renderer;
+    }
+
+    /**
+     * Devuelve al conjunto el resolver de fuentes de un renderizador ya usado.
+     * Si el conjunto está lleno, el resolver se descarta.
+     *
+     * @param renderer el renderizador obtenido con {@link #createRenderer()}
+     */
+    public void release(ITextRenderer renderer) {
+        if (renderer != null) {
+            idleResolvers.offer(renderer.getFontResolver());
+        }
+    }
+
+    /**
+     * Obtiene el manejador XHTML compartido que se pasa a {@code setDocument}.
+     *
+     * @return el manejador de espacio de nombres XHTML
+     */
+    public NamespaceHandler getNamespaceHandler() {
+        return namespaceHandler;
+    }
+
+    /**
+     * Obtiene la URL base con la que se resuelven las rutas relativas de los documentos.
+     *
+     * @return la URL base
+     */
+    public String getBaseUrl() {
+        return BASE_URL;
+    }
+
+    /**
+     * Expone la caché de hojas de estilo parseadas (para métricas y pruebas).
+     *
+     * @return la caché de hojas de estilo
+     */
+    public BoundedCache<String, ?> getStylesheetCache() {
+        return stylesheets;
+    }
+
+    /**
+     * Expone la caché de imágenes decodificadas (para métricas y pruebas).
+     *
+     * @return la caché de imágenes
+     */
+    public BoundedCache<String, ?> getImageCache() {
+        return images;
+    }
+
+    /**
+     * Crea un resolver con las fuentes base y las del directorio configurado ya registradas.
+     */
+    private ITextFontResolver newFontResolver() {
+        ITextFontResolver resolver = new ITextFontResolver();
+        resolver.getFonts();
+        if (!fontsDirectory.isEmpty()) {
+            if (!new File(fontsDirectory).isDirectory()) {
+                System.out.println("Advertencia: El directorio de fuentes '" + fontsDirectory + "' no existe.");
+                return resolver;
+            }
+            try {
+                resolver.addFontDirectory(fontsDirectory, true);
+            } catch (Exception e) {
+                System.out.println("Advertencia: No se pudieron registrar las fuentes de '" + fontsDirectory + "': " + e.getMessage());
+            }
+        }
+        return resolver;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        pooledSetupTimer = setupTimer("pool", registry);
+        newSetupTimer = setupTimer("new", registry);
+        Gauge.builder("dinadocs.pdf.renderer.pool.idle", idleResolvers, BlockingQueue::size)
+                .description("Resolvers de fuentes precargados disponibles")
+                .register(registry);
+        new BoundedCacheMetrics(stylesheets).bindTo(registry);
+        new BoundedCacheMetrics(images).bindTo(registry);
+    }
+
+    private static Timer setupTimer(String source, MeterRegistry registry) {
+        return Timer.builder("dinadocs.pdf.renderer.setup")
+                .description("Tiempo de preparación de un renderizador PDF")
+                .tag("source", source)
+                .register(registry);
+    }
+}
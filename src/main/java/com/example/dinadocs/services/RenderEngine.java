@@ -0,0 +1,41 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.models.Template;
+import org.w3c.dom.Document;
+
+import java.io.OutputStream;
+
+/**
+ * Motor que convierte el documento ya fusionado (DOM) en un PDF.
+ *
+ * <p>El motor de cada plantilla se elige al guardarla (ver {@link RenderEngines}): el primero,
+ * por orden, que admita la plantilla compilada. El motor completo (Flying Saucer) admite
+ * cualquier plantilla y va siempre el último.
+ */
+public interface RenderEngine {
+
+    /**
+     * @return el nombre con el que se guarda el motor en la plantilla
+     */
+    String getName();
+
+    /**
+     * Indica si el motor puede renderizar la plantilla, sea cual sea el valor de los datos.
+     * Se llama al guardar la plantilla, con el contenido ya compilado.
+     *
+     * @param template la plantilla compilada
+     * @return true si el motor admite la plantilla
+     */
+    boolean supports(Template template);
+
+    /**
+     * Renderiza el documento y escribe el PDF en el flujo indicado.
+     *
+     * @param document el documento (DOM) ya fusionado
+     * @param outputStream el flujo de salida (no se cierra)
+     * @throws LiteEngineUnsupportedException si el motor ligero no puede renderizar el documento
+     *         concreto (por ejemplo, un carácter sin glifo); no se habrá escrito nada
+     * @throws RuntimeException si la conversión falla
+     */
+    void render(Document document, OutputStream outputStream);
+}
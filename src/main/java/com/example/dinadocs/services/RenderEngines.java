@@ -0,0 +1,66 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.models.Template;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Motores de renderizado disponibles, en orden de preferencia (por {@code @Order}).
+ * Elige el motor de cada plantilla al guardarla y lo resuelve al generar.
+ */
+@Component
+public class RenderEngines {
+
+    private final List<RenderEngine> engines;
+    private final Map<String, RenderEngine> byName = new LinkedHashMap<>();
+    private final RenderEngine defaultEngine;
+
+    /**
+     * @param engines los motores, del preferido al de último recurso
+     * @throws IllegalArgumentException si falta el motor completo
+     */
+    public RenderEngines(List<RenderEngine> engines) {
+        this.engines = List.copyOf(engines);
+        for (RenderEngine engine : engines) {
+            byName.put(engine.getName(), engine);
+        }
+        this.defaultEngine = byName.get(FlyingSaucerRenderEngine.NAME);
+        if (defaultEngine == null) {
+            throw new IllegalArgumentException("Falta el motor de renderizado por defecto: " + FlyingSaucerRenderEngine.NAME);
+        }
+    }
+
+    /**
+     * Elige el motor preferido que admite la plantilla compilada.
+     *
+     * @param template la plantilla compilada
+     * @return el nombre del motor
+     */
+    public String select(Template template) {
+        for (RenderEngine engine : engines) {
+            if (engine.supports(template)) {
+                return engine.getName();
+            }
+        }
+        return defaultEngine.getName();
+    }
+
+    /**
+     * @param name el nombre guardado en la plantilla (null en plantillas anteriores)
+     * @return el motor con ese nombre, o el motor por defecto si no existe
+     */
+    public RenderEngine get(String name) {
+        RenderEngine engine = name == null ? null : byName.get(name);
+        return engine != null ? engine : defaultEngine;
+    }
+
+    /**
+     * @return el motor completo, que admite cualquier plantilla
+     */
+    public RenderEngine getDefault() {
+        return defaultEngine;
+    }
+}
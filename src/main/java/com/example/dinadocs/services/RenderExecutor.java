@@ -0,0 +1,249 @@
+package com.example.dinadocs.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Ejecutor acotado para el renderizado de PDFs, separado de los hilos de Tomcat.
+ *
+ * <p>Las solicitudes se atienden en hilos virtuales ({@code spring.threads.virtual.enabled}),
+ * que esperan sin coste a la base de datos; el renderizado (fusión de la plantilla, parseo del
+ * DOM, maquetación y escritura del PDF), en cambio, es intensivo en CPU y memoria y se ejecuta
+ * aquí, en un número fijo de hilos de plataforma (por defecto, uno por procesador) con una cola
+ * de espera de capacidad limitada. La admisión se decide antes de fusionar nada, así que
+ * tampoco se construyen más DOM a la vez de los que caben. Cuando la cola está llena la
+ * solicitud se rechaza de inmediato con {@link RenderRejectedException} (el controlador
+ * responde 429 con {@code Retry-After}), de modo que la concurrencia de E/S puede crecer sin
+ * repartir la CPU entre más renderizados de los que caben.
+ *
+ * <p>Los lotes también renderizan aquí: {@link #openBatch(int)} reserva de una vez las plazas
+ * que usará el lote (o lo rechaza si no queda ninguna), así que un lote admitido no se rechaza
+ * a medias y los lotes no ocupan más hilos de CPU que el propio ejecutor.
+ *
+ * <p>Registra los indicadores {@code dinadocs.pdf.render.queue.depth} y
+ * {@code dinadocs.pdf.render.active}, el temporizador {@code dinadocs.pdf.render.queue.wait}
+ * (tiempo en cola) y el contador {@code dinadocs.pdf.render.rejected}.
+ */
+@Component
+public class RenderExecutor implements MeterBinder, DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    /** Plazas libres (hilos más cola): cada tarea ocupa una desde que se admite hasta que termina. */
+    private final Semaphore slots;
+    private final long retryAfterSeconds;
+    private final LongAdder rejections = new LongAdder();
+
+    private volatile Timer waitTimer;
+
+    /**
+     * @param threads número de hilos de renderizado (0 para usar el número de procesadores)
+     * @param queueCapacity número máximo de solicitudes en espera
+     * @param retryAfterSeconds segundos sugeridos al cliente cuando la cola está llena
+     */
+    public RenderExecutor(@Value("${dinadocs.pdf.render.threads:0}") int threads,
+                          @Value("${dinadocs.pdf.render.queue-capacity:32}") int queueCapacity,
+                          @Value("${dinadocs.pdf.render.retry-after-seconds:5}") long retryAfterSeconds) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("La capacidad de la cola de renderizado debe ser positiva.");
+        }
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.slots = new Semaphore(size + queueCapacity);
+        // La admisión la deciden las plazas; la cola solo tiene que caberlas todas
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(size + queueCapacity),
+                Thread.ofPlatform().name("dinadocs-render-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Ejecuta una tarea de renderizado en el ejecutor y espera su resultado.
+     * Las excepciones no comprobadas de la tarea se propagan sin envolver.
+     *
+     * @param task la tarea a ejecutar
+     * @param <T> tipo del resultado
+     * @return el resultado de la tarea
+     * @throws RenderRejectedException si la cola de renderizado está llena
+     * @throws RuntimeException si la tarea falla o se interrumpe la espera
+     */
+    public <T> T execute(Supplier<T> task) {
+        if (!slots.tryAcquire()) {
+            throw rejected();
+        }
+        FutureTask<T> future = new FutureTask<>(task::get);
+        dispatch(future, slots::release);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("La generación del documento fue interrumpida.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException("Error interno al generar el documento: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Admite un lote y le reserva entre una y {@code maxParallelism} plazas, según las que
+     * estén libres. Las filas del lote se envían con {@link Batch#execute(Runnable)} y se
+     * renderizan en este ejecutor, como mucho tantas a la vez como plazas tenga el lote.
+     *
+     * @param maxParallelism número máximo de filas del lote en curso a la vez
+     * @return el lote admitido; hay que cerrarlo al terminar para devolver sus plazas
+     * @throws RenderRejectedException si no queda ninguna plaza libre
+     */
+    public Batch openBatch(int maxParallelism) {
+        if (!slots.tryAcquire()) {
+            throw rejected();
+        }
+        int reserved = 1;
+        while (reserved < maxParallelism && slots.tryAcquire()) {
+            reserved++;
+        }
+        return new Batch(reserved);
+    }
+
+    /**
+     * Lanza la tarea en el ejecutor con su plaza ya reservada; la plaza se devuelve cuando el
+     * hilo termina con ella, también si se canceló antes de empezar.
+     */
+    private void dispatch(Runnable task, Runnable releaseSlot) {
+        long submittedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    Timer timer = waitTimer;
+                    if (timer != null) {
+                        timer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                    }
+                    task.run();
+                } finally {
+                    releaseSlot.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Solo ocurre al apagar la aplicación
+            releaseSlot.run();
+            throw rejected();
+        }
+    }
+
+    private RenderRejectedException rejected() {
+        rejections.increment();
+        return new RenderRejectedException("El servicio de generación está saturado. Inténtelo de nuevo más tarde.",
+                retryAfterSeconds);
+    }
+
+    /** @return el número de hilos de renderizado */
+    public int getThreadCount() {
+        return executor.getCorePoolSize();
+    }
+
+    /** @return el número de solicitudes en espera */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /** @return el número de solicitudes rechazadas por tener la cola llena */
+    public long getRejectedCount() {
+        return rejections.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        waitTimer = Timer.builder("dinadocs.pdf.render.queue.wait")
+                .description("Tiempo de espera en la cola de renderizado")
+                .register(registry);
+        Gauge.builder("dinadocs.pdf.render.queue.depth", this, RenderExecutor::getQueueDepth)
+                .description("Solicitudes de renderizado en espera")
+                .register(registry);
+        Gauge.builder("dinadocs.pdf.render.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Renderizados en curso")
+                .register(registry);
+        FunctionCounter.builder("dinadocs.pdf.render.rejected", rejections, LongAdder::sum)
+                .description("Solicitudes rechazadas por cola de renderizado llena")
+                .register(registry);
+    }
+
+    /**
+     * Lote admitido con {@link #openBatch(int)}: un {@link Executor} que renderiza sus filas en
+     * el ejecutor de renderizado usando solo las plazas reservadas al abrirlo. Si todas están
+     * ocupadas, {@link #execute(Runnable)} espera a que termine una fila del mismo lote, así que
+     * nunca rechaza una fila. Al cerrarlo se devuelven las plazas libres; las de las filas aún
+     * en curso se devuelven cuando terminan.
+     */
+    public final class Batch implements Executor, AutoCloseable {
+
+        private final int parallelism;
+        private final Semaphore free;
+        private boolean closed;
+
+        private Batch(int parallelism) {
+            this.parallelism = parallelism;
+            this.free = new Semaphore(parallelism);
+        }
+
+        /** @return el número de plazas reservadas, es decir, de filas que pueden estar en curso a la vez */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (isClosed()) {
+                throw new IllegalStateException("El lote ya está cerrado.");
+            }
+            free.acquireUninterruptibly();
+            dispatch(task, this::releaseSlot);
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+
+        private synchronized void releaseSlot() {
+            if (closed) {
+                slots.release();
+            } else {
+                free.release();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                slots.release(free.drainPermits());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
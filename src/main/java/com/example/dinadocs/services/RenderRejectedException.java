@@ -0,0 +1,30 @@
+package com.example.dinadocs.services;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Se lanza cuando la cola de renderizado está llena y la solicitud no se admite.
+ * Indica cuántos segundos debería esperar el cliente antes de reintentar.
+ *
+ * @see RenderExecutor
+ */
+public class RenderRejectedException extends RejectedExecutionException {
+
+    private final long retryAfterSeconds;
+
+    /**
+     * @param message el mensaje para el cliente
+     * @param retryAfterSeconds segundos sugeridos antes de reintentar
+     */
+    public RenderRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return los segundos sugeridos antes de reintentar (cabecera {@code Retry-After})
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.cache.BoundedCache;
+import com.example.dinadocs.cache.BoundedCacheMetrics;
+import com.example.dinadocs.cache.ContentHash;
+import com.example.dinadocs.cache.DiskCache;
+import com.example.dinadocs.cache.DiskCacheMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Caché de PDFs ya renderizados, direccionada por contenido.
+ *
+ * <p>La clave es el SHA-256 de la versión de la plantilla (el hash de su contenido, ver
+ * {@link com.example.dinadocs.models.TemplateVersion}) y de los datos normalizados (JSON con
+ * las claves de todos los mapas ordenadas), de modo que la misma versión con los mismos datos
+ * produce siempre la misma clave, independientemente del orden en que el cliente envíe los
+ * campos. La clave se usa también como {@code ETag} de la respuesta.
+ *
+ * <p>Tiene dos niveles. Los documentos recientes y pequeños se guardan en memoria; si se
+ * configura un directorio ({@code dinadocs.pdf.cache.disk.dir}), todos se guardan además en
+ * disco, acotados por tamaño total. Los aciertos en disco se sirven desde una proyección del
+ * fichero en memoria, fuera del heap; los documentos grandes no llegan a entrar en el heap
+ * y los pequeños se promueven al nivel en memoria.
+ *
+ * <p>Registra las métricas de las cachés {@code pdfs} y {@code pdfs-disk}.
+ */
+@Component
+public class RenderedPdfCache implements MeterBinder {
+
+    /** Serializa los datos con las claves ordenadas para obtener una forma canónica. */
+    private static final ObjectMapper CANONICAL_JSON = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final BoundedCache<String, byte[]> pdfs;
+    private final DiskCache disk;
+    private final long maxMemoryDocumentBytes;
+
+    /**
+     * Crea una caché en memoria con los límites por defecto.
+     */
+    public RenderedPdfCache() {
+        this(256, 64L * 1024 * 1024);
+    }
+
+    /**
+     * Crea una caché solo en memoria.
+     *
+     * @param maxEntries número máximo de PDFs en memoria
+     * @param maxWeight tamaño máximo acumulado (en bytes) de los PDFs en memoria
+     */
+    public RenderedPdfCache(int maxEntries, long maxWeight) {
+        this(maxEntries, maxWeight, maxWeight, "", 0);
+    }
+
+    /**
+     * @param maxEntries número máximo de PDFs en memoria
+     * @param maxWeight tamaño máximo acumulado (en bytes) de los PDFs en memoria
+     * @param maxMemoryDocumentBytes tamaño máximo (en bytes) de un PDF para guardarlo en memoria si hay nivel en disco
+     * @param diskDirectory directorio del nivel en disco (vacío para desactivarlo)
+     * @param diskMaxBytes tamaño máximo acumulado (en bytes) del nivel en disco
+     */
+    @Autowired
+    public RenderedPdfCache(@Value("${dinadocs.pdf.cache.max-entries:256}") int maxEntries,
+                            @Value("${dinadocs.pdf.cache.max-weight:67108864}") long maxWeight,
+                            @Value("${dinadocs.pdf.cache.memory.max-document-size:1048576}") long maxMemoryDocumentBytes,
+                            @Value("${dinadocs.pdf.cache.disk.dir:}") String diskDirectory,
+                            @Value("${dinadocs.pdf.cache.disk.max-size:1073741824}") long diskMaxBytes) {
+        this.pdfs = new BoundedCache<>("pdfs", maxEntries, maxWeight, pdf -> pdf.length);
+        boolean diskEnabled = diskDirectory != null && !diskDirectory.isBlank();
+        this.disk = diskEnabled ? new DiskCache("pdfs-disk", Path.of(diskDirectory.trim()), diskMaxBytes) : null;
+        // Sin nivel en disco, la memoria es el único sitio donde guardarlos
+        this.maxMemoryDocumentBytes = diskEnabled ? maxMemoryDocumentBytes : Long.MAX_VALUE;
+    }
+
+    /**
+     * Calcula la clave de un documento: la versión de la plantilla y los datos normalizados.
+     * Las versiones son inmutables, así que las entradas nunca necesitan invalidarse.
+     *
+     * @param contentHash el hash del contenido de la versión de la plantilla
+     * @param data los datos de la solicitud
+     * @return la clave en hexadecimal
+     */
+    public String key(String contentHash, Map<String, Object> data) {
+        MessageDigest digest = ContentHash.newDigest();
+        digest.update((contentHash + "\n").getBytes(StandardCharsets.UTF_8));
+        try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            CANONICAL_JSON.writeValue(out, data);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Los datos de la solicitud no se pueden serializar: " + e.getMessage(), e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Busca un documento en memoria y, si no está, en disco.
+     *
+     * @param key la clave del documento
+     * @return el PDF en caché (respaldado por un array o por una proyección del fichero), o null si no está
+     */
+    public ByteBuffer get(String key) {
+        byte[] pdf = pdfs.get(key);
+        if (pdf != null) {
+            return ByteBuffer.wrap(pdf);
+        }
+        if (disk == null) {
+            return null;
+        }
+        ByteBuffer mapped = disk.get(key);
+        if (mapped != null && mapped.remaining() <= maxMemoryDocumentBytes) {
+            // Promoción al nivel en memoria
+            pdf = new byte[mapped.remaining()];
+            mapped.get(pdf);
+            pdfs.put(key, pdf);
+            return ByteBuffer.wrap(pdf);
+        }
+        return mapped;
+    }
+
+    /**
+     * Guarda un documento en disco (si está activado) y, si es pequeño, también en memoria.
+     *
+     * @param key la clave del documento
+     * @param pdf el PDF renderizado
+     */
+    public void put(String key, byte[] pdf) {
+        if (pdf.length <= maxMemoryDocumentBytes) {
+            pdfs.put(key, pdf);
+        }
+        if (disk != null) {
+            disk.put(key, pdf);
+        }
+    }
+
+    /**
+     * Guarda un documento escrito en un búfer que se va a reutilizar: el nivel en memoria
+     * guarda una copia (solo si es pequeño) y el nivel en disco lo escribe sin copiarlo.
+     *
+     * @param key la clave del documento
+     * @param pdf el PDF renderizado (no se modifica su posición)
+     */
+    public void put(String key, ByteBuffer pdf) {
+        if (pdf.remaining() <= maxMemoryDocumentBytes) {
+            byte[] copy = new byte[pdf.remaining()];
+            pdf.duplicate().get(copy);
+            pdfs.put(key, copy);
+        }
+        if (disk != null) {
+            disk.put(key, pdf);
+        }
+    }
+
+    /**
+     * Expone la caché en memoria (para métricas y pruebas).
+     *
+     * @return la caché de PDFs
+     */
+    public BoundedCache<String, byte[]> getMemoryCache() {
+        return pdfs;
+    }
+
+    /**
+     * Expone el nivel en disco (para métricas y pruebas).
+     *
+     * @return la caché en disco, o null si no está activada
+     */
+    public DiskCache getDiskCache() {
+        return disk;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new BoundedCacheMetrics(pdfs).bindTo(registry);
+        if (disk != null) {
+            new DiskCacheMetrics(disk).bindTo(registry);
+        }
+    }
+}
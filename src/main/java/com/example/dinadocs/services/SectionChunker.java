@@ -0,0 +1,351 @@
+package com.example.dinadocs.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Divide en bloques el renderizado de las plantillas con una sección repetida muy larga
+ * (por ejemplo, {@code {{#conceptos}}} con decenas de miles de filas).
+ *
+ * <p>Si los datos traen una lista de al menos {@code dinadocs.pdf.chunked.min-rows} elementos
+ * para una sección de primer nivel, la plantilla se parte en tres variantes: la del primer
+ * bloque (todo lo anterior a la sección), la de los bloques intermedios (solo la cabecera del
+ * documento, los elementos que envuelven a la sección y las cabeceras de tabla) y la del
+ * último (con todo lo posterior a la sección). Cada bloque se fusiona, se maqueta y se
+ * escribe por separado, así que el HTML, el DOM y el árbol de maquetación solo contienen
+ * {@code dinadocs.pdf.chunked.rows-per-chunk} filas a la vez.
+ *
+ * <p>Cada bloque empieza en una página nueva, y {@code counter(pages)} cuenta las páginas
+ * del bloque y no las del documento entero. Como eso cambia el resultado de los documentos
+ * grandes, el renderizado por bloques solo se usa si se activa con
+ * {@code dinadocs.pdf.chunked.enabled=true}.
+ */
+@Component
+public class SectionChunker {
+
+    /** Elementos cuyo contenido no se analiza al buscar las etiquetas abiertas. */
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("style", "script", "title", "textarea");
+
+    /** Elementos HTML sin etiqueta de cierre (plantillas anteriores a la compilación en XHTML). */
+    private static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "br", "col", "embed", "hr", "img",
+            "input", "link", "meta", "source", "track", "wbr");
+
+    /** Hijos de una tabla que se repiten al principio de cada bloque. */
+    private static final Set<String> TABLE_HEADERS = Set.of("thead", "colgroup");
+
+    private final boolean enabled;
+    private final int minRows;
+    private final int rowsPerChunk;
+
+    /**
+     * Crea un divisor activado (para pruebas).
+     *
+     * @param minRows número mínimo de filas de una sección para renderizar por bloques
+     * @param rowsPerChunk número de filas de cada bloque
+     */
+    public SectionChunker(int minRows, int rowsPerChunk) {
+        this(true, minRows, rowsPerChunk);
+    }
+
+    /**
+     * @param enabled true para renderizar por bloques las secciones largas
+     * @param minRows número mínimo de filas de una sección para renderizar por bloques
+     * @param rowsPerChunk número de filas de cada bloque
+     */
+    @Autowired
+    public SectionChunker(@Value("${dinadocs.pdf.chunked.enabled:false}") boolean enabled,
+                          @Value("${dinadocs.pdf.chunked.min-rows:2000}") int minRows,
+                          @Value("${dinadocs.pdf.chunked.rows-per-chunk:500}") int rowsPerChunk) {
+        if (rowsPerChunk <= 0) {
+            throw new IllegalArgumentException("El número de filas por bloque debe ser positivo.");
+        }
+        this.enabled = enabled;
+        this.minRows = minRows;
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    /**
+     * Reparto en bloques de un documento.
+     *
+     * @param section nombre de la sección repetida
+     * @param rows filas de la sección
+     * @param rowsPerChunk filas de cada bloque
+     * @param first plantilla del primer bloque
+     * @param middle plantilla de los bloques intermedios
+     * @param last plantilla del último bloque
+     */
+    public record ChunkPlan(String section, List<?> rows, int rowsPerChunk,
+                            String first, String middle, String last) {
+
+        /**
+         * @return número de bloques (al menos dos)
+         */
+        public int chunkCount() {
+            return (rows.size() + rowsPerChunk - 1) / rowsPerChunk;
+        }
+
+        /**
+         * @param chunk índice del bloque
+         * @return la plantilla con la que se fusiona el bloque
+         */
+        public String contentFor(int chunk) {
+            if (chunk == 0) {
+                return first;
+            }
+            return chunk == chunkCount() - 1 ? last : middle;
+        }
+
+        /**
+         * @param chunk índice del bloque
+         * @param data los datos de la solicitud
+         * @return los datos del bloque: los mismos, con solo sus filas en la sección
+         */
+        public Map<String, Object> dataFor(int chunk, Map<String, Object> data) {
+            Map<String, Object> chunkData = new HashMap<>(data);
+            int from = chunk * rowsPerChunk;
+            chunkData.put(section, rows.subList(from, Math.min(rows.size(), from + rowsPerChunk)));
+            return chunkData;
+        }
+    }
+
+    /**
+     * Decide si un documento se renderiza por bloques.
+     *
+     * @param content la plantilla (compilada) a fusionar
+     * @param data los datos de la solicitud
+     * @return el reparto en bloques, o null si el documento se renderiza de una vez
+     */
+    public ChunkPlan plan(String content, Map<String, Object> data) {
+        if (!enabled) {
+            return null;
+        }
+        List<MustacheTag> tags = scanTags(content);
+        if (tags == null) {
+            return null;
+        }
+        Section target = null;
+        int largest = Math.max(minRows, rowsPerChunk + 1) - 1;
+        for (Section section : topLevelSections(tags)) {
+            if (data.get(section.name()) instanceof List<?> rows && rows.size() > largest) {
+                target = section;
+                largest = rows.size();
+            }
+        }
+        if (target == null || countReferences(tags, target.name()) != 2) {
+            // La sección se usa también en otro sitio: recortar la lista cambiaría ese otro uso
+            return null;
+        }
+
+        String prefix = content.substring(0, target.start());
+        String sectionText = content.substring(target.start(), target.end());
+        String suffix = content.substring(target.end());
+
+        List<OpenElement> open = openElements(prefix);
+        int headEnd = indexOfIgnoreCase(prefix, "</head>");
+        headEnd = headEnd < 0 ? 0 : headEnd + "</head>".length();
+        StringBuilder skeleton = new StringBuilder(prefix.substring(0, headEnd));
+        StringBuilder closers = new StringBuilder();
+        for (OpenElement element : open) {
+            if (element.start >= headEnd) {
+                skeleton.append(element.startTag).append(element.headers);
+            }
+        }
+        for (int i = open.size() - 1; i >= 0; i--) {
+            closers.append("</").append(open.get(i).name).append('>');
+        }
+
+        List<?> rows = (List<?>) data.get(target.name());
+        return new ChunkPlan(target.name(), rows, rowsPerChunk,
+                prefix + sectionText + closers,
+                skeleton + sectionText + closers,
+                skeleton + sectionText + suffix);
+    }
+
+    private record MustacheTag(char sigil, String name, int start, int end) {}
+
+    private record Section(String name, int start, int end) {}
+
+    /**
+     * Lista las etiquetas Mustache de la plantilla.
+     *
+     * @return las etiquetas, o null si la plantilla cambia los delimitadores
+     */
+    private static List<MustacheTag> scanTags(String content) {
+        List<MustacheTag> tags = new ArrayList<>();
+        int i = 0;
+        while ((i = content.indexOf("{{", i)) >= 0) {
+            boolean triple = content.startsWith("{{{", i);
+            int end = content.indexOf(triple ? "}}}" : "}}", i);
+            if (end < 0) {
+                break;
+            }
+            end += triple ? 3 : 2;
+            String inner = content.substring(i + (triple ? 3 : 2), end - (triple ? 3 : 2)).trim();
+            char sigil = triple || inner.isEmpty() || "#^/!>&=".indexOf(inner.charAt(0)) < 0 ? ' ' : inner.charAt(0);
+            if (sigil == '=') {
+                return null;
+            }
+            String name = sigil == ' ' ? inner : inner.substring(1).trim();
+            tags.add(new MustacheTag(sigil, name, i, end));
+            i = end;
+        }
+        return tags;
+    }
+
+    private static List<Section> topLevelSections(List<MustacheTag> tags) {
+        List<Section> sections = new ArrayList<>();
+        Deque<MustacheTag> stack = new ArrayDeque<>();
+        for (MustacheTag tag : tags) {
+            if (tag.sigil() == '#' || tag.sigil() == '^') {
+                stack.push(tag);
+            } else if (tag.sigil() == '/' && !stack.isEmpty()) {
+                MustacheTag opening = stack.pop();
+                if (stack.isEmpty() && opening.sigil() == '#') {
+                    sections.add(new Section(opening.name(), opening.start(), tag.end()));
+                }
+            }
+        }
+        return sections;
+    }
+
+    private static int countReferences(List<MustacheTag> tags, String name) {
+        int count = 0;
+        for (MustacheTag tag : tags) {
+            if (tag.sigil() != '!' && (tag.name().equals(name) || tag.name().startsWith(name + "."))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Elemento abierto en el punto donde empieza la sección. */
+    private static final class OpenElement {
+        private final String name;
+        private final String startTag;
+        private final int start;
+        private final StringBuilder headers = new StringBuilder();
+
+        private OpenElement(String name, String startTag, int start) {
+            this.name = name;
+            this.startTag = startTag;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Recorre las etiquetas HTML anteriores a la sección y devuelve las que siguen abiertas,
+     * de la más externa a la más interna. De las tablas se guardan también su {@code thead}
+     * y su {@code colgroup}, para repetirlos en cada bloque.
+     */
+    private static List<OpenElement> openElements(String html) {
+        Deque<OpenElement> stack = new ArrayDeque<>();
+        int i = 0;
+        while ((i = html.indexOf('<', i)) >= 0) {
+            if (html.startsWith("<!--", i)) {
+                i = skipPast(html, "-->", i);
+            } else if (html.startsWith("<![CDATA[", i)) {
+                i = skipPast(html, "]]>", i);
+            } else if (html.startsWith("<!", i) || html.startsWith("<?", i)) {
+                i = skipPast(html, ">", i);
+            } else {
+                int end = tagEnd(html, i);
+                if (end < 0) {
+                    break;
+                }
+                String tag = html.substring(i, end);
+                String name = tagName(tag);
+                if (tag.startsWith("</")) {
+                    closeElement(stack, name, html, end);
+                } else if (!tag.endsWith("/>") && !VOID_ELEMENTS.contains(name) && !name.isEmpty()) {
+                    if (RAW_TEXT_ELEMENTS.contains(name)) {
+                        int close = indexOfIgnoreCase(html, "</" + name, end);
+                        end = close < 0 ? html.length() : Math.max(end, tagEnd(html, close));
+                    } else {
+                        stack.push(new OpenElement(name, tag, i));
+                    }
+                }
+                i = end;
+            }
+            if (i < 0) {
+                break;
+            }
+        }
+        List<OpenElement> open = new ArrayList<>(stack);
+        Collections.reverse(open);
+        return open;
+    }
+
+    private static void closeElement(Deque<OpenElement> stack, String name, String html, int end) {
+        for (Iterator<OpenElement> it = stack.iterator(); it.hasNext(); ) {
+            if (it.next().name.equals(name)) {
+                // Cierra también los elementos internos que quedaran abiertos
+                OpenElement closed;
+                do {
+                    closed = stack.pop();
+                } while (!closed.name.equals(name));
+                OpenElement parent = stack.peek();
+                if (TABLE_HEADERS.contains(name) && parent != null && parent.name.equals("table")) {
+                    parent.headers.append(html, closed.start, end);
+                }
+                return;
+            }
+        }
+    }
+
+    private static int skipPast(String html, String terminator, int from) {
+        int end = html.indexOf(terminator, from);
+        return end < 0 ? -1 : end + terminator.length();
+    }
+
+    /** Posición siguiente al '>' que cierra la etiqueta, ignorando los que van entre comillas. */
+    private static int tagEnd(String html, int from) {
+        char quote = 0;
+        for (int i = from + 1; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static String tagName(String tag) {
+        int i = tag.startsWith("</") ? 2 : 1;
+        int start = i;
+        while (i < tag.length() && !Character.isWhitespace(tag.charAt(i)) && tag.charAt(i) != '>' && tag.charAt(i) != '/') {
+            i++;
+        }
+        return tag.substring(start, i).toLowerCase(Locale.ROOT);
+    }
+
+    private static int indexOfIgnoreCase(String html, String needle) {
+        return indexOfIgnoreCase(html, needle, 0);
+    }
+
+    private static int indexOfIgnoreCase(String html, String needle, int from) {
+        for (int i = from; i <= html.length() - needle.length(); i++) {
+            if (html.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,45 +1,349 @@
 package com.example.dinadocs.services;
 
+import com.example.dinadocs.cache.BoundedCache;
+import com.example.dinadocs.cache.BoundedCacheMetrics;
+import com.example.dinadocs.cache.ContentHash;
+import com.example.dinadocs.models.PlaceholderNode;
 import com.github.mustachejava.DefaultMustacheFactory;
 import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheException;
 import com.github.mustachejava.MustacheFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Entities;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Servicio para procesar plantillas HTML con el motor Mustache.
+ *
+ * <p>Las plantillas compiladas se guardan en una caché LRU acotada por número de
+ * entradas y por tamaño total del contenido. La clave combina el ID de la plantilla
+ * y el hash de su contenido, por lo que una edición nunca reutiliza una compilación
+ * obsoleta; aun así, {@link TemplateService} invalida explícitamente las entradas
+ * al actualizar o eliminar una plantilla para liberar memoria.
+ *
+ * <p>Al guardar una plantilla se ejecuta {@link #compileTemplate(String)}, que valida
+ * la sintaxis Mustache y normaliza el HTML a XHTML bien formado; el resultado se
+ * persiste junto al contenido original y es el que se usa al generar documentos.
  */
 @Service
-public class TemplateProcessor {
+public class TemplateProcessor implements MeterBinder {
+
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+    private static final long DEFAULT_MAX_WEIGHT = 8L * 1024 * 1024;
+
+    /**
+     * Delimitadores (caracteres de uso privado de Unicode) con los que se protegen
+     * las etiquetas Mustache mientras jsoup normaliza el HTML.
+     */
+    private static final char TOKEN_START = '\uE000';
+    private static final char TOKEN_END = '\uE001';
+
+    private final MustacheFactory mustacheFactory = new DefaultMustacheFactory();
+    /**
+     * Plantillas compiladas por SHA-256 del contenido. Como cada versión de una plantilla es
+     * inmutable, las entradas nunca se invalidan: las versiones que dejan de usarse salen de
+     * la caché por LRU.
+     */
+    private final BoundedCache<String, CompiledTemplate> compiledTemplates;
+
+    /**
+     * Plantilla compilada junto con el tamaño de su fuente, usado como peso en la caché.
+     *
+     * @param mustache la plantilla compilada
+     * @param sourceLength longitud (en caracteres) del contenido original
+     */
+    private record CompiledTemplate(Mustache mustache, long sourceLength) {
+    }
+
+    /**
+     * Constructor con los límites por defecto de la caché.
+     */
+    public TemplateProcessor() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Constructor para inyección de dependencias.
+     *
+     * @param maxEntries número máximo de plantillas compiladas en caché
+     * @param maxWeight tamaño máximo acumulado (en caracteres) de las plantillas en caché
+     */
+    @Autowired
+    public TemplateProcessor(@Value("${dinadocs.templates.cache.max-entries:256}") int maxEntries,
+                             @Value("${dinadocs.templates.cache.max-weight:8388608}") long maxWeight) {
+        this.compiledTemplates = new BoundedCache<>("compiledTemplates", maxEntries, maxWeight,
+                CompiledTemplate::sourceLength);
+    }
 
     /**
      * Extrae los nombres de los placeholders {{nombre}} de una plantilla HTML.
-     * 
+     * Es la vista aplanada de {@link #scanPlaceholders(String)}: las secciones
+     * aparecen como {@code #x}/{@code ^x} ... {@code /x} y no hay duplicados
+     * dentro de un mismo nivel.
+     *
      * @param templateContent contenido de la plantilla HTML con placeholders Mustache
      * @return lista con los nombres de los placeholders encontrados
      */
     public List<String> extractPlaceholders(String templateContent) {
-        List<String> matches = new ArrayList<>();
+        return PlaceholderNode.flatten(scanPlaceholders(templateContent));
+    }
 
+    /**
+     * Recorre la plantilla una sola vez y construye el árbol de placeholders:
+     * campos, secciones, secciones invertidas y su anidamiento. Los campos repetidos
+     * dentro de un mismo nivel se registran una única vez; los comentarios
+     * ({@code {{! }}}), parciales ({@code {{> }}}) y cambios de delimitador se ignoran.
+     *
+     * @param templateContent contenido de la plantilla HTML con placeholders Mustache
+     * @return los nodos de primer nivel del esquema (lista vacía si no hay contenido)
+     * @throws IllegalArgumentException si una sección se cierra sin abrirse o queda abierta
+     */
+    public List<PlaceholderNode> scanPlaceholders(String templateContent) {
+        PlaceholderScope root = new PlaceholderScope(new PlaceholderNode(null, PlaceholderNode.Type.SECTION));
         if (templateContent == null || templateContent.isEmpty()) {
-            return matches;
+            return root.node().getChildren();
+        }
+
+        Deque<PlaceholderScope> scopes = new ArrayDeque<>();
+        scopes.push(root);
+        int i = 0;
+        while ((i = templateContent.indexOf("{{", i)) >= 0) {
+            boolean triple = templateContent.startsWith("{{{", i);
+            int start = i + (triple ? 3 : 2);
+            int end = templateContent.indexOf(triple ? "}}}" : "}}", start);
+            if (end < 0) {
+                break;
+            }
+            i = end + (triple ? 3 : 2);
+            String tag = templateContent.substring(start, end).trim();
+            if (tag.isEmpty()) {
+                continue;
+            }
+            String name = tag.substring(1).trim();
+            switch (triple ? ' ' : tag.charAt(0)) {
+                case '#' -> scopes.push(scopes.peek().child(name, PlaceholderNode.Type.SECTION));
+                case '^' -> scopes.push(scopes.peek().child(name, PlaceholderNode.Type.INVERTED_SECTION));
+                case '/' -> {
+                    if (scopes.size() == 1 || !scopes.peek().node().getName().equals(name)) {
+                        throw new IllegalArgumentException("La sección '" + name + "' se cierra sin haberse abierto.");
+                    }
+                    scopes.pop();
+                }
+                case '!', '>', '=' -> {
+                    // Comentarios, parciales y cambios de delimitador no son datos
+                }
+                case '&' -> scopes.peek().child(name, PlaceholderNode.Type.FIELD);
+                default -> scopes.peek().child(tag, PlaceholderNode.Type.FIELD);
+            }
+        }
+        if (scopes.size() > 1) {
+            throw new IllegalArgumentException("La sección '" + scopes.peek().node().getName() + "' no se cerró.");
+        }
+        return root.node().getChildren();
+    }
+
+    /**
+     * Nivel de anidamiento durante el escaneo: el nodo actual y un índice de sus hijos
+     * (por tipo y nombre) para detectar duplicados sin recorrer la lista.
+     *
+     * @param node el nodo (sección) del nivel
+     * @param index hijos ya registrados, indexados por tipo y nombre
+     */
+    private record PlaceholderScope(PlaceholderNode node, Map<String, PlaceholderScope> index) {
+
+        PlaceholderScope(PlaceholderNode node) {
+            this(node, new HashMap<>());
+        }
+
+        PlaceholderScope child(String name, PlaceholderNode.Type type) {
+            return index.computeIfAbsent(type + ":" + name, key -> {
+                PlaceholderNode child = new PlaceholderNode(name, type);
+                node.getChildren().add(child);
+                return new PlaceholderScope(child);
+            });
+        }
+    }
+
+    /**
+     * Compila una plantilla al guardarla: valida la sintaxis Mustache (secciones
+     * abiertas y cerradas correctamente) y normaliza el HTML a XHTML bien formado.
+     *
+     * <p>Antes de pasar el HTML por jsoup, cada etiqueta Mustache se sustituye por un
+     * token; las secciones ({@code {{#x}}}, {@code {{^x}}}, {@code {{/x}}}) que aparecen
+     * como texto se convierten además en comentarios HTML para que el parser no las
+     * desplace fuera de las tablas. Tras la serialización se restauran las etiquetas.
+     *
+     * @param templateContent contenido HTML original de la plantilla
+     * @return la plantilla normalizada a XHTML, con las etiquetas Mustache intactas
+     * @throws IllegalArgumentException si la plantilla está vacía o sus secciones están mal formadas
+     */
+    public String compileTemplate(String templateContent) {
+        if (templateContent == null || templateContent.trim().isEmpty()) {
+            throw new IllegalArgumentException("El contenido de la plantilla no puede estar vacío.");
         }
+        validateMustache(templateContent);
 
-        Pattern pattern = Pattern.compile("\\{\\{([^\\}]+)\\}\\}");
-        Matcher matcher = pattern.matcher(templateContent);
+        List<String> tags = new ArrayList<>();
+        String protectedHtml = protectMustacheTags(templateContent, tags);
+
+        Document document = Jsoup.parse(protectedHtml);
+        document.outputSettings()
+                .syntax(Document.OutputSettings.Syntax.xml)
+                .escapeMode(Entities.EscapeMode.xhtml)
+                .prettyPrint(false);
+
+        String normalized = restoreMustacheTags(document.outerHtml(), tags);
+        validateMustache(normalized);
+        return normalized;
+    }
 
-        while (matcher.find()) {
-            matches.add(matcher.group(1));
+    /**
+     * Compila la plantilla con Mustache únicamente para validar su estructura.
+     *
+     * @param templateContent contenido a validar
+     * @throws IllegalArgumentException si Mustache rechaza la plantilla
+     */
+    private void validateMustache(String templateContent) {
+        try {
+            mustacheFactory.compile(new StringReader(templateContent), "validacion");
+        } catch (MustacheException e) {
+            throw new IllegalArgumentException("La plantilla tiene secciones Mustache mal formadas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sustituye cada etiqueta {{...}} por un token numerado. Las secciones que están
+     * en contexto de texto (fuera de una etiqueta HTML) se envuelven en un comentario.
+     *
+     * @param html contenido original
+     * @param tags lista donde se guardan las etiquetas originales (índice = número de token)
+     * @return el HTML con las etiquetas protegidas
+     */
+    private String protectMustacheTags(String html, List<String> tags) {
+        StringBuilder out = new StringBuilder(html.length() + 64);
+        boolean insideHtmlTag = false;
+        int i = 0;
+        while (i < html.length()) {
+            if (html.startsWith("{{", i)) {
+                boolean triple = html.startsWith("{{{", i);
+                int end = html.indexOf(triple ? "}}}" : "}}", i + 2);
+                if (end > 0) {
+                    end += triple ? 3 : 2;
+                    String tag = html.substring(i, end);
+                    String token = TOKEN_START + Integer.toString(tags.size()) + TOKEN_END;
+                    tags.add(tag);
+                    if (!insideHtmlTag && isSectionTag(tag)) {
+                        out.append("<!--").append(token).append("-->");
+                    } else {
+                        out.append(token);
+                    }
+                    i = end;
+                    continue;
+                }
+            }
+            char c = html.charAt(i);
+            if (c == '<') {
+                insideHtmlTag = true;
+            } else if (c == '>') {
+                insideHtmlTag = false;
+            }
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Indica si una etiqueta Mustache abre o cierra una sección.
+     *
+     * @param tag la etiqueta completa, con llaves
+     * @return true para {{#x}}, {{^x}} y {{/x}}
+     */
+    private static boolean isSectionTag(String tag) {
+        String inner = tag.substring(2).trim();
+        return !inner.isEmpty() && "#^/".indexOf(inner.charAt(0)) >= 0;
+    }
+
+    /**
+     * Restaura las etiquetas Mustache originales a partir de los tokens,
+     * eliminando los comentarios que envolvían a las secciones.
+     *
+     * @param html el XHTML serializado por jsoup
+     * @param tags etiquetas originales indexadas por número de token
+     * @return el XHTML con las etiquetas Mustache restauradas
+     */
+    private String restoreMustacheTags(String html, List<String> tags) {
+        StringBuilder out = new StringBuilder(html.length());
+        int i = 0;
+        while (i < html.length()) {
+            int start = html.indexOf(TOKEN_START, i);
+            if (start < 0) {
+                out.append(html, i, html.length());
+                break;
+            }
+            int end = html.indexOf(TOKEN_END, start);
+            String tag = tags.get(Integer.parseInt(html.substring(start + 1, end)));
+            int from = start;
+            int to = end + 1;
+            if (html.startsWith("<!--", start - 4) && html.startsWith("-->", to) && start - 4 >= i) {
+                from = start - 4;
+                to += 3;
+            } else if (html.startsWith("&lt;!--", start - 7) && html.startsWith("--&gt;", to) && start - 7 >= i) {
+                from = start - 7;
+                to += 6;
+            }
+            out.append(html, i, from).append(tag);
+            i = to;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Indica si una plantilla compilada puede renderizarse sin pasar por jsoup: es XML
+     * bien formado y solo inserta valores escapados, de modo que el resultado de la
+     * fusión sigue siendo XHTML válido. Las plantillas con etiquetas sin escapar
+     * ({@code {{{x}}}}, {@code {{&x}}}) o con cambio de delimitadores no son elegibles.
+     *
+     * @param compiledContent la plantilla compilada con {@link #compileTemplate(String)}
+     * @return true si la salida de la fusión puede leerse directamente como XHTML
+     */
+    public boolean isXhtmlReady(String compiledContent) {
+        if (compiledContent == null
+                || compiledContent.contains("{{{")
+                || compiledContent.contains("{{&")
+                || compiledContent.contains("{{=")) {
+            return false;
+        }
+        return XhtmlDocuments.isWellFormed(compiledContent);
+    }
+
+    /**
+     * Compila y almacena en caché una plantilla recién guardada, de modo que la
+     * primera generación de documentos no tenga que analizarla de nuevo.
+     *
+     * @param templateId el ID de la plantilla
+     * @param compiledContent el contenido normalizado de la plantilla
+     */
+    public void precompile(Long templateId, String compiledContent) {
+        if (compiledContent != null) {
+            getCompiled(templateId, compiledContent);
         }
-        return matches;
     }
 
     /**
@@ -51,14 +355,73 @@ public class TemplateProcessor {
      * @throws RuntimeException si ocurre un error durante el procesamiento
      */
     public String processTemplate(String templateContent, Map<String, Object> data) {
+        return processTemplate(null, templateContent, data);
+    }
+
+    /**
+     * Procesa una plantilla persistida reutilizando su compilación en caché.
+     *
+     * @param templateId el ID de la plantilla (solo se usa para nombrar la compilación)
+     * @param templateContent contenido de la plantilla HTML con placeholders Mustache
+     * @param data mapa con los datos dinámicos
+     * @return String con la plantilla procesada y placeholders reemplazados
+     * @throws RuntimeException si ocurre un error durante el procesamiento
+     */
+    public String processTemplate(Long templateId, String templateContent, Map<String, Object> data) {
+        StringWriter writer = new StringWriter();
+        processTemplate(templateId, templateContent, data, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Procesa una plantilla persistida escribiendo el resultado directamente en {@code writer},
+     * sin construir el documento fusionado completo en memoria.
+     * El writer no se cierra; solo se vacía al terminar.
+     *
+     * @param templateId el ID de la plantilla (solo se usa para nombrar la compilación)
+     * @param templateContent contenido de la plantilla HTML con placeholders Mustache
+     * @param data mapa con los datos dinámicos
+     * @param writer destino del contenido fusionado
+     * @throws RuntimeException si ocurre un error durante el procesamiento o la escritura
+     */
+    public void processTemplate(Long templateId, String templateContent, Map<String, Object> data, Writer writer) {
         try {
-            MustacheFactory mf = new DefaultMustacheFactory();
-            Mustache mustache = mf.compile(new StringReader(templateContent), "template");
-            StringWriter writer = new StringWriter();
+            Mustache mustache = getCompiled(templateId, templateContent);
             mustache.execute(writer, data).flush();
-            return writer.toString();
         } catch (IOException e) {
             throw new RuntimeException("Error al procesar la plantilla", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Obtiene la plantilla compilada desde la caché, compilándola si no existe.
+     *
+     * @param templateId el ID de la plantilla (puede ser null)
+     * @param templateContent contenido de la plantilla
+     * @return la plantilla Mustache compilada
+     */
+    private Mustache getCompiled(Long templateId, String templateContent) {
+        return compiledTemplates.computeIfAbsent(ContentHash.sha256(templateContent), k -> new CompiledTemplate(
+                mustacheFactory.compile(new StringReader(templateContent), "template-" + templateId),
+                templateContent.length())).mustache();
+    }
+
+    /**
+     * Expone la caché de plantillas compiladas (contadores de aciertos, fallos y expulsiones).
+     *
+     * @return la caché de plantillas compiladas
+     */
+    public BoundedCache<?, ?> getCompiledTemplateCache() {
+        return compiledTemplates;
+    }
+
+    /**
+     * Registra las métricas de la caché en Actuator/Micrometer.
+     *
+     * @param registry el registro de métricas
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new BoundedCacheMetrics(compiledTemplates).bindTo(registry);
+    }
+}
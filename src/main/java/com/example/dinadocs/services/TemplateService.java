@@ -1,11 +1,21 @@
 package com.example.dinadocs.services;
 
+import com.example.dinadocs.cache.ContentHash;
+import com.example.dinadocs.models.PlaceholderNode;
+import com.example.dinadocs.models.PlaceholderTrie;
 import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateNames;
+import com.example.dinadocs.models.TemplateSummary;
+import com.example.dinadocs.models.TemplateVersion;
 import com.example.dinadocs.models.User;
 import com.example.dinadocs.models.Role;
 import com.example.dinadocs.repositories.TemplateRepository;
+import com.example.dinadocs.repositories.TemplateVersionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
@@ -20,20 +30,36 @@ import java.nio.file.AccessDeniedException;
 @Service
 public class TemplateService {
 
+    /** Tamaño máximo de una página del listado de plantillas. */
+    public static final int MAX_PAGE_SIZE = 200;
+
     @Autowired
     private TemplateRepository templateRepository;
 
+    @Autowired
+    private TemplateVersionRepository templateVersionRepository;
+
     @Autowired
     private TemplateProcessor templateProcessor;
 
+    @Autowired
+    private RenderEngines renderEngines;
+
+    @Autowired
+    private TemplateSnapshotCache templateCache;
+
     /**
      * Guarda una plantilla, aplicando lógica de roles.
      * Lógica Nivel 2: Asigna 'owner' y 'isPublic' basado en el rol del usuario.
      *
+     * Se guarda también su primera versión (ver {@link TemplateVersion}).
+     *
      * @param template la plantilla a guardar
      * @param authUser el usuario autenticado
      * @return la plantilla guardada con placeholders extraídos
+     * @throws IllegalArgumentException si la plantilla está mal formada o su nombre ya está en uso
      */
+    @Transactional
     public Template save(Template template, User authUser) {
         if (authUser.getRole().equals(Role.CREADOR)) {
             template.setPublic(true); // Todas las plantillas creadas por un CREADOR son públicas
@@ -42,33 +68,136 @@ public class TemplateService {
         }
         template.setOwner(authUser);
 
-        List<String> placeholders = templateProcessor.extractPlaceholders(template.getContent());
-        template.setPlaceholders(placeholders);
-        return templateRepository.save(template);
+        checkNameIsAvailable(template, 0L);
+        compile(template);
+        Template saved = saveWithUniqueName(template);
+        recordVersion(saved);
+        templateProcessor.precompile(saved.getId(), saved.getCompiledContent());
+        return saved;
+    }
+
+    /**
+     * Comprueba que ninguna otra plantilla use ya el mismo nombre normalizado (ver
+     * {@link TemplateNames}), para que la resolución por nombre sea siempre única.
+     *
+     * @param template la plantilla con el nombre ya asignado
+     * @param excludedId el id de la plantilla que se modifica (0 si es nueva)
+     * @throws IllegalArgumentException si el nombre no es válido o ya está en uso
+     */
+    private void checkNameIsAvailable(Template template, long excludedId) {
+        if (template.getNameKey() == null || template.getNameKey().isEmpty()) {
+            throw new IllegalArgumentException("El nombre de la plantilla no puede estar vacío.");
+        }
+        if (templateRepository.existsOtherWithNameKey(template.getNameKey(), excludedId)) {
+            throw nameInUse(template, null);
+        }
+    }
+
+    /**
+     * Guarda la plantilla y sincroniza con la BD en el momento, para que la clave única
+     * detecte aquí el nombre ocupado por otra solicitud entre la comprobación y el guardado.
+     *
+     * @param template la plantilla con el nombre ya comprobado
+     * @return la plantilla guardada
+     * @throws IllegalArgumentException si el nombre ya está en uso
+     */
+    private Template saveWithUniqueName(Template template) {
+        try {
+            return templateRepository.saveAndFlush(template);
+        } catch (DataIntegrityViolationException e) {
+            throw nameInUse(template, e);
+        }
+    }
+
+    private static IllegalArgumentException nameInUse(Template template, Throwable cause) {
+        return new IllegalArgumentException("Ya existe una plantilla con el nombre '" + template.getName() + "'.", cause);
     }
 
     /**
-     * Lista las plantillas según el rol del usuario.
+     * Guarda una versión nueva con el contenido compilado de la plantilla y la marca como
+     * actual, salvo que el contenido no haya cambiado respecto a la versión actual.
+     * La plantilla debe estar gestionada por la transacción en curso y, si ya existía,
+     * bloqueada con {@link TemplateRepository#findByIdForUpdate(Long)}.
+     *
+     * @param template la plantilla ya persistida y compilada
+     */
+    private void recordVersion(Template template) {
+        String contentHash = ContentHash.sha256(template.getCompiledContent());
+        TemplateVersion current = template.getCurrentVersion();
+        if (current != null && contentHash.equals(current.getContentHash())) {
+            return;
+        }
+        int versionNumber = templateVersionRepository.findLatestVersionNumber(template.getId()) + 1;
+        template.setCurrentVersion(templateVersionRepository.save(new TemplateVersion(template, versionNumber, contentHash)));
+    }
+
+    /**
+     * Compila la plantilla antes de persistirla: valida la sintaxis Mustache,
+     * normaliza el HTML a XHTML, determina si admite la ruta rápida de renderizado,
+     * elige el motor de renderizado y construye el esquema de placeholders junto con su trie de validación.
+     *
+     * @param template la plantilla a compilar
+     * @throws IllegalArgumentException si la plantilla está mal formada
+     */
+    public void compile(Template template) {
+        template.setCompiledContent(templateProcessor.compileTemplate(template.getContent()));
+        template.setXhtmlReady(templateProcessor.isXhtmlReady(template.getCompiledContent()));
+        template.setRenderEngine(renderEngines.select(template));
+        List<PlaceholderNode> schema = templateProcessor.scanPlaceholders(template.getContent());
+        template.setPlaceholderSchema(schema);
+        template.setPlaceholders(PlaceholderNode.flatten(schema));
+        template.setPlaceholderCount(PlaceholderNode.count(schema));
+        template.setValidationTrie(PlaceholderTrie.fromSchema(schema));
+    }
+
+    /**
+     * Lista una página de resúmenes de las plantillas accesibles según el rol del usuario.
+     * Lógica Nivel 2: un ADMIN ve todas las plantillas; un USUARIO, las públicas y las suyas;
+     * un CREADOR (y cualquier otro rol), solo las públicas.
+     *
+     * <p>Solo se leen los metadatos (ver {@link TemplateSummary}); el contenido completo de una
+     * plantilla solo se obtiene con {@link #findById(Long, User)}.
      *
      * @param authUser el usuario autenticado
-     * @return lista de plantillas accesibles según el rol
+     * @param after el último id de la página anterior, o null para la primera
+     * @param size el número de plantillas por página (entre 1 y {@link #MAX_PAGE_SIZE})
+     * @return la página y el cursor de la siguiente
+     * @throws IllegalArgumentException si el tamaño de página no es válido
      */
-    public List<Template> findAllByRole(User authUser) {
-        System.out.println("Buscando plantillas para el usuario con rol: " + authUser.getRole());
-        if (authUser.getRole() == Role.ADMIN) {
-            return templateRepository.findAll();
+    public SummaryPage findSummariesByRole(User authUser, Long after, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + MAX_PAGE_SIZE + ".");
         }
-        if (authUser.getRole() == Role.CREADOR) {
-            return templateRepository.findByIsPublicTrue();
+        long cursor = after == null ? 0 : after;
+        // Se pide una fila de más para saber si hay otra página
+        Limit limit = Limit.of(size + 1);
+        List<TemplateSummary> rows;
+        if (authUser.getRole() == Role.ADMIN) {
+            rows = templateRepository.findSummaries(cursor, limit);
+        } else if (authUser.getRole() == Role.USUARIO) {
+            rows = templateRepository.findPublicOrOwnedSummaries(authUser, cursor, limit);
+        } else {
+            rows = templateRepository.findPublicSummaries(cursor, limit);
         }
-        if (authUser.getRole() == Role.USUARIO) {
-            return templateRepository.findByIsPublicTrueOrOwner(authUser);
+        if (rows.size() <= size) {
+            return new SummaryPage(rows, null);
         }
-        return templateRepository.findByIsPublicTrue();
+        List<TemplateSummary> items = rows.subList(0, size);
+        return new SummaryPage(items, items.get(size - 1).id());
+    }
+
+    /**
+     * Página de resúmenes de plantillas.
+     *
+     * @param items los resúmenes, por id ascendente
+     * @param nextCursor el valor de {@code after} para la página siguiente, o null si es la última
+     */
+    public record SummaryPage(List<TemplateSummary> items, Long nextCursor) {
     }
 
     /**
      * Busca una plantilla por ID, verificando permisos de acceso (lectura).
+     * La plantilla se sirve desde {@link TemplateSnapshotCache} y no debe modificarse.
      *
      * @param id el identificador de la plantilla
      * @param authUser el usuario autenticado
@@ -76,17 +205,19 @@ public class TemplateService {
      * @throws AccessDeniedException si no tiene permisos de lectura
      */
     public Template findById(Long id, User authUser) throws AccessDeniedException {
-        Template template = templateRepository.findById(id)
+        Template template = templateCache.getById(id)
                 .orElseThrow(() -> new RuntimeException("Plantilla no encontrada con id: " + id));
+        checkReadAccess(template, authUser);
+        return template;
+    }
 
+    private static void checkReadAccess(Template template, User authUser) throws AccessDeniedException {
         boolean isOwner = Objects.equals(template.getOwner().getId(), authUser.getId());
         boolean isAdmin = authUser.getRole() == Role.ADMIN;
 
-        if (template.isPublic() || isOwner || isAdmin) {
-            return template;
+        if (!template.isPublic() && !isOwner && !isAdmin) {
+            throw new AccessDeniedException("No tiene permiso para ver esta plantilla.");
         }
-
-        throw new AccessDeniedException("No tiene permiso para ver esta plantilla.");
     }
 
     /**
@@ -98,9 +229,15 @@ public class TemplateService {
      * @param authUser el usuario autenticado
      * @return la plantilla actualizada
      * @throws AccessDeniedException si no tiene permisos de escritura
+     * @throws IllegalArgumentException si el nuevo contenido está mal formado o el nombre ya está en uso
      */
+    @Transactional
     public Template update(Long id, Template templateDetails, User authUser) throws AccessDeniedException {
-        Template templateToUpdate = findById(id, authUser);
+        // Se modifica la entidad de la BD, nunca la copia compartida de la caché; la fila queda
+        // bloqueada para que dos modificaciones simultáneas no calculen el mismo número de versión
+        Template templateToUpdate = templateRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new RuntimeException("Plantilla no encontrada con id: " + id));
+        checkReadAccess(templateToUpdate, authUser);
 
         if (templateToUpdate.getOwner() == null) {
             throw new RuntimeException("La plantilla no tiene un propietario asignado.");
@@ -120,8 +257,15 @@ public class TemplateService {
 
         templateToUpdate.setName(templateDetails.getName());
         templateToUpdate.setContent(templateDetails.getContent());
+        checkNameIsAvailable(templateToUpdate, id);
+        compile(templateToUpdate);
 
-        return templateRepository.save(templateToUpdate);
+        Template saved = saveWithUniqueName(templateToUpdate);
+        // Las versiones anteriores no cambian: las cachés por hash de contenido siguen siendo válidas
+        recordVersion(saved);
+        templateCache.invalidate(id);
+        templateProcessor.precompile(saved.getId(), saved.getCompiledContent());
+        return saved;
     }
 
     /**
@@ -131,6 +275,7 @@ public class TemplateService {
      * @param authUser el usuario autenticado
      * @throws AccessDeniedException si no tiene permisos de eliminación
      */
+    @Transactional
     public void delete(Long id, User authUser) throws AccessDeniedException {
         System.out.println("Intentando eliminar plantilla con ID: " + id);
         Template template = templateRepository.findById(id)
@@ -158,6 +303,8 @@ public class TemplateService {
 
         System.out.println("Permisos verificados. Eliminando plantilla...");
         templateRepository.delete(template);
+        templateVersionRepository.deleteByTemplateId(id);
+        templateCache.invalidate(id);
         System.out.println("Plantilla eliminada exitosamente.");
     }
 
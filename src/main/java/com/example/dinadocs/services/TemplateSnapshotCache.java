@@ -0,0 +1,220 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.cache.BoundedCache;
+import com.example.dinadocs.cache.BoundedCacheMetrics;
+import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateNames;
+import com.example.dinadocs.models.TemplateVersion;
+import com.example.dinadocs.repositories.TemplateRepository;
+import com.example.dinadocs.repositories.TemplateVersionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché de lectura de plantillas por id y por nombre.
+ *
+ * <p>Guarda copias desacopladas de la sesión JPA ({@link Template#snapshot()}), que se
+ * comparten entre solicitudes y no deben modificarse. La caché {@code templates} guarda las
+ * copias por id (acotada por entradas y por caracteres de contenido) y {@code templateNames}
+ * es un índice de clave de nombre ({@link TemplateNames#key(String)}) a id; un acierto por nombre
+ * se comprueba contra la copia, así que un cambio de nombre nunca devuelve otra plantilla. En un acierto no se ejecuta ninguna consulta.
+ *
+ * <p>{@link TemplateService} invalida la plantilla después de cada escritura (y otra vez al
+ * confirmarse la transacción). Para que una carga que coincida con una escritura no deje en
+ * la caché la versión anterior, solo se guardan las cargas durante las que no ha habido
+ * ninguna invalidación.
+ *
+ * <p>Las versiones anteriores que fija una solicitud ({@link TemplateVersion}) se guardan en
+ * {@code templateVersions}; como son inmutables, esas entradas nunca se invalidan.
+ */
+@Component
+public class TemplateSnapshotCache implements MeterBinder {
+
+    private final TemplateRepository templateRepository;
+    private final TemplateVersionRepository templateVersionRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final BoundedCache<Long, Template> byId;
+    private final BoundedCache<String, Long> idsByName;
+    private final BoundedCache<VersionKey, TemplateVersion> versions;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Crea una caché que carga las plantillas sin abrir transacción (para pruebas).
+     *
+     * @param templateRepository repositorio de plantillas
+     * @param templateVersionRepository repositorio de versiones de plantillas
+     * @param maxEntries número máximo de plantillas en caché
+     */
+    public TemplateSnapshotCache(TemplateRepository templateRepository,
+                                 TemplateVersionRepository templateVersionRepository, int maxEntries) {
+        this(templateRepository, templateVersionRepository, null, maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param templateRepository repositorio de plantillas
+     * @param templateVersionRepository repositorio de versiones de plantillas
+     * @param transactionManager gestor de transacciones con el que se cargan las plantillas (o null)
+     * @param maxEntries número máximo de plantillas en caché
+     * @param maxWeight tamaño máximo acumulado (en caracteres de contenido) de las plantillas en caché
+     */
+    @Autowired
+    public TemplateSnapshotCache(TemplateRepository templateRepository,
+                                 TemplateVersionRepository templateVersionRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${dinadocs.templates.snapshot-cache.max-entries:512}") int maxEntries,
+                                 @Value("${dinadocs.templates.snapshot-cache.max-weight:16777216}") long maxWeight) {
+        this.templateRepository = templateRepository;
+        this.templateVersionRepository = templateVersionRepository;
+        if (transactionManager != null) {
+            this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+            this.readOnlyTransaction.setReadOnly(true);
+        } else {
+            this.readOnlyTransaction = null;
+        }
+        this.byId = new BoundedCache<>("templates", maxEntries, maxWeight, TemplateSnapshotCache::weigh);
+        this.idsByName = new BoundedCache<>("templateNames", maxEntries);
+        this.versions = new BoundedCache<>("templateVersions", maxEntries, maxWeight, TemplateSnapshotCache::weigh);
+    }
+
+    /**
+     * Clave de la caché de versiones.
+     *
+     * @param templateId el ID de la plantilla
+     * @param versionNumber el número de la versión
+     */
+    private record VersionKey(Long templateId, int versionNumber) {
+    }
+
+    private static long weigh(Template template) {
+        long weight = 1;
+        weight += template.getContent() == null ? 0 : template.getContent().length();
+        weight += template.getCompiledContent() == null ? 0 : template.getCompiledContent().length();
+        return weight;
+    }
+
+    private static long weigh(TemplateVersion version) {
+        long weight = 1;
+        weight += version.getContent() == null ? 0 : version.getContent().length();
+        weight += version.getCompiledContent() == null ? 0 : version.getCompiledContent().length();
+        return weight;
+    }
+
+    /**
+     * Busca una plantilla por id.
+     *
+     * @param id el id de la plantilla
+     * @return la copia de la plantilla, o vacío si no existe
+     */
+    public Optional<Template> getById(Long id) {
+        Template cached = byId.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return load(() -> templateRepository.findById(id));
+    }
+
+    /**
+     * Busca una plantilla por nombre, sin distinguir mayúsculas ni acentos. En un fallo se
+     * hace una sola búsqueda por el índice único de la clave de nombre.
+     *
+     * @param name el nombre de la plantilla
+     * @return la copia de la plantilla, o vacío si no existe
+     */
+    public Optional<Template> getByName(String name) {
+        String nameKey = TemplateNames.key(name);
+        Long id = idsByName.get(nameKey);
+        if (id != null) {
+            Template cached = byId.get(id);
+            if (cached != null && nameKey.equals(cached.getNameKey())) {
+                return Optional.of(cached);
+            }
+        }
+        return load(() -> templateRepository.findByNameKey(nameKey));
+    }
+
+    /**
+     * Devuelve una plantilla con el contenido de una de sus versiones.
+     *
+     * @param current la copia actual de la plantilla (de {@link #getById} o {@link #getByName})
+     * @param versionNumber el número de la versión
+     * @return la copia con el contenido de esa versión, o vacío si la versión no existe
+     */
+    public Optional<Template> getVersion(Template current, int versionNumber) {
+        if (current.getCurrentVersion() != null && current.getCurrentVersion().getVersionNumber() == versionNumber) {
+            return Optional.of(current);
+        }
+        VersionKey key = new VersionKey(current.getId(), versionNumber);
+        TemplateVersion version = versions.get(key);
+        if (version == null) {
+            version = templateVersionRepository.findByTemplateIdAndVersionNumber(current.getId(), versionNumber).orElse(null);
+            if (version == null) {
+                return Optional.empty();
+            }
+            versions.put(key, version);
+        }
+        return Optional.of(current.atVersion(version));
+    }
+
+    private Optional<Template> load(Supplier<Optional<Template>> query) {
+        long invalidationsBefore = invalidations.get();
+        // La copia se hace dentro de la transacción, que inicializa las colecciones perezosas
+        Supplier<Optional<Template>> loader = () -> query.get().map(Template::snapshot);
+        Optional<Template> snapshot = readOnlyTransaction != null ? readOnlyTransaction.execute(status -> loader.get()) : loader.get();
+        if (snapshot.isPresent() && invalidations.get() == invalidationsBefore) {
+            Template template = snapshot.get();
+            byId.put(template.getId(), template);
+            idsByName.put(template.getNameKey(), template.getId());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Descarta la copia de una plantilla. Se llama después de modificarla o eliminarla; si
+     * hay una transacción en curso, se descarta otra vez al confirmarse, para que no quede
+     * la versión anterior cargada por otra solicitud mientras tanto.
+     * Las entradas del índice por nombre que apunten a ella se corrigen en la siguiente búsqueda.
+     *
+     * @param id el id de la plantilla
+     */
+    public void invalidate(Long id) {
+        evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    private void evict(Long id) {
+        invalidations.incrementAndGet();
+        byId.invalidate(id);
+    }
+
+    /**
+     * @return la caché de copias por id (para pruebas y métricas)
+     */
+    public BoundedCache<Long, Template> getCache() {
+        return byId;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new BoundedCacheMetrics(byId).bindTo(registry);
+        new BoundedCacheMetrics(idsByName).bindTo(registry);
+        new BoundedCacheMetrics(versions).bindTo(registry);
+    }
+}
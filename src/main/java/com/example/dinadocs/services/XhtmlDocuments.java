@@ -0,0 +1,112 @@
+package com.example.dinadocs.services;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Utilidades para leer XHTML bien formado directamente a un DOM W3C con el parser XML
+ * estándar de la JVM, sin pasar por jsoup. Se usan para las plantillas marcadas como
+ * XHTML al guardarse (ver {@link com.example.dinadocs.models.Template#isXhtmlReady()}).
+ *
+ * <p>Los parsers no cargan DTDs externas ni resuelven entidades externas.
+ */
+final class XhtmlDocuments {
+
+    private static final DocumentBuilderFactory DOCUMENT_FACTORY = newDocumentFactory();
+    private static final SAXParserFactory SAX_FACTORY = newSaxFactory();
+
+    private XhtmlDocuments() {
+    }
+
+    /**
+     * Parsea XHTML bien formado a un documento W3C.
+     *
+     * @param reader el contenido XHTML
+     * @return el documento
+     * @throws SAXException si el contenido no es XML bien formado
+     * @throws IOException si falla la lectura
+     */
+    static Document parse(Reader reader) throws SAXException, IOException {
+        DocumentBuilder builder = newDocumentBuilder();
+        // DefaultHandler no imprime los errores; los fatales se propagan como SAXException
+        builder.setErrorHandler(new DefaultHandler());
+        return builder.parse(new InputSource(reader));
+    }
+
+    /**
+     * Comprueba si un contenido es XML bien formado, sin construir el DOM.
+     *
+     * @param content el contenido a comprobar
+     * @return true si el contenido es XML bien formado
+     */
+    static boolean isWellFormed(String content) {
+        if (content == null || content.isEmpty()) {
+            return false;
+        }
+        try {
+            SAXParser parser;
+            synchronized (SAX_FACTORY) {
+                parser = SAX_FACTORY.newSAXParser();
+            }
+            parser.parse(new InputSource(new StringReader(content)), new DefaultHandler());
+            return true;
+        } catch (SAXException | IOException e) {
+            return false;
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("No se pudo configurar el parser XML", e);
+        }
+    }
+
+    private static DocumentBuilder newDocumentBuilder() {
+        try {
+            synchronized (DOCUMENT_FACTORY) {
+                return DOCUMENT_FACTORY.newDocumentBuilder();
+            }
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("No se pudo configurar el parser XML", e);
+        }
+    }
+
+    private static DocumentBuilderFactory newDocumentFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(false);
+        factory.setExpandEntityReferences(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("No se pudo configurar el parser XML", e);
+        }
+        return factory;
+    }
+
+    private static SAXParserFactory newSaxFactory() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("No se pudo configurar el parser XML", e);
+        }
+        return factory;
+    }
+}
@@ -1,10 +1,14 @@
 package com.example.dinadocs;
 
+import com.example.dinadocs.models.PlaceholderNode;
 import com.example.dinadocs.models.Role;
 import com.example.dinadocs.models.Template;
 import com.example.dinadocs.models.User;
 import com.example.dinadocs.repositories.TemplateRepository;
+import com.example.dinadocs.repositories.TemplateVersionRepository;
+import com.example.dinadocs.services.RenderEngines;
 import com.example.dinadocs.services.TemplateProcessor;
+import com.example.dinadocs.services.TemplateSnapshotCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -31,9 +35,18 @@ class TemplateServiceTest {
     @Mock
     private TemplateRepository templateRepository;
 
+    @Mock
+    private TemplateVersionRepository templateVersionRepository;
+
     @Mock
     private TemplateProcessor templateProcessor;
 
+    @Mock
+    private RenderEngines renderEngines;
+
+    @Mock
+    private TemplateSnapshotCache templateCache;
+
     @InjectMocks
     private TemplateService templateService;
 
@@ -83,9 +96,9 @@ class TemplateServiceTest {
         newTemplate.setContent("<html>{{nombre}}</html>");
 
         // Simula la extracción de placeholders
-        when(templateProcessor.extractPlaceholders(anyString())).thenReturn(Arrays.asList("nombre"));
+        when(templateProcessor.scanPlaceholders(anyString())).thenReturn(Arrays.asList(new PlaceholderNode("nombre", PlaceholderNode.Type.FIELD)));
         // Simula la acción de guardado
-        when(templateRepository.save(any(Template.class))).thenReturn(newTemplate);
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(newTemplate);
 
         // Llama al método
         Template savedTemplate = templateService.save(newTemplate, standardUser);
@@ -105,8 +118,8 @@ class TemplateServiceTest {
         newTemplate.setName("Plantilla de Creador");
         newTemplate.setContent("<html>{{titulo}}</html>");
 
-        when(templateProcessor.extractPlaceholders(anyString())).thenReturn(Arrays.asList("titulo"));
-        when(templateRepository.save(any(Template.class))).thenReturn(newTemplate);
+        when(templateProcessor.scanPlaceholders(anyString())).thenReturn(Arrays.asList(new PlaceholderNode("titulo", PlaceholderNode.Type.FIELD)));
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(newTemplate);
 
         Template savedTemplate = templateService.save(newTemplate, creatorUser);
 
@@ -121,7 +134,7 @@ class TemplateServiceTest {
     @Test
     void testFindById_WhenUserIsOwner_ShouldReturnTemplate() throws AccessDeniedException {
         // Configura el mock
-        when(templateRepository.findById(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateCache.getById(102L)).thenReturn(Optional.of(privateTemplate));
 
         Template found = templateService.findById(102L, standardUser);
 
@@ -135,7 +148,7 @@ class TemplateServiceTest {
      */
     @Test
     void testFindById_WhenTemplateIsPublic_ShouldReturnTemplate() throws AccessDeniedException {
-        when(templateRepository.findById(101L)).thenReturn(Optional.of(publicTemplate));
+        when(templateCache.getById(101L)).thenReturn(Optional.of(publicTemplate));
 
         Template found = templateService.findById(101L, standardUser);
 
@@ -149,7 +162,7 @@ class TemplateServiceTest {
      */
     @Test
     void testFindById_WhenAdminIsNotOwner_ShouldReturnTemplate() throws AccessDeniedException {
-        when(templateRepository.findById(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateCache.getById(102L)).thenReturn(Optional.of(privateTemplate));
 
         Template found = templateService.findById(102L, adminUser);
 
@@ -163,7 +176,7 @@ class TemplateServiceTest {
     @Test
     void testFindById_WhenUserIsNotOwner_ShouldThrowAccessDenied() {
         // El 'creatorUser' (ID 2) intenta ver la plantilla del 'standardUser' (ID 3)
-        when(templateRepository.findById(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateCache.getById(102L)).thenReturn(Optional.of(privateTemplate));
 
         assertThrows(AccessDeniedException.class, () -> {
             templateService.findById(102L, creatorUser);
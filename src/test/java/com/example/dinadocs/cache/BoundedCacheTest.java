@@ -0,0 +1,101 @@
+package com.example.dinadocs.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+
+    @Test
+    void testGetCountsHitsAndMisses() {
+        BoundedCache<String, String> cache = new BoundedCache<>("prueba", 10);
+        cache.put("a", "uno");
+
+        assertEquals("uno", cache.get("a"));
+        assertNull(cache.get("b"));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(0.5, cache.hitRatio());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedWhenEntriesExceeded() {
+        BoundedCache<String, String> cache = new BoundedCache<>("prueba", 2);
+        cache.put("a", "uno");
+        cache.put("b", "dos");
+        cache.get("a");
+        cache.put("c", "tres");
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void testEvictsWhenWeightExceeded() {
+        BoundedCache<String, String> cache = new BoundedCache<>("prueba", 100, 10, String::length);
+        cache.put("a", "123456");
+        cache.put("b", "123456");
+
+        assertEquals(1, cache.size());
+        assertEquals(6, cache.weight());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void testValueHeavierThanLimitIsNotStored() {
+        BoundedCache<String, String> cache = new BoundedCache<>("prueba", 100, 5, String::length);
+        cache.put("a", "demasiado largo");
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    void testComputeIfAbsentLoadsOnlyOnce() {
+        BoundedCache<String, String> cache = new BoundedCache<>("prueba", 10);
+        int[] loads = {0};
+
+        cache.computeIfAbsent("a", k -> { loads[0]++; return "valor"; });
+        cache.computeIfAbsent("a", k -> { loads[0]++; return "valor"; });
+
+        assertEquals(1, loads[0]);
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void testInvalidateIfRemovesMatchingKeys() {
+        BoundedCache<String, String> cache = new BoundedCache<>("prueba", 10, 100, String::length);
+        cache.put("1:a", "x");
+        cache.put("1:b", "yy");
+        cache.put("2:a", "zzz");
+
+        cache.invalidateIf(key -> key.startsWith("1:"));
+
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.weight());
+    }
+
+    @Test
+    void testEntriesExpireAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        BoundedCache<String, String> cache = new BoundedCache<>("prueba", 10, 100, String::length,
+                Duration.ofSeconds(5), now::get);
+        cache.put("a", "uno");
+
+        now.set(Duration.ofSeconds(4).toNanos());
+        assertEquals("uno", cache.get("a"));
+
+        now.set(Duration.ofSeconds(5).toNanos());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertEquals(1, cache.evictionCount());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.dinadocs.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskCacheTest {
+
+    @Test
+    void testGetReturnsMappedContent(@TempDir Path dir) {
+        DiskCache cache = new DiskCache("prueba", dir, 1024);
+        cache.put("a", "uno".getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer content = cache.get("a");
+
+        assertNotNull(content);
+        assertFalse(content.hasArray());
+        assertEquals("uno", StandardCharsets.UTF_8.decode(content).toString());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedWhenSizeExceeded(@TempDir Path dir) {
+        DiskCache cache = new DiskCache("prueba", dir, 10);
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.get("a");
+        cache.put("c", new byte[4]);
+
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.totalBytes());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertFalse(Files.exists(dir.resolve("b.cache")));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void testIgnoresEntriesLargerThanMaximum(@TempDir Path dir) {
+        DiskCache cache = new DiskCache("prueba", dir, 10);
+        cache.put("a", new byte[11]);
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void testRejectsKeysThatAreNotFileNames(@TempDir Path dir) {
+        DiskCache cache = new DiskCache("prueba", dir, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> cache.put("../a", new byte[1]));
+    }
+
+    @Test
+    void testIndexIsRebuiltOnStartup(@TempDir Path dir) throws Exception {
+        DiskCache first = new DiskCache("prueba", dir, 100);
+        first.put("viejo", new byte[6]);
+        first.put("nuevo", new byte[6]);
+        Files.setLastModifiedTime(dir.resolve("viejo.cache"), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(dir.resolve("nuevo.cache"), FileTime.fromMillis(2_000));
+        Files.write(dir.resolve("interrumpido123.tmp"), new byte[3]);
+
+        // Un límite menor al reiniciar expulsa primero la entrada menos reciente
+        DiskCache second = new DiskCache("prueba", dir, 10);
+
+        assertEquals(1, second.size());
+        assertEquals(6, second.totalBytes());
+        assertNotNull(second.get("nuevo"));
+        assertNull(second.get("viejo"));
+        assertFalse(Files.exists(dir.resolve("interrumpido123.tmp")));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.dinadocs.config;
+
+import com.example.dinadocs.models.Role;
+import com.example.dinadocs.models.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "management.endpoints.web.exposure.include=health,metrics")
+@AutoConfigureMockMvc
+class SecurityConfigurationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testHealthIsPublic() throws Exception {
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+    }
+
+    @Test
+    void testMetricsRequireAdmin() throws Exception {
+        mockMvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/metrics").with(authentication(as(Role.USUARIO))))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/metrics").with(authentication(as(Role.ADMIN))))
+                .andExpect(status().isOk());
+    }
+
+    private static UsernamePasswordAuthenticationToken as(Role role) {
+        User user = new User();
+        user.setId(99L);
+        user.setEmail("metricas@ejemplo.com");
+        user.setRole(role);
+        return new UsernamePasswordAuthenticationToken(user, null, List.of());
+    }
+}
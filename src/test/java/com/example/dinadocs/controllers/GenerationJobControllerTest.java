@@ -0,0 +1,110 @@
+package com.example.dinadocs.controllers;
+
+import com.example.dinadocs.models.GenerationJob;
+import com.example.dinadocs.models.GenerationRequest;
+import com.example.dinadocs.models.User;
+import com.example.dinadocs.services.GenerationJobService;
+import com.example.dinadocs.services.RenderRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class GenerationJobControllerTest {
+
+    @Mock
+    private GenerationJobService jobService;
+
+    @InjectMocks
+    private GenerationJobController jobController;
+
+    private User user;
+    private GenerationRequest request;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        user = new User();
+        user.setId(1L);
+
+        request = new GenerationRequest();
+        request.setTemplateType("factura");
+        Map<String, Object> data = new HashMap<>();
+        data.put("nombre", "Juan Pérez");
+        request.setData(data);
+    }
+
+    @Test
+    void testSubmitJobAccepted() {
+        GenerationJob job = new GenerationJob(request, user);
+        job.setId(5L);
+        when(jobService.submit(request, user)).thenReturn(job);
+
+        ResponseEntity<?> response = jobController.submitJob(request, user);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("/api/jobs/5", response.getHeaders().getLocation().toString());
+        assertSame(job, response.getBody());
+    }
+
+    @Test
+    void testSubmitJobBadRequest() {
+        when(jobService.submit(request, user)).thenThrow(new IllegalArgumentException("Datos vacíos"));
+
+        ResponseEntity<?> response = jobController.submitJob(request, user);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void testSubmitJobTooManyRequestsWhenQueueIsFull() {
+        when(jobService.submit(request, user)).thenThrow(new RenderRejectedException("Cola llena", 5));
+
+        ResponseEntity<?> response = jobController.submitJob(request, user);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("5", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void testGetJobNotFound() {
+        when(jobService.findById(5L, user)).thenThrow(new NoSuchElementException("Trabajo no encontrado con id: 5"));
+
+        ResponseEntity<?> response = jobController.getJob(5L, user);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void testGetJobResultReturnsPdf() {
+        byte[] pdf = "Contenido PDF".getBytes();
+        when(jobService.getResult(5L, user)).thenReturn(pdf);
+
+        ResponseEntity<?> response = jobController.getJobResult(5L, user);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
+        assertArrayEquals(pdf, (byte[]) response.getBody());
+    }
+
+    @Test
+    void testGetJobResultConflictWhilePending() {
+        when(jobService.getResult(5L, user)).thenThrow(new IllegalStateException("El trabajo 5 no tiene resultado"));
+
+        ResponseEntity<?> response = jobController.getJobResult(5L, user);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+}
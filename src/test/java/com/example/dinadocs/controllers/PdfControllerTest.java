@@ -1,17 +1,28 @@
 package com.example.dinadocs.controllers;
 
+import com.example.dinadocs.models.BatchGenerationRequest;
 import com.example.dinadocs.models.GenerationRequest;
+import com.example.dinadocs.models.Template;
 import com.example.dinadocs.services.PdfGenerationService;
+import com.example.dinadocs.services.PdfGenerationService.RenderedPdf;
+import com.example.dinadocs.services.RenderRejectedException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -38,14 +49,38 @@ class PdfControllerTest {
         request.setData(data);
 
         byte[] mockPdf = "Contenido PDF".getBytes();
-        when(pdfService.generatePdf(request)).thenReturn(mockPdf);
+        when(pdfService.generateDocument(request, null)).thenReturn(new RenderedPdf("\"abc\"", mockPdf));
 
-        ResponseEntity<?> response = pdfController.generateDocument(request);
+        ResponseEntity<?> response = pdfController.generateDocument(request, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertArrayEquals(mockPdf, (byte[]) response.getBody());
-        verify(pdfService, times(1)).generatePdf(request);
+        assertEquals("\"abc\"", response.getHeaders().getETag());
+        verify(pdfService, times(1)).generateDocument(request, null);
+    }
+
+    @Test
+    void testGenerateDocumentStreamsBodyAndReleasesIt() throws Exception {
+        GenerationRequest request = new GenerationRequest();
+        request.setTemplateType("factura");
+        request.setData(Map.of("nombre", "Juan Pérez"));
+
+        byte[] mockPdf = "Contenido PDF".getBytes();
+        ByteBuffer mapped = ByteBuffer.allocateDirect(mockPdf.length).put(mockPdf).flip();
+        AtomicBoolean released = new AtomicBoolean();
+        when(pdfService.generateDocument(request, null))
+                .thenReturn(new RenderedPdf("\"abc\"", mapped, () -> released.set(true)));
+
+        ResponseEntity<?> response = pdfController.generateDocument(request, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(mockPdf.length, response.getHeaders().getContentLength());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertFalse(released.get());
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        assertArrayEquals(mockPdf, out.toByteArray());
+        assertTrue(released.get());
     }
 
     @Test
@@ -54,13 +89,13 @@ class PdfControllerTest {
         request.setTemplateType("factura");
         request.setData(new HashMap<>());
 
-        when(pdfService.generatePdf(request))
+        when(pdfService.generateDocument(request, null))
                 .thenThrow(new IllegalArgumentException("Los datos no pueden estar vacíos"));
 
-        ResponseEntity<?> response = pdfController.generateDocument(request);
+        ResponseEntity<?> response = pdfController.generateDocument(request, null);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        verify(pdfService, times(1)).generatePdf(request);
+        verify(pdfService, times(1)).generateDocument(request, null);
     }
 
     @Test
@@ -71,12 +106,119 @@ class PdfControllerTest {
         data.put("nombre", "Juan Pérez");
         request.setData(data);
 
-        when(pdfService.generatePdf(request))
+        when(pdfService.generateDocument(request, null))
                 .thenThrow(new RuntimeException("Error interno"));
 
-        ResponseEntity<?> response = pdfController.generateDocument(request);
+        ResponseEntity<?> response = pdfController.generateDocument(request, null);
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
-        verify(pdfService, times(1)).generatePdf(request);
+        verify(pdfService, times(1)).generateDocument(request, null);
+    }
+
+    @Test
+    void testGenerateDocumentNotModified() {
+        GenerationRequest request = new GenerationRequest();
+        request.setTemplateType("factura");
+        request.setData(Map.of("nombre", "Juan Pérez"));
+
+        when(pdfService.generateDocument(request, "\"abc\"")).thenReturn(RenderedPdf.notModified("\"abc\""));
+
+        ResponseEntity<?> response = pdfController.generateDocument(request, "\"abc\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals("\"abc\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testGenerateDocumentTooManyRequests() {
+        GenerationRequest request = new GenerationRequest();
+        request.setTemplateType("factura");
+        Map<String, Object> data = new HashMap<>();
+        data.put("nombre", "Juan Pérez");
+        request.setData(data);
+
+        when(pdfService.generateDocument(request, null))
+                .thenThrow(new RenderRejectedException("Servicio saturado", 7));
+
+        ResponseEntity<?> response = pdfController.generateDocument(request, null);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("7", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void testGenerateBatchStreamsZip() throws Exception {
+        BatchGenerationRequest request = new BatchGenerationRequest();
+        request.setTemplateType("factura");
+        request.setData(List.of(Map.of("nombre", "Ana"), Map.of("nombre", "Luis")));
+        Template template = new Template();
+        when(pdfService.prepareBatch(request)).thenReturn(template);
+
+        ResponseEntity<?> response = pdfController.generateBatch(request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("application/zip", response.getHeaders().getContentType().toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        verify(pdfService, times(1)).writeBatchZip(template, request.getData(), null, out);
+    }
+
+    @Test
+    void testGenerateBatchBadRequest() {
+        BatchGenerationRequest request = new BatchGenerationRequest();
+        request.setTemplateType("factura");
+        when(pdfService.prepareBatch(request))
+                .thenThrow(new IllegalArgumentException("Las filas de datos (data) del lote no pueden estar vacías."));
+
+        ResponseEntity<?> response = pdfController.generateBatch(request);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(pdfService, never()).generatePdf(any());
+    }
+
+    @Test
+    void testGenerateBatchTooManyRequestsWhenRenderExecutorIsSaturated() throws Exception {
+        BatchGenerationRequest request = new BatchGenerationRequest();
+        request.setTemplateType("factura");
+        request.setData(List.of(Map.of("nombre", "Ana")));
+        when(pdfService.prepareBatch(request)).thenReturn(new Template());
+        when(pdfService.openBatch()).thenThrow(new RenderRejectedException("Servicio saturado", 7));
+
+        ResponseEntity<?> response = pdfController.generateBatch(request);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("7", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(pdfService, never()).writeBatchZip(any(), any(), any(), any());
+    }
+
+    @Test
+    void testGenerateMergedStreamsPdf() throws Exception {
+        BatchGenerationRequest request = new BatchGenerationRequest();
+        request.setTemplateType("factura");
+        request.setData(List.of(Map.of("nombre", "Ana")));
+        Template template = new Template();
+        when(pdfService.prepareBatch(request)).thenReturn(template);
+
+        ResponseEntity<?> response = pdfController.generateMerged(request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        verify(pdfService, times(1)).writeMergedPdf(template, request.getData(), null, out);
+    }
+
+    @Test
+    void testGenerateMergedTooManyRequestsWhenRenderExecutorIsSaturated() {
+        BatchGenerationRequest request = new BatchGenerationRequest();
+        request.setTemplateType("factura");
+        request.setData(List.of(Map.of("nombre", "Ana")));
+        when(pdfService.prepareBatch(request)).thenReturn(new Template());
+        when(pdfService.openBatch()).thenThrow(new RenderRejectedException("Servicio saturado", 7));
+
+        ResponseEntity<?> response = pdfController.generateMerged(request);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("7", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
     }
 }
@@ -2,6 +2,7 @@ package com.example.dinadocs.controllers;
 
 import com.example.dinadocs.models.Role;
 import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateSummary;
 import com.example.dinadocs.models.User;
 import com.example.dinadocs.services.TemplateService;
 import org.junit.jupiter.api.BeforeEach;
@@ -60,17 +61,33 @@ class TemplateControllerTest {
 
     @Test
     void testGetAllTemplates() {
-        List<Template> templates = new ArrayList<>();
-        templates.add(testTemplate);
+        List<TemplateSummary> summaries = new ArrayList<>();
+        summaries.add(new TemplateSummary(1L, "Plantilla de Prueba", false, 1, null));
 
-        when(templateService.findAllByRole(testUser)).thenReturn(templates);
+        when(templateService.findSummariesByRole(testUser, null, 50))
+                .thenReturn(new TemplateService.SummaryPage(summaries, null));
 
-        ResponseEntity<List<Template>> response = templateController.getAllTemplates(testUser);
+        ResponseEntity<List<TemplateSummary>> response = templateController.getAllTemplates(null, 50, testUser);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals(1, response.getBody().size());
-        verify(templateService, times(1)).findAllByRole(testUser);
+        assertFalse(response.getHeaders().containsKey(TemplateController.NEXT_CURSOR_HEADER));
+        verify(templateService, times(1)).findSummariesByRole(testUser, null, 50);
+    }
+
+    @Test
+    void testGetAllTemplatesReturnsNextCursor() {
+        List<TemplateSummary> summaries = List.of(
+                new TemplateSummary(11L, "A", true, 0, null),
+                new TemplateSummary(12L, "B", true, 3, null));
+        when(templateService.findSummariesByRole(testUser, 10L, 2))
+                .thenReturn(new TemplateService.SummaryPage(summaries, 12L));
+
+        ResponseEntity<List<TemplateSummary>> response = templateController.getAllTemplates(10L, 2, testUser);
+
+        assertEquals(2, response.getBody().size());
+        assertEquals("12", response.getHeaders().getFirst(TemplateController.NEXT_CURSOR_HEADER));
     }
 
     @Test
@@ -133,6 +150,16 @@ class TemplateControllerTest {
         verify(templateService, times(1)).update(eq(1L), any(Template.class), eq(testUser));
     }
 
+    @Test
+    void testUpdateTemplateMalformedContent() throws AccessDeniedException {
+        when(templateService.update(eq(1L), any(Template.class), eq(testUser)))
+                .thenThrow(new IllegalArgumentException("La plantilla tiene secciones Mustache mal formadas"));
+
+        ResponseEntity<?> response = templateController.updateTemplate(1L, testTemplate, testUser);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
     @Test
     void testDeleteTemplateSuccess() throws AccessDeniedException {
         doNothing().when(templateService).delete(1L, testUser);
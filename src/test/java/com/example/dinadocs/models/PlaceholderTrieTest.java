@@ -0,0 +1,102 @@
+package com.example.dinadocs.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlaceholderTrieTest {
+
+    private static PlaceholderNode section(String name, PlaceholderNode... children) {
+        PlaceholderNode node = new PlaceholderNode(name, PlaceholderNode.Type.SECTION);
+        node.getChildren().addAll(List.of(children));
+        return node;
+    }
+
+    private static PlaceholderNode field(String name) {
+        return new PlaceholderNode(name, PlaceholderNode.Type.FIELD);
+    }
+
+    @Test
+    void testFromSchemaSplitsDottedNamesAndSkipsInvertedSections() {
+        PlaceholderNode inverted = new PlaceholderNode("conceptos", PlaceholderNode.Type.INVERTED_SECTION);
+        inverted.getChildren().add(field("mensaje_vacio"));
+
+        PlaceholderTrie trie = PlaceholderTrie.fromSchema(List.of(
+                field("cliente.nombre"),
+                section("conceptos", field("descripcion")),
+                inverted));
+
+        assertEquals(Set.of("cliente", "conceptos"), trie.getChildren().keySet());
+        assertTrue(trie.getChildren().get("cliente").getChildren().containsKey("nombre"));
+        assertTrue(trie.getChildren().get("conceptos").isSection());
+        assertFalse(trie.getChildren().containsKey("mensaje_vacio"));
+    }
+
+    @Test
+    void testFindMissingReportsEachPathOnce() {
+        PlaceholderTrie trie = PlaceholderTrie.fromSchema(List.of(
+                field("cliente"),
+                field("fecha"),
+                section("conceptos", field("descripcion"), field("importe"))));
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("cliente", "ACME");
+        data.put("conceptos", List.of(
+                Map.of("descripcion", "Uno"),
+                Map.of("descripcion", "Dos"),
+                Map.of("descripcion", "Tres", "importe", 10)));
+
+        assertEquals(List.of("fecha", "conceptos.importe"), List.copyOf(trie.findMissing(data)));
+    }
+
+    @Test
+    void testFindMissingResolvesKeysFromEnclosingContext() {
+        PlaceholderTrie trie = PlaceholderTrie.fromSchema(List.of(
+                section("conceptos", field("descripcion"), field("moneda")),
+                section("mostrar_notas", field("notas"))));
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("moneda", "MXN");
+        data.put("conceptos", List.of(Map.of("descripcion", "Uno")));
+        data.put("mostrar_notas", true);
+        data.put("notas", "Pago a 30 días");
+
+        assertTrue(trie.findMissing(data).isEmpty());
+    }
+
+    @Test
+    void testDottedSegmentsAreNotResolvedFromEnclosingContext() {
+        PlaceholderTrie trie = PlaceholderTrie.fromSchema(List.of(
+                section("conceptos", field("descripcion"), field("cliente.nombre")),
+                field("empresa.nombre")));
+
+        Map<String, Object> data = new HashMap<>();
+        // "nombre" existe en el contexto exterior, pero no dentro de "cliente" ni de "empresa"
+        data.put("nombre", "ACME");
+        data.put("empresa", Map.of("rfc", "XAXX010101000"));
+        data.put("cliente", Map.of("rfc", "XEXX010101000"));
+        data.put("conceptos", List.of(Map.of("descripcion", "Uno")));
+
+        assertEquals(List.of("conceptos.cliente.nombre", "empresa.nombre"), List.copyOf(trie.findMissing(data)));
+        assertTrue(trie.getChildren().get("empresa").getChildren().get("nombre").isDotted());
+        assertFalse(trie.getChildren().get("conceptos").getChildren().get("descripcion").isDotted());
+    }
+
+    @Test
+    void testConverterRoundTrip() {
+        PlaceholderTrie trie = PlaceholderTrie.fromSchema(List.of(
+                field("cliente.nombre"),
+                section("conceptos", field("descripcion"))));
+        PlaceholderTrieConverter converter = new PlaceholderTrieConverter();
+
+        PlaceholderTrie restored = converter.convertToEntityAttribute(converter.convertToDatabaseColumn(trie));
+
+        assertEquals(trie, restored);
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.dinadocs.models;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateNamesTest {
+
+    @Test
+    void testKeyIgnoresCaseAccentsAndSpacing() {
+        assertEquals("cotizacion anual", TemplateNames.key("  Cotización   ANUAL "));
+        assertEquals(TemplateNames.key("factura"), TemplateNames.key("FACTURA"));
+        assertEquals("nino", TemplateNames.key("Niño"));
+        assertNull(TemplateNames.key(null));
+    }
+
+    @Test
+    void testSlugKeepsOnlyLettersAndDigits() {
+        assertEquals("cotizacion-2025-q1", TemplateNames.slug("Cotización 2025 (Q1)"));
+        assertEquals("carta", TemplateNames.slug("--Carta--"));
+        assertEquals("", TemplateNames.slug("   "));
+    }
+
+    @Test
+    void testSlugFallsBackToKeyHashWithoutLatinCharacters() {
+        String slug = TemplateNames.slug("請求書");
+
+        assertTrue(slug.matches("plantilla-[0-9a-f]{8}"));
+        assertEquals(slug, TemplateNames.slug(" 請求書 "));
+        assertNotEquals(slug, TemplateNames.slug("Счёт"));
+        assertTrue(TemplateNames.slug("¡!").startsWith("plantilla-"));
+    }
+
+    @Test
+    void testSetNameDerivesKeyAndSlug() {
+        Template template = new Template();
+        template.setName("Orden de Compra");
+
+        assertEquals("orden de compra", template.getNameKey());
+        assertEquals("orden-de-compra", template.getSlug());
+        assertEquals("orden de compra", template.snapshot().getNameKey());
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.dinadocs.repositories;
+
+import com.example.dinadocs.models.Role;
+import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateNames;
+import com.example.dinadocs.models.TemplateSummary;
+import com.example.dinadocs.models.User;
+import com.example.dinadocs.services.RenderEngines;
+import com.example.dinadocs.services.TemplateProcessor;
+import com.example.dinadocs.services.TemplateService;
+import com.example.dinadocs.services.TemplateSnapshotCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(TemplateService.class)
+class TemplateRepositoryTest {
+
+    @Autowired
+    private TemplateRepository templateRepository;
+
+    @Autowired
+    private TemplateService templateService;
+
+    // Colaboradores de TemplateService que el listado no usa
+    @MockitoBean
+    private TemplateProcessor templateProcessor;
+
+    @MockitoBean
+    private RenderEngines renderEngines;
+
+    @MockitoBean
+    private TemplateSnapshotCache templateCache;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User owner;
+    private User other;
+
+    @BeforeEach
+    void setUp() {
+        owner = entityManager.persist(user("duenio@ejemplo.com"));
+        other = entityManager.persist(user("otro@ejemplo.com"));
+        for (int i = 1; i <= 5; i++) {
+            entityManager.persist(template("publica" + i, true, owner, i));
+        }
+        entityManager.persist(template("privada-propia", false, owner, 0));
+        entityManager.persist(template("privada-ajena", false, other, 0));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void testSummariesArePagedByIdAfterCursor() {
+        List<TemplateSummary> first = templateRepository.findSummaries(0, Limit.of(3));
+        List<TemplateSummary> second = templateRepository.findSummaries(first.get(2).id(), Limit.of(10));
+
+        assertEquals(3, first.size());
+        assertEquals(4, second.size());
+        assertTrue(first.get(2).id() < second.get(0).id());
+        assertEquals("publica1", first.get(0).name());
+        assertEquals(1, first.get(0).placeholderCount());
+        assertNotNull(first.get(0).updatedAt());
+    }
+
+    @Test
+    void testSummariesRespectVisibility() {
+        List<TemplateSummary> visible = templateRepository.findPublicOrOwnedSummaries(owner, 0, Limit.of(10));
+        List<TemplateSummary> publicOnly = templateRepository.findPublicSummaries(0, Limit.of(10));
+
+        assertEquals(6, visible.size());
+        assertTrue(visible.stream().noneMatch(summary -> summary.name().equals("privada-ajena")));
+        assertEquals(5, publicOnly.size());
+        assertTrue(publicOnly.stream().allMatch(TemplateSummary::isPublic));
+    }
+
+    @Test
+    void testFindsTemplateByNormalizedName() {
+        entityManager.persist(template("Cotización Anual", true, owner, 0));
+        entityManager.flush();
+
+        Template found = templateRepository.findByNameKey(TemplateNames.key("COTIZACION anual")).orElseThrow();
+
+        assertEquals("Cotización Anual", found.getName());
+        assertEquals("cotizacion-anual", found.getSlug());
+        assertTrue(templateRepository.existsOtherWithNameKey("cotizacion anual", 0L));
+        assertFalse(templateRepository.existsOtherWithNameKey("cotizacion anual", found.getId()));
+    }
+
+    @Test
+    void testNamesDifferingOnlyInPunctuationCanShareSlug() {
+        entityManager.persist(template("Factura (A)", true, owner, 0));
+        entityManager.persist(template("Factura A", true, owner, 0));
+        entityManager.persist(template("Contrato #1", true, owner, 0));
+        entityManager.persist(template("Contrato №1", true, owner, 0));
+        entityManager.flush();
+
+        assertFalse(templateRepository.existsOtherWithNameKey(TemplateNames.key("Factura (B)"), 0L));
+        assertEquals("factura-a", templateRepository.findByNameKey("factura (a)").orElseThrow().getSlug());
+        assertEquals("factura-a", templateRepository.findByNameKey("factura a").orElseThrow().getSlug());
+    }
+
+    @Test
+    void testFindByIdForUpdateLoadsTheTemplate() {
+        Template template = templateRepository.findByNameKey(TemplateNames.key("publica1")).orElseThrow();
+        entityManager.clear();
+
+        // SELECT ... FOR UPDATE: la fila queda bloqueada hasta el final de la transacción del test
+        Template locked = templateRepository.findByIdForUpdate(template.getId()).orElseThrow();
+
+        assertEquals("publica1", locked.getName());
+        assertTrue(templateRepository.findByIdForUpdate(-1L).isEmpty());
+    }
+
+    @Test
+    void testNormalizedNameIsUnique() {
+        // El id es IDENTITY, así que el INSERT se ejecuta al persistir
+        assertThrows(ConstraintViolationException.class,
+                () -> entityManager.persistAndFlush(template("PÚBLICA1", true, other, 0)));
+    }
+
+    @Test
+    void testSaveAndFlushTranslatesDuplicateName() {
+        // Es la excepción que TemplateService convierte en "nombre en uso" si dos altas coinciden
+        assertThrows(DataIntegrityViolationException.class,
+                () -> templateRepository.saveAndFlush(template("Pública1", true, other, 0)));
+    }
+
+    @Test
+    void testListingTemplatesUsesBoundedStatementCount() {
+        for (int i = 0; i < 1000; i++) {
+            entityManager.persist(template("masiva" + i, true, owner, 2));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+
+        User admin = user("admin@ejemplo.com");
+        admin.setRole(Role.ADMIN);
+
+        // El mismo recorrido que GET /api/templates: páginas de resúmenes hasta agotar el cursor.
+        // El administrador ve todas; el propietario, las públicas y su plantilla privada
+        for (User user : List.of(admin, owner)) {
+            statistics.clear();
+            List<TemplateSummary> listed = new ArrayList<>();
+            int pages = 0;
+            Long cursor = null;
+            do {
+                TemplateService.SummaryPage page = templateService.findSummariesByRole(user, cursor, TemplateService.MAX_PAGE_SIZE);
+                listed.addAll(page.items());
+                cursor = page.nextCursor();
+                pages++;
+            } while (cursor != null);
+
+            assertEquals(user == admin ? 1007 : 1006, listed.size());
+            assertEquals(2015, listed.stream().mapToInt(TemplateSummary::placeholderCount).sum());
+            // Una consulta por página y ninguna entidad completa cargada
+            assertEquals(pages, statistics.getPrepareStatementCount(), "Páginas: " + pages);
+            assertEquals(0, statistics.getEntityLoadCount());
+        }
+    }
+
+    private static User user(String email) {
+        User user = new User();
+        user.setName("Usuario");
+        user.setEmail(email);
+        user.setPassword("secreto");
+        user.setRole(Role.USUARIO);
+        return user;
+    }
+
+    private static Template template(String name, boolean isPublic, User owner, int placeholderCount) {
+        Template template = new Template();
+        template.setName(name);
+        template.setContent("<p>{{a}}</p>");
+        template.setPublic(isPublic);
+        template.setOwner(owner);
+        template.setPlaceholderCount(placeholderCount);
+        return template;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.dinadocs.repositories;
+
+import com.example.dinadocs.models.Role;
+import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateVersion;
+import com.example.dinadocs.models.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class TemplateVersionRepositoryTest {
+
+    @Autowired
+    private TemplateVersionRepository templateVersionRepository;
+
+    @Autowired
+    private TemplateRepository templateRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Template template;
+
+    @BeforeEach
+    void setUp() {
+        User owner = new User();
+        owner.setName("Dueño");
+        owner.setEmail("duenio@ejemplo.com");
+        owner.setPassword("secreto");
+        owner.setRole(Role.USUARIO);
+        entityManager.persist(owner);
+
+        template = new Template();
+        template.setName("factura");
+        template.setContent("<p>{{uno}}</p>");
+        template.setOwner(owner);
+        entityManager.persist(template);
+        entityManager.persist(new TemplateVersion(template, 1, "hash-1"));
+        template.setContent("<p>{{dos}}</p>");
+        template.setCurrentVersion(entityManager.persist(new TemplateVersion(template, 2, "hash-2")));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void testFindsVersionsByNumber() {
+        assertEquals(2, templateVersionRepository.findLatestVersionNumber(template.getId()));
+        assertEquals(0, templateVersionRepository.findLatestVersionNumber(template.getId() + 1));
+
+        TemplateVersion first = templateVersionRepository.findByTemplateIdAndVersionNumber(template.getId(), 1).orElseThrow();
+        assertEquals("<p>{{uno}}</p>", first.getContent());
+        assertEquals("hash-1", first.getContentHash());
+
+        Template loaded = templateRepository.findById(template.getId()).orElseThrow();
+        assertEquals(2, loaded.getVersionNumber());
+        assertEquals("hash-2", loaded.snapshot().getCurrentVersion().getContentHash());
+    }
+
+    @Test
+    void testDeletesTemplateWithItsVersions() {
+        templateRepository.delete(templateRepository.findById(template.getId()).orElseThrow());
+        templateVersionRepository.deleteByTemplateId(template.getId());
+        entityManager.flush();
+
+        assertTrue(templateRepository.findById(template.getId()).isEmpty());
+        assertEquals(0, templateVersionRepository.count());
+    }
+}
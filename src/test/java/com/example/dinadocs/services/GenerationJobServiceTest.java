@@ -0,0 +1,226 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.models.GenerationJob;
+import com.example.dinadocs.models.GenerationJobResult;
+import com.example.dinadocs.models.GenerationRequest;
+import com.example.dinadocs.models.JobStatus;
+import com.example.dinadocs.models.Role;
+import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateVersion;
+import com.example.dinadocs.models.User;
+import com.example.dinadocs.repositories.GenerationJobRepository;
+import com.example.dinadocs.repositories.GenerationJobResultRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GenerationJobServiceTest {
+
+    @Mock
+    private GenerationJobRepository jobRepository;
+
+    @Mock
+    private GenerationJobResultRepository resultRepository;
+
+    @Mock
+    private PdfGenerationService pdfService;
+
+    private GenerationJobService jobService;
+    private User owner;
+    private GenerationRequest request;
+    private Template template;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        jobService = new GenerationJobService(jobRepository, resultRepository, pdfService, 1, 2, 7);
+
+        owner = new User();
+        owner.setId(1L);
+        owner.setRole(Role.USUARIO);
+
+        request = new GenerationRequest();
+        request.setTemplateType("factura");
+        Map<String, Object> data = new HashMap<>();
+        data.put("nombre", "Juan Pérez");
+        request.setData(data);
+
+        template = new Template();
+        template.setId(5L);
+        when(pdfService.loadTemplate("factura", null)).thenReturn(template);
+
+        when(jobRepository.save(any(GenerationJob.class))).thenAnswer(invocation -> {
+            GenerationJob job = invocation.getArgument(0);
+            if (job.getId() == null) {
+                job.setId(10L);
+            }
+            return job;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.destroy();
+    }
+
+    @Test
+    void testSubmitStoresPendingJobAndRunsIt() {
+        when(jobRepository.findById(10L)).thenAnswer(invocation -> Optional.of(savedJob()));
+        when(pdfService.generatePdf(any(GenerationRequest.class))).thenReturn("PDF".getBytes());
+
+        GenerationJob job = jobService.submit(request, owner);
+
+        assertEquals(10L, job.getId());
+        verify(pdfService).validateData(request);
+        verify(pdfService).loadTemplate("factura", null);
+        verify(resultRepository, timeout(5000)).save(any(GenerationJobResult.class));
+    }
+
+    @Test
+    void testSubmitPinsCurrentTemplateVersion() {
+        template.setCurrentVersion(new TemplateVersion(template, 3, "hash"));
+        when(jobRepository.findById(10L)).thenAnswer(invocation -> Optional.of(savedJob()));
+        when(pdfService.generatePdf(any(GenerationRequest.class))).thenReturn("PDF".getBytes());
+
+        GenerationJob job = jobService.submit(request, owner);
+
+        assertEquals(3, job.getTemplateVersion());
+        assertEquals(3, job.toRequest().getTemplateVersion());
+    }
+
+    @Test
+    void testSubmitRejectsUnknownTemplate() {
+        when(pdfService.loadTemplate("factura", null)).thenThrow(new NoSuchElementException("La plantilla 'factura' no existe."));
+
+        assertThrows(NoSuchElementException.class, () -> jobService.submit(request, owner));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void testProcessStoresResultAndCompletesJob() {
+        GenerationJob job = savedJob();
+        when(jobRepository.findById(10L)).thenReturn(Optional.of(job));
+        when(pdfService.generatePdf(any(GenerationRequest.class))).thenReturn("PDF".getBytes());
+
+        jobService.process(10L);
+
+        ArgumentCaptor<GenerationJobResult> result = ArgumentCaptor.forClass(GenerationJobResult.class);
+        verify(resultRepository).save(result.capture());
+        assertEquals(10L, result.getValue().getJobId());
+        assertArrayEquals("PDF".getBytes(), result.getValue().getContent());
+        assertEquals(JobStatus.COMPLETADO, job.getStatus());
+        assertNotNull(job.getCompletedAt());
+    }
+
+    @Test
+    void testProcessMarksJobAsFailed() {
+        GenerationJob job = savedJob();
+        when(jobRepository.findById(10L)).thenReturn(Optional.of(job));
+        when(pdfService.generatePdf(any(GenerationRequest.class))).thenThrow(new RuntimeException("Error interno"));
+
+        jobService.process(10L);
+
+        assertEquals(JobStatus.FALLIDO, job.getStatus());
+        assertEquals("Error interno", job.getErrorMessage());
+        verify(resultRepository, never()).save(any());
+    }
+
+    @Test
+    void testProcessMarksJobAsFailedOnError() {
+        GenerationJob job = savedJob();
+        when(jobRepository.findById(10L)).thenReturn(Optional.of(job));
+        when(pdfService.generatePdf(any(GenerationRequest.class))).thenThrow(new OutOfMemoryError());
+
+        jobService.process(10L);
+
+        assertEquals(JobStatus.FALLIDO, job.getStatus());
+        assertEquals("OutOfMemoryError", job.getErrorMessage());
+        assertNotNull(job.getCompletedAt());
+    }
+
+    @Test
+    void testSubmitRejectsWhenQueueIsFull() throws InterruptedException {
+        // El único trabajador queda bloqueado en el primer trabajo; el resto espera en la cola
+        CountDownLatch release = new CountDownLatch(1);
+        when(jobRepository.findById(10L)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.empty();
+        });
+
+        try {
+            jobService.submit(request, owner);
+            jobService.submit(request, owner);
+            RenderRejectedException e = assertThrows(RenderRejectedException.class, () -> {
+                for (int i = 0; i < 2; i++) {
+                    jobService.submit(request, owner);
+                }
+            });
+
+            assertEquals(7, e.getRetryAfterSeconds());
+            assertEquals(2, jobService.getQueuedCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testProcessRequeuesJobWhenRenderQueueIsFull() {
+        GenerationJob job = savedJob();
+        when(jobRepository.findById(10L)).thenReturn(Optional.of(job));
+        when(pdfService.generatePdf(any(GenerationRequest.class))).thenThrow(new RenderRejectedException("Saturado", 60));
+
+        jobService.process(10L);
+
+        assertEquals(JobStatus.PENDIENTE, job.getStatus());
+        assertNull(job.getStartedAt());
+    }
+
+    @Test
+    void testResumePendingJobsResetsInterruptedJobs() {
+        GenerationJob interrupted = savedJob();
+        interrupted.setStatus(JobStatus.EN_PROCESO);
+        when(jobRepository.findByStatusInOrderByIdAsc(any())).thenReturn(List.of(interrupted));
+
+        jobService.resumePendingJobs();
+
+        assertEquals(JobStatus.PENDIENTE, interrupted.getStatus());
+        verify(jobRepository).save(interrupted);
+    }
+
+    @Test
+    void testOtherUsersCannotSeeJob() {
+        when(jobRepository.findById(10L)).thenReturn(Optional.of(savedJob()));
+        User other = new User();
+        other.setId(2L);
+        other.setRole(Role.USUARIO);
+
+        assertThrows(NoSuchElementException.class, () -> jobService.findById(10L, other));
+    }
+
+    @Test
+    void testGetResultRequiresCompletedJob() {
+        when(jobRepository.findById(10L)).thenReturn(Optional.of(savedJob()));
+
+        assertThrows(IllegalStateException.class, () -> jobService.getResult(10L, owner));
+    }
+
+    private GenerationJob savedJob() {
+        GenerationJob job = new GenerationJob(request, owner);
+        job.setId(10L);
+        return job;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.models.Template;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiteRenderEngineTest {
+
+    private final TemplateProcessor processor = new TemplateProcessor();
+    private final LiteRenderEngine engine = new LiteRenderEngine();
+
+    private Template compiled(String content) {
+        Template template = new Template();
+        template.setContent(content);
+        template.setCompiledContent(processor.compileTemplate(content));
+        template.setXhtmlReady(processor.isXhtmlReady(template.getCompiledContent()));
+        return template;
+    }
+
+    @Test
+    void testSupportsTextOnlyTemplates() {
+        assertTrue(engine.supports(compiled("<html><head><title>Carta</title></head><body>"
+                + "<h1>Hola {{nombre}}</h1><p style=\"text-align: center\">Texto <b>fuerte</b><br/>y <i>más</i></p>"
+                + "<ul>{{#puntos}}<li>{{texto}}</li>{{/puntos}}</ul></body></html>")));
+    }
+
+    @Test
+    void testRejectsStylesTablesAndUnescapedValues() {
+        assertFalse(engine.supports(compiled("<html><head><style>p { color: red; }</style></head><body><p>{{a}}</p></body></html>")));
+        assertFalse(engine.supports(compiled("<html><body><table><tr><td>{{a}}</td></tr></table></body></html>")));
+        assertFalse(engine.supports(compiled("<html><body><p style=\"color: red\">{{a}}</p></body></html>")));
+        assertFalse(engine.supports(compiled("<html><body><p style=\"text-align: {{alineacion}}\">{{a}}</p></body></html>")));
+        // El texto justificado no se maqueta: la plantilla usa el motor completo
+        assertFalse(engine.supports(compiled("<html><body><p style=\"text-align: justify\">{{a}}</p></body></html>")));
+        assertFalse(engine.supports(compiled("<html><body><img src=\"logo.png\"/></body></html>")));
+        assertFalse(engine.supports(compiled("<html><body><p>{{{html}}}</p></body></html>")));
+    }
+
+    @Test
+    void testRendersTextListsAndPages() throws Exception {
+        StringBuilder html = new StringBuilder("<html><head><title>Orden</title></head><body><h1>Orden 42</h1><ol>");
+        for (int i = 1; i <= 120; i++) {
+            html.append("<li>Concepto número ").append(i).append(" con una descripción algo más larga de lo normal</li>");
+        }
+        html.append("</ol><p>Total: <b>1.234,00 €</b></p></body></html>");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.render(XhtmlDocuments.parse(new StringReader(html.toString())), out);
+
+        try (PDDocument pdf = PDDocument.load(out.toByteArray())) {
+            assertTrue(pdf.getNumberOfPages() > 1);
+            assertEquals("Orden", pdf.getDocumentInformation().getTitle());
+            String text = new PDFTextStripper().getText(pdf);
+            assertTrue(text.contains("Orden 42"));
+            assertTrue(text.contains("120. Concepto número 120"));
+            assertTrue(text.contains("Total: 1.234,00 €"));
+        }
+    }
+
+    @Test
+    void testRejectsCharactersOutsideStandardFonts() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document document = XhtmlDocuments.parse(new StringReader("<html><body><p>\u4E2D</p></body></html>"));
+
+        assertThrows(LiteEngineUnsupportedException.class, () -> engine.render(document, out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void testSelectsLiteEngineOnlyForSupportedTemplates() {
+        RenderEngines engines = new RenderEngines(List.of(engine, new FlyingSaucerRenderEngine(new PdfRendererFactory("", 1))));
+
+        assertEquals(LiteRenderEngine.NAME, engines.select(compiled("<html><body><p>{{a}}</p></body></html>")));
+        assertEquals(FlyingSaucerRenderEngine.NAME,
+                engines.select(compiled("<html><body><table><tr><td>{{a}}</td></tr></table></body></html>")));
+        assertEquals(FlyingSaucerRenderEngine.NAME, engines.get(null).getName());
+    }
+}
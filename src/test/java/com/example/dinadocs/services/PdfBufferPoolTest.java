@@ -0,0 +1,54 @@
+package com.example.dinadocs.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfBufferPoolTest {
+
+    @Test
+    void testReleasedBufferIsReusedEmpty() {
+        PdfBufferPool pool = new PdfBufferPool(1, 1024 * 1024);
+        PdfBufferPool.PooledBuffer buffer = pool.acquire();
+        buffer.writeBytes(new byte[] {1, 2, 3});
+
+        ByteBuffer content = buffer.asByteBuffer();
+        assertEquals(3, content.remaining());
+        assertTrue(content.hasArray());
+
+        buffer.release();
+        buffer.release();
+        assertEquals(1, pool.getIdleCount());
+
+        PdfBufferPool.PooledBuffer reused = pool.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.size());
+        assertEquals(1, pool.getAllocationCount());
+    }
+
+    @Test
+    void testOversizedBufferIsDiscarded() {
+        PdfBufferPool pool = new PdfBufferPool(1, 128 * 1024);
+        PdfBufferPool.PooledBuffer buffer = pool.acquire();
+        buffer.writeBytes(new byte[256 * 1024]);
+
+        buffer.release();
+
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    void testDiscardedBufferIsNotReused() {
+        PdfBufferPool pool = new PdfBufferPool(1, 1024 * 1024);
+        PdfBufferPool.PooledBuffer buffer = pool.acquire();
+        buffer.writeBytes(new byte[] {1, 2, 3});
+
+        buffer.discard();
+        buffer.release();
+
+        assertEquals(0, pool.getIdleCount());
+        assertNotSame(buffer, pool.acquire());
+    }
+}
@@ -1,15 +1,30 @@
 package com.example.dinadocs.services;
 
+import com.example.dinadocs.models.BatchGenerationRequest;
 import com.example.dinadocs.models.GenerationRequest;
+import com.example.dinadocs.cache.ContentHash;
 import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateVersion;
 import com.example.dinadocs.repositories.TemplateRepository;
+import com.example.dinadocs.repositories.TemplateVersionRepository;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -19,10 +34,37 @@ class PdfGenerationServiceTest {
     @Mock
     private TemplateRepository templateRepository;
 
+    @Mock
+    private TemplateVersionRepository templateVersionRepository;
+
     @Mock
     private TemplateProcessor templateProcessor;
 
-    @InjectMocks
+    // Espía creado a mano para que el motor completo use la misma instancia
+    @Spy
+    private PdfRendererFactory rendererFactory = spy(new PdfRendererFactory("", 1));
+
+    @Spy
+    private RenderExecutor renderExecutor = new RenderExecutor(1, 4, 5);
+
+    @Spy
+    private PdfMerger pdfMerger = new PdfMerger(1024 * 1024, "");
+
+    @Spy
+    private RenderedPdfCache pdfCache = new RenderedPdfCache();
+
+    @Spy
+    private PdfBufferPool bufferPool = new PdfBufferPool(2, 1024 * 1024);
+
+    @Spy
+    private SectionChunker sectionChunker = new SectionChunker(2000, 500);
+
+    @Spy
+    private RenderEngines renderEngines = new RenderEngines(
+            List.of(new LiteRenderEngine(), new FlyingSaucerRenderEngine(rendererFactory)));
+
+    private TemplateSnapshotCache templateCache;
+
     private PdfGenerationService pdfGenerationService;
 
     private Template testTemplate;
@@ -31,6 +73,10 @@ class PdfGenerationServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // La caché de plantillas lee del repositorio simulado
+        templateCache = new TemplateSnapshotCache(templateRepository, templateVersionRepository, 16);
+        pdfGenerationService = new PdfGenerationService(templateCache, templateProcessor, rendererFactory,
+                renderExecutor, pdfMerger, pdfCache, bufferPool, sectionChunker, renderEngines);
         
         testTemplate = new Template();
         testTemplate.setId(1L);
@@ -47,16 +93,255 @@ class PdfGenerationServiceTest {
 
     @Test
     void testGeneratePdfSuccess() {
-        when(templateRepository.findByName("factura")).thenReturn(Optional.of(testTemplate));
-        when(templateProcessor.processTemplate(anyString(), anyMap()))
-                .thenReturn("<html><body>Juan Pérez</body></html>");
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body>Juan Pérez</body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
 
         byte[] result = pdfGenerationService.generatePdf(testRequest);
 
         assertNotNull(result);
         assertTrue(result.length > 0);
-        verify(templateRepository, times(1)).findByName("factura");
-        verify(templateProcessor, times(1)).processTemplate(anyString(), anyMap());
+        verify(templateRepository, times(1)).findByNameKey("factura");
+        verify(templateProcessor, times(1)).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+        verify(rendererFactory, times(1)).createRenderer();
+        verify(rendererFactory, times(1)).release(any());
+    }
+
+    @Test
+    void testGenerateDocumentServesRepeatedRequestFromCache() {
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body>Juan Pérez</body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        PdfGenerationService.RenderedPdf first = pdfGenerationService.generateDocument(testRequest, null);
+        PdfGenerationService.RenderedPdf second = pdfGenerationService.generateDocument(testRequest, null);
+
+        assertEquals(first.etag(), second.etag());
+        assertArrayEquals(first.content(), second.content());
+        verify(templateProcessor, times(1)).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+        assertEquals(1, pdfCache.getMemoryCache().hitCount());
+    }
+
+    @Test
+    void testGenerateDocumentRendersIntoReusableBuffer() throws Exception {
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doAnswer(invocation -> {
+            Map<String, Object> data = invocation.getArgument(2);
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body>" + data.get("nombre") + "</body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        try (PdfGenerationService.RenderedPdf document = pdfGenerationService.generateDocument(testRequest, null)) {
+            assertFalse(document.isInMemory());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.writeTo(out);
+            assertEquals(document.size(), out.size());
+            try (PDDocument pdf = PDDocument.load(out.toByteArray())) {
+                assertTrue(new PDFTextStripper().getText(pdf).contains("Juan Pérez"));
+            }
+        }
+        assertEquals(1, bufferPool.getIdleCount());
+
+        testRequest.setData(Map.of("nombre", "Ana"));
+        pdfGenerationService.generateDocument(testRequest, null).close();
+        assertEquals(1, bufferPool.getAllocationCount());
+    }
+
+    @Test
+    void testGeneratePdfRendersLongSectionsInChunks() throws Exception {
+        TemplateProcessor processor = new TemplateProcessor();
+        SectionChunker chunker = spy(new SectionChunker(10, 4));
+        PdfGenerationService chunked = new PdfGenerationService(templateCache, processor, rendererFactory,
+                renderExecutor, pdfMerger, new RenderedPdfCache(), bufferPool, chunker, renderEngines);
+        Template order = new Template();
+        order.setId(2L);
+        order.setName("orden");
+        order.setContent(processor.compileTemplate("<html><body><h1>Orden {{numero}}</h1>"
+                + "<table><thead><tr><th>Concepto</th></tr></thead><tbody>"
+                + "{{#conceptos}}<tr><td>Fila {{n}}</td></tr>{{/conceptos}}"
+                + "</tbody></table><p>Total {{total}}</p></body></html>"));
+        when(templateRepository.findByNameKey("orden")).thenReturn(Optional.of(order));
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 1; i <= 25; i++) {
+            rows.add(Map.of("n", String.format("%03d", i)));
+        }
+        GenerationRequest request = new GenerationRequest();
+        request.setTemplateType("orden");
+        request.setData(Map.of("numero", "OC-1", "total", "999", "conceptos", rows));
+
+        byte[] result = chunked.generatePdf(request);
+
+        // Todos los bloques se renderizan en una sola tarea admitida
+        verify(renderExecutor, times(1)).execute(any());
+        assertEquals(7, chunker.plan(order.getContent(), request.getData()).chunkCount());
+        try (PDDocument pdf = PDDocument.load(result)) {
+            assertEquals(7, pdf.getNumberOfPages());
+            String text = new PDFTextStripper().getText(pdf);
+            int previous = -1;
+            for (int i = 1; i <= 25; i++) {
+                int position = text.indexOf(String.format("Fila %03d", i));
+                assertTrue(position > previous, "Fila " + i + " fuera de orden");
+                previous = position;
+            }
+            assertEquals(1, text.split("Orden OC-1", -1).length - 1);
+            assertEquals(1, text.split("Total 999", -1).length - 1);
+            // La cabecera de la tabla se repite en cada bloque
+            assertEquals(7, text.split("Concepto", -1).length - 1);
+        }
+    }
+
+    @Test
+    void testGenerateDocumentSkipsRenderingWhenEtagMatches() {
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        String etag = "\"" + pdfCache.key(ContentHash.sha256(testTemplate.getContent()), testRequest.getData()) + "\"";
+
+        PdfGenerationService.RenderedPdf result = pdfGenerationService.generateDocument(testRequest, "W/" + etag);
+
+        assertTrue(result.isNotModified());
+        assertEquals(etag, result.etag());
+        verify(templateProcessor, never()).processTemplate(anyLong(), anyString(), anyMap(), any(Writer.class));
+    }
+
+    @Test
+    void testRenderedPdfCacheKeepsLargeDocumentsOnlyOnDisk(@TempDir Path dir) {
+        RenderedPdfCache tiered = new RenderedPdfCache(16, 1024 * 1024, 8, dir.toString(), 1024 * 1024);
+        tiered.put("pequeno", new byte[4]);
+        tiered.put("grande", new byte[64]);
+
+        assertEquals(1, tiered.getMemoryCache().size());
+        assertEquals(2, tiered.getDiskCache().size());
+        assertTrue(tiered.get("pequeno").hasArray());
+        ByteBuffer large = tiered.get("grande");
+        assertFalse(large.hasArray());
+        assertEquals(64, large.remaining());
+
+        // Tras reiniciar, los documentos se siguen sirviendo desde disco y los pequeños vuelven a memoria
+        RenderedPdfCache restarted = new RenderedPdfCache(16, 1024 * 1024, 8, dir.toString(), 1024 * 1024);
+        assertEquals(4, restarted.get("pequeno").remaining());
+        assertEquals(1, restarted.getMemoryCache().size());
+    }
+
+    @Test
+    void testCacheKeyDependsOnDataAndTemplateVersion() {
+        Map<String, Object> ordered = new LinkedHashMap<>();
+        ordered.put("a", 1);
+        ordered.put("b", Map.of("y", 2, "x", 3));
+        Map<String, Object> reversed = new LinkedHashMap<>();
+        reversed.put("b", Map.of("x", 3, "y", 2));
+        reversed.put("a", 1);
+
+        String key = pdfCache.key("v1", ordered);
+        assertEquals(key, pdfCache.key("v1", reversed));
+        assertNotEquals(key, pdfCache.key("v2", ordered));
+        assertNotEquals(key, pdfCache.key("v1", Map.of("a", 2)));
+    }
+
+    @Test
+    void testGenerateDocumentUsesPinnedTemplateVersion() {
+        TemplateVersion first = new TemplateVersion(testTemplate, 1, ContentHash.sha256(testTemplate.getContent()));
+        testTemplate.setContent("<html><body>Sr. {{nombre}}</body></html>");
+        testTemplate.setCurrentVersion(new TemplateVersion(testTemplate, 2, ContentHash.sha256(testTemplate.getContent())));
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        when(templateVersionRepository.findByTemplateIdAndVersionNumber(1L, 1)).thenReturn(Optional.of(first));
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body>Juan Pérez</body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        testRequest.setTemplateVersion(1);
+        try (PdfGenerationService.RenderedPdf pinned = pdfGenerationService.generateDocument(testRequest, null)) {
+            assertEquals("\"" + pdfCache.key(first.getContentHash(), testRequest.getData()) + "\"", pinned.etag());
+        }
+        pdfGenerationService.generatePdf(testRequest);
+
+        verify(templateProcessor, times(1)).processTemplate(eq(1L), eq("<html><body>{{nombre}}</body></html>"), anyMap(), any(Writer.class));
+        // La versión es inmutable: la segunda solicitud no vuelve a consultarla
+        verify(templateVersionRepository, times(1)).findByTemplateIdAndVersionNumber(1L, 1);
+    }
+
+    @Test
+    void testLoadTemplateWithUnknownVersionThrows() {
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        when(templateVersionRepository.findByTemplateIdAndVersionNumber(1L, 9)).thenReturn(Optional.empty());
+
+        assertThrows(NoSuchElementException.class, () -> pdfGenerationService.loadTemplate("factura", 9));
+    }
+
+    @Test
+    void testMatchesEtag() {
+        assertTrue(PdfGenerationService.matchesEtag("\"a\", W/\"b\"", "\"b\""));
+        assertTrue(PdfGenerationService.matchesEtag("*", "\"b\""));
+        assertFalse(PdfGenerationService.matchesEtag("\"a\"", "\"b\""));
+        assertFalse(PdfGenerationService.matchesEtag(null, "\"b\""));
+    }
+
+    @Test
+    void testGeneratePdfRendersWholeDocumentOnRenderExecutor() {
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        List<Thread> mergeThreads = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            mergeThreads.add(Thread.currentThread());
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body>Juan Pérez</body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        pdfGenerationService.generatePdf(testRequest);
+
+        // Una sola admisión para todo el documento; la fusión escribe desde un hilo de plataforma
+        verify(renderExecutor, times(1)).execute(any());
+        assertEquals(1, mergeThreads.size());
+        assertFalse(mergeThreads.get(0).isVirtual());
+        assertTrue(mergeThreads.get(0).getName().startsWith("dinadocs-merge-"));
+    }
+
+    @Test
+    void testRejectedRequestIsNotMerged() {
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doThrow(new RenderRejectedException("Saturado", 5)).when(renderExecutor).execute(any());
+
+        assertThrows(RenderRejectedException.class, () -> pdfGenerationService.generatePdf(testRequest));
+        verify(templateProcessor, never()).processTemplate(any(), anyString(), anyMap(), any(Writer.class));
+    }
+
+    @Test
+    void testGeneratePdfStreamsLargeMergeOutput() {
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body><table>");
+            for (int i = 0; i < 2000; i++) {
+                writer.write("<tr><td>Concepto " + i + "</td></tr>");
+            }
+            writer.write("</table></body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        byte[] result = pdfGenerationService.generatePdf(testRequest);
+
+        assertTrue(result.length > 0);
+    }
+
+    @Test
+    void testGeneratePdfWhenMergeFails() {
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doThrow(new RuntimeException("Error al procesar la plantilla"))
+                .when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        assertThrows(RuntimeException.class, () -> {
+            pdfGenerationService.generatePdf(testRequest);
+        });
+        // El búfer de un renderizado fallido no se reutiliza
+        assertEquals(0, bufferPool.getIdleCount());
+        assertEquals(1, bufferPool.getAllocationCount());
     }
 
     @Test
@@ -67,7 +352,7 @@ class PdfGenerationServiceTest {
             pdfGenerationService.generatePdf(testRequest);
         });
 
-        verify(templateRepository, times(0)).findByName(anyString());
+        verify(templateRepository, times(0)).findByNameKey(anyString());
     }
 
     @Test
@@ -78,7 +363,7 @@ class PdfGenerationServiceTest {
             pdfGenerationService.generatePdf(testRequest);
         });
 
-        verify(templateRepository, times(0)).findByName(anyString());
+        verify(templateRepository, times(0)).findByNameKey(anyString());
     }
 
     @Test
@@ -89,40 +374,242 @@ class PdfGenerationServiceTest {
             pdfGenerationService.generatePdf(testRequest);
         });
 
-        verify(templateRepository, times(0)).findByName(anyString());
+        verify(templateRepository, times(0)).findByNameKey(anyString());
     }
 
     @Test
     void testGeneratePdfTemplateNotFound() {
-        when(templateRepository.findByName("noexistente")).thenReturn(Optional.empty());
+        when(templateRepository.findByNameKey("noexistente")).thenReturn(Optional.empty());
         testRequest.setTemplateType("noexistente");
 
         assertThrows(NoSuchElementException.class, () -> {
             pdfGenerationService.generatePdf(testRequest);
         });
 
-        verify(templateRepository, times(1)).findByName("noexistente");
+        verify(templateRepository, times(1)).findByNameKey("noexistente");
     }
 
     @Test
     void testLoadTemplateByTypeSuccess() {
-        when(templateRepository.findByName("factura")).thenReturn(Optional.of(testTemplate));
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
 
         Template result = pdfGenerationService.loadTemplateByType("factura");
 
         assertNotNull(result);
         assertEquals("factura", result.getName());
-        verify(templateRepository, times(1)).findByName("factura");
+        verify(templateRepository, times(1)).findByNameKey("factura");
     }
 
     @Test
     void testLoadTemplateByTypeNotFound() {
-        when(templateRepository.findByName("desconocido")).thenReturn(Optional.empty());
+        when(templateRepository.findByNameKey("desconocido")).thenReturn(Optional.empty());
 
         assertThrows(NoSuchElementException.class, () -> {
             pdfGenerationService.loadTemplateByType("desconocido");
         });
 
-        verify(templateRepository, times(1)).findByName("desconocido");
+        verify(templateRepository, times(1)).findByNameKey("desconocido");
+    }
+
+    @Test
+    void testGeneratePdfXhtmlFastPath() {
+        testTemplate.setXhtmlReady(true);
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><head></head><body><p>Juan P&#233;rez &amp; Hijos</p></body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        byte[] result = pdfGenerationService.generatePdf(testRequest);
+
+        assertTrue(result.length > 0);
+        verify(templateProcessor, times(1)).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+    }
+
+    @Test
+    void testGeneratePdfXhtmlFastPathFallsBackToHtmlParser() {
+        testTemplate.setXhtmlReady(true);
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body><p>Juan Pérez<br></p></body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        byte[] result = pdfGenerationService.generatePdf(testRequest);
+
+        assertTrue(result.length > 0);
+        verify(templateProcessor, times(2)).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+    }
+
+    @Test
+    void testGeneratePdfUsesLiteEngineSelectedForTemplate() throws Exception {
+        testTemplate.setXhtmlReady(true);
+        testTemplate.setRenderEngine(LiteRenderEngine.NAME);
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><head></head><body><p>Juan P&#233;rez &amp; Hijos</p></body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        byte[] result = pdfGenerationService.generatePdf(testRequest);
+
+        try (PDDocument pdf = PDDocument.load(result)) {
+            assertTrue(new PDFTextStripper().getText(pdf).contains("Juan Pérez & Hijos"));
+        }
+        verify(rendererFactory, never()).createRenderer();
+    }
+
+    @Test
+    void testGeneratePdfFallsBackToFlyingSaucerWhenLiteEngineCannotEncode() throws Exception {
+        testTemplate.setXhtmlReady(true);
+        testTemplate.setRenderEngine(LiteRenderEngine.NAME);
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(testTemplate));
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><head></head><body><p>Juan \u4E2D</p></body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        byte[] result = pdfGenerationService.generatePdf(testRequest);
+
+        try (PDDocument pdf = PDDocument.load(result)) {
+            assertEquals(1, pdf.getNumberOfPages());
+        }
+        verify(rendererFactory, times(1)).createRenderer();
+        // El reintento con el motor completo no vuelve a pasar por la admisión
+        verify(renderExecutor, times(1)).execute(any());
+    }
+
+    @Test
+    void testWriteBatchZipRendersEveryRowAndReportsFailures() throws Exception {
+        doAnswer(invocation -> {
+            Map<String, Object> data = invocation.getArgument(2);
+            if ("fallo".equals(data.get("nombre"))) {
+                throw new RuntimeException("Error al procesar la fila");
+            }
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body>" + data.get("nombre") + "</body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String nombre : List.of("Ana", "Luis", "fallo", "Marta")) {
+            rows.add(Map.of("nombre", nombre));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RenderExecutor.Batch batch = pdfGenerationService.openBatch()) {
+            pdfGenerationService.writeBatchZip(testTemplate, rows, batch, out);
+        }
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        // Las entradas se escriben en el orden de las filas; errores.txt siempre al final
+        assertEquals(List.of("factura_1.pdf", "factura_2.pdf", "factura_4.pdf", "errores.txt"),
+                new ArrayList<>(entries.keySet()));
+        assertTrue(new String(entries.get("factura_1.pdf"), 0, 5, StandardCharsets.US_ASCII).startsWith("%PDF"));
+        assertTrue(new String(entries.get("errores.txt"), StandardCharsets.UTF_8).startsWith("Fila 3:"));
+    }
+
+    @Test
+    void testWriteBatchZipStreamsLargeBatches() throws Exception {
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body>Fila</body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+        List<Map<String, Object>> rows = Collections.nCopies(60, Map.of("nombre", "Ana"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RenderExecutor.Batch batch = pdfGenerationService.openBatch()) {
+            pdfGenerationService.writeBatchZip(testTemplate, rows, batch, out);
+        }
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        assertEquals(60, names.size());
+        for (int i = 0; i < names.size(); i++) {
+            assertEquals(PdfGenerationService.batchEntryName("factura", i, 60), names.get(i));
+        }
+    }
+
+    @Test
+    void testPrepareBatchRejectsEmptyRow() {
+        BatchGenerationRequest batch = new BatchGenerationRequest();
+        batch.setTemplateType("factura");
+        batch.setData(List.of(Map.of("nombre", "Ana"), Map.of()));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> pdfGenerationService.prepareBatch(batch));
+        assertTrue(e.getMessage().contains("fila 2"));
+        verify(templateRepository, never()).findByNameKey(anyString());
+    }
+
+    @Test
+    void testBatchEntryNamesArePaddedAndSafe() {
+        assertEquals("orden_de_compra_007.pdf", PdfGenerationService.batchEntryName("orden de compra", 6, 120));
+    }
+
+    @Test
+    void testWriteMergedPdfConcatenatesRowsInOrder() throws Exception {
+        doAnswer(invocation -> {
+            Map<String, Object> data = invocation.getArgument(2);
+            Writer writer = invocation.getArgument(3);
+            writer.write("<html><body>" + data.get("nombre") + "</body></html>");
+            return null;
+        }).when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+        List<Map<String, Object>> rows = List.of(Map.of("nombre", "Ana"), Map.of("nombre", "Luis"), Map.of("nombre", "Marta"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RenderExecutor.Batch batch = pdfGenerationService.openBatch()) {
+            pdfGenerationService.writeMergedPdf(testTemplate, rows, batch, out);
+        }
+
+        try (PDDocument merged = PDDocument.load(out.toByteArray())) {
+            assertEquals(3, merged.getNumberOfPages());
+            String text = new PDFTextStripper().getText(merged);
+            assertTrue(text.indexOf("Ana") < text.indexOf("Luis") && text.indexOf("Luis") < text.indexOf("Marta"));
+        }
+    }
+
+    @Test
+    void testWriteMergedPdfFailsBeforeWritingWhenARowFails() {
+        doThrow(new RuntimeException("Error al procesar la fila"))
+                .when(templateProcessor).processTemplate(eq(1L), anyString(), anyMap(), any(Writer.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RenderExecutor.Batch batch = pdfGenerationService.openBatch()) {
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> pdfGenerationService.writeMergedPdf(testTemplate, List.of(Map.of("nombre", "Ana")), batch, out));
+            assertTrue(e.getMessage().startsWith("La fila 1"));
+        }
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void testOpenBatchIsRejectedWhenRenderExecutorIsSaturated() {
+        // Un hilo y cuatro plazas de cola: el primer lote se queda con dos plazas, el resto con las que quedan
+        try (RenderExecutor.Batch first = pdfGenerationService.openBatch();
+             RenderExecutor.Batch second = pdfGenerationService.openBatch();
+             RenderExecutor.Batch third = pdfGenerationService.openBatch()) {
+            assertEquals(2, first.getParallelism());
+            assertEquals(2, second.getParallelism());
+            assertEquals(1, third.getParallelism());
+            assertThrows(RenderRejectedException.class, () -> pdfGenerationService.openBatch());
+        }
+        // Al cerrar los lotes sus plazas vuelven a estar libres
+        pdfGenerationService.openBatch().close();
     }
 }
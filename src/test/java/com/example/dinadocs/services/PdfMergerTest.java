@@ -0,0 +1,96 @@
+package com.example.dinadocs.services;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfMergerTest {
+
+    private final PdfRendererFactory rendererFactory = new PdfRendererFactory("", 1);
+
+    @Test
+    void testMergeKeepsOrderAndSharesRepeatedImages() throws Exception {
+        String logo = "data:image/png;base64," + Base64.getEncoder().encodeToString(noisePng());
+        byte[][] documents = new byte[3][];
+        long separateSize = 0;
+        for (int i = 0; i < documents.length; i++) {
+            documents[i] = render("<html><body><img src=\"" + logo + "\"/><p>Cliente " + (i + 1) + "</p></body></html>");
+            separateSize += documents[i].length;
+        }
+
+        PdfMerger merger = new PdfMerger(64 * 1024, "");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PdfMerger.Merge merge = merger.open()) {
+            for (byte[] document : documents) {
+                merge.append(document);
+            }
+            assertEquals(3, merge.getPageCount());
+            merge.writeTo(out);
+            assertTrue(merge.getSharedResourceCount() >= 2);
+        }
+
+        assertTrue(out.size() < separateSize / 2, "El logotipo repetido debe incluirse una sola vez");
+        try (PDDocument merged = PDDocument.load(out.toByteArray())) {
+            assertEquals(3, merged.getNumberOfPages());
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = 1; page <= 3; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                assertTrue(stripper.getText(merged).contains("Cliente " + page));
+            }
+            Set<COSBase> images = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (PDPage page : merged.getPages()) {
+                PDResources resources = page.getResources();
+                for (COSName name : resources.getXObjectNames()) {
+                    images.add(resources.getXObject(name).getCOSObject());
+                }
+            }
+            assertEquals(1, images.size());
+        }
+    }
+
+    private byte[] render(String html) throws Exception {
+        ITextRenderer renderer = rendererFactory.createRenderer();
+        try {
+            renderer.setDocument(XhtmlDocuments.parse(new StringReader(html)), rendererFactory.getBaseUrl(),
+                    rendererFactory.getNamespaceHandler());
+            renderer.layout();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            renderer.createPDF(out);
+            return out.toByteArray();
+        } finally {
+            rendererFactory.release(renderer);
+        }
+    }
+
+    private static byte[] noisePng() throws Exception {
+        // Ruido aleatorio: no se comprime, así el tamaño de la imagen domina el del PDF
+        BufferedImage image = new BufferedImage(120, 120, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
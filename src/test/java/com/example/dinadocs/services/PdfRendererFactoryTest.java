@@ -0,0 +1,127 @@
+package com.example.dinadocs.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfRendererFactoryTest {
+
+    @Test
+    void testReleasedFontResolverIsReused() {
+        PdfRendererFactory factory = new PdfRendererFactory("", 1);
+
+        ITextRenderer first = factory.createRenderer();
+        factory.release(first);
+        ITextRenderer second = factory.createRenderer();
+
+        assertNotSame(first, second);
+        assertSame(first.getFontResolver(), second.getFontResolver());
+    }
+
+    @Test
+    void testCreatesNewResolverWhenPoolIsEmpty() {
+        PdfRendererFactory factory = new PdfRendererFactory("", 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        factory.bindTo(registry);
+
+        ITextRenderer first = factory.createRenderer();
+        ITextRenderer second = factory.createRenderer();
+
+        assertNotSame(first.getFontResolver(), second.getFontResolver());
+        assertEquals(1, registry.get("dinadocs.pdf.renderer.setup").tag("source", "pool").timer().count());
+        assertEquals(1, registry.get("dinadocs.pdf.renderer.setup").tag("source", "new").timer().count());
+        assertEquals(0.0, registry.get("dinadocs.pdf.renderer.pool.idle").gauge().value());
+    }
+
+    @Test
+    void testMissingFontsDirectoryFallsBackToBaseFonts() {
+        PdfRendererFactory factory = new PdfRendererFactory("/no/existe", 1);
+
+        ITextRenderer renderer = factory.createRenderer();
+
+        assertTrue(renderer.getFontResolver().getFonts().containsKey("Helvetica"));
+    }
+
+    @Test
+    void testInlineStylesheetIsParsedOncePerContent() throws Exception {
+        PdfRendererFactory factory = new PdfRendererFactory("", 1);
+        String html = "<html><head><style>p { color: #336699; }</style></head><body><p>Hola</p></body></html>";
+
+        for (int i = 0; i < 3; i++) {
+            ITextRenderer renderer = factory.createRenderer();
+            try {
+                renderer.setDocument(XhtmlDocuments.parse(new StringReader(html)), factory.getBaseUrl(), factory.getNamespaceHandler());
+                renderer.layout();
+                renderer.createPDF(new ByteArrayOutputStream());
+            } finally {
+                factory.release(renderer);
+            }
+        }
+
+        assertEquals(1, factory.getStylesheetCache().size());
+        assertEquals(1, factory.getStylesheetCache().missCount());
+        assertEquals(2, factory.getStylesheetCache().hitCount());
+    }
+
+    @Test
+    void testEmbeddedImageIsDecodedOncePerContent() throws Exception {
+        PdfRendererFactory factory = new PdfRendererFactory("", 1);
+        String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(png());
+        String html = "<html><body><img src=\"" + dataUri + "\"/><img src=\"" + dataUri + "\"/></body></html>";
+
+        for (int i = 0; i < 3; i++) {
+            render(factory, html);
+        }
+
+        assertEquals(1, factory.getImageCache().size());
+        assertEquals(1, factory.getImageCache().missCount());
+        assertEquals(5, factory.getImageCache().hitCount());
+        assertTrue(factory.getImageCache().weight() > 0);
+    }
+
+    @Test
+    void testRemoteImageIsServedFromLocalDirectory(@TempDir Path dir) throws Exception {
+        Files.write(dir.resolve("logo.png"), png());
+        PdfRendererFactory factory = new PdfRendererFactory("", 1, 128, 4L * 1024 * 1024,
+                16, 1024L * 1024, Duration.ofMinutes(1), dir.toString());
+        String html = "<html><body><img src=\"https://cdn.example.com/img/logo.png\"/></body></html>";
+
+        render(factory, html);
+        render(factory, html);
+
+        assertEquals(1, factory.getImageCache().size());
+        assertEquals(1, factory.getImageCache().missCount());
+        assertEquals(1, factory.getImageCache().hitCount());
+    }
+
+    private static void render(PdfRendererFactory factory, String html) throws Exception {
+        ITextRenderer renderer = factory.createRenderer();
+        try {
+            renderer.setDocument(XhtmlDocuments.parse(new StringReader(html)), factory.getBaseUrl(), factory.getNamespaceHandler());
+            renderer.layout();
+            renderer.createPDF(new ByteArrayOutputStream());
+        } finally {
+            factory.release(renderer);
+        }
+    }
+
+    private static byte[] png() throws IOException {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.models.GenerationRequest;
+import com.example.dinadocs.models.PlaceholderNode;
+import com.example.dinadocs.models.Template;
+import com.example.dinadocs.repositories.TemplateRepository;
+import com.example.dinadocs.repositories.TemplateVersionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Compara la ruta rápida XHTML con la ruta jsoup sobre las plantillas de
+ * {@code resources/templates}. Se ejecuta solo bajo demanda:
+ * {@code mvn test -Dtest=PdfRenderingBenchmarkTest -Ddinadocs.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "dinadocs.benchmark", matches = "true")
+class PdfRenderingBenchmarkTest {
+
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+    private static final int LIST_ITEMS = 25;
+
+    @Test
+    void compareXhtmlFastPathWithJsoup() throws Exception {
+        TemplateProcessor templateProcessor = new TemplateProcessor();
+        TemplateRepository templateRepository = mock(TemplateRepository.class);
+        TemplateSnapshotCache templateCache = new TemplateSnapshotCache(templateRepository, mock(TemplateVersionRepository.class), 16);
+        RenderedPdfCache pdfCache = new RenderedPdfCache();
+        PdfGenerationService service = newService(templateProcessor, templateCache, pdfCache);
+
+        Resource[] seeds = new PathMatchingResourcePatternResolver().getResources("classpath:templates/*.html");
+        assertTrue(seeds.length > 0);
+
+        System.out.printf("%-32s %8s %12s %12s%n", "plantilla", "xhtml", "jsoup (ms)", "xhtml (ms)");
+        long id = 1;
+        for (Resource seed : seeds) {
+            String content = new String(seed.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            Template template = new Template();
+            template.setId(id++);
+            template.setName(seed.getFilename());
+            template.setContent(content);
+            template.setCompiledContent(templateProcessor.compileTemplate(content));
+            boolean xhtmlReady = templateProcessor.isXhtmlReady(template.getCompiledContent());
+            when(templateRepository.findByNameKey(template.getNameKey())).thenReturn(Optional.of(template));
+
+            GenerationRequest request = new GenerationRequest();
+            request.setTemplateType(template.getName());
+            request.setData(sampleData(templateProcessor.scanPlaceholders(content)));
+
+            template.setXhtmlReady(false);
+            double jsoupMillis = measure(service, pdfCache, request);
+            template.setXhtmlReady(xhtmlReady);
+            templateCache.invalidate(template.getId());
+            double xhtmlMillis = xhtmlReady ? measure(service, pdfCache, request) : Double.NaN;
+
+            System.out.printf("%-32s %8s %12.2f %12.2f%n", template.getName(), xhtmlReady, jsoupMillis, xhtmlMillis);
+        }
+    }
+
+    @Test
+    void compareLiteEngineWithFlyingSaucer() {
+        TemplateProcessor templateProcessor = new TemplateProcessor();
+        TemplateRepository templateRepository = mock(TemplateRepository.class);
+        TemplateSnapshotCache templateCache = new TemplateSnapshotCache(templateRepository, mock(TemplateVersionRepository.class), 16);
+        RenderedPdfCache pdfCache = new RenderedPdfCache();
+        PdfGenerationService service = newService(templateProcessor, templateCache, pdfCache);
+
+        String content = "<html><head><title>Carta</title></head><body>"
+                + "<p style=\"text-align: right\">{{ciudad}}, {{fecha}}</p>"
+                + "<h2>Estimado/a {{nombre}}:</h2>"
+                + "{{#parrafos}}<p>{{texto}}</p>{{/parrafos}}"
+                + "<ul>{{#puntos}}<li><b>{{titulo}}</b>: {{texto}}</li>{{/puntos}}</ul>"
+                + "<p>Atentamente,<br/><i>{{firma}}</i></p></body></html>";
+        Template template = new Template();
+        template.setId(1L);
+        template.setName("carta");
+        template.setContent(content);
+        template.setCompiledContent(templateProcessor.compileTemplate(content));
+        template.setXhtmlReady(templateProcessor.isXhtmlReady(template.getCompiledContent()));
+        assertTrue(new LiteRenderEngine().supports(template));
+        when(templateRepository.findByNameKey("carta")).thenReturn(Optional.of(template));
+
+        GenerationRequest request = new GenerationRequest();
+        request.setTemplateType("carta");
+        request.setData(sampleData(templateProcessor.scanPlaceholders(content)));
+
+        System.out.printf("%-32s %12s %12s%n", "plantilla", "completo (ms)", "ligero (ms)");
+        template.setRenderEngine(FlyingSaucerRenderEngine.NAME);
+        double fullMillis = measure(service, pdfCache, request);
+        template.setRenderEngine(LiteRenderEngine.NAME);
+        templateCache.invalidate(template.getId());
+        double liteMillis = measure(service, pdfCache, request);
+        System.out.printf("%-32s %12.2f %12.2f%n", template.getName(), fullMillis, liteMillis);
+    }
+
+    private static PdfGenerationService newService(TemplateProcessor templateProcessor,
+                                                   TemplateSnapshotCache templateCache, RenderedPdfCache pdfCache) {
+        PdfRendererFactory rendererFactory = new PdfRendererFactory();
+        return new PdfGenerationService(templateCache, templateProcessor, rendererFactory,
+                new RenderExecutor(1, 4, 5), new PdfMerger(16 * 1024 * 1024, ""), pdfCache,
+                new PdfBufferPool(1, 8 * 1024 * 1024), new SectionChunker(2000, 500),
+                new RenderEngines(List.of(new LiteRenderEngine(), new FlyingSaucerRenderEngine(rendererFactory))));
+    }
+
+    private static double measure(PdfGenerationService service, RenderedPdfCache pdfCache, GenerationRequest request) {
+        // Se vacía la caché de PDFs para medir el renderizado y no los aciertos
+        for (int i = 0; i < WARMUP; i++) {
+            pdfCache.getMemoryCache().clear();
+            service.generatePdf(request);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            pdfCache.getMemoryCache().clear();
+            service.generatePdf(request);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+
+    private static Map<String, Object> sampleData(List<PlaceholderNode> schema) {
+        Map<String, Object> data = new HashMap<>();
+        for (PlaceholderNode node : schema) {
+            switch (node.getType()) {
+                case SECTION -> {
+                    List<Map<String, Object>> items = new ArrayList<>();
+                    for (int i = 0; i < LIST_ITEMS; i++) {
+                        items.add(sampleData(node.getChildren()));
+                    }
+                    data.put(node.getName(), items);
+                }
+                case FIELD -> data.put(node.getName(), "Valor de " + node.getName() + " <&>");
+                default -> {
+                }
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.dinadocs.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderExecutorTest {
+
+    private RenderExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    void testExecuteReturnsResultAndRecordsWait() {
+        executor = new RenderExecutor(1, 1, 5);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executor.bindTo(registry);
+
+        assertEquals("pdf", executor.execute(() -> "pdf"));
+        assertEquals(1, registry.get("dinadocs.pdf.render.queue.wait").timer().count());
+    }
+
+    @Test
+    void testTaskExceptionIsPropagatedUnwrapped() {
+        executor = new RenderExecutor(1, 1, 5);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> executor.execute(() -> { throw new IllegalArgumentException("dato inválido"); }));
+        assertEquals("dato inválido", e.getMessage());
+    }
+
+    @Test
+    void testRejectsWhenQueueIsFull() throws Exception {
+        executor = new RenderExecutor(1, 1, 3);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executor.bindTo(registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Un renderizado ocupa el único hilo y otro ocupa la única plaza de la cola
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> executor.execute(() -> {
+            started.countDown();
+            await(release);
+            return "primero";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> executor.execute(() -> "segundo"));
+        waitForQueueDepth(1);
+
+        RenderRejectedException e = assertThrows(RenderRejectedException.class,
+                () -> executor.execute(() -> "tercero"));
+        assertEquals(3, e.getRetryAfterSeconds());
+        assertEquals(1, executor.getRejectedCount());
+        assertEquals(1.0, registry.get("dinadocs.pdf.render.rejected").functionCounter().count());
+        assertEquals(1.0, registry.get("dinadocs.pdf.render.queue.depth").gauge().value());
+
+        release.countDown();
+        assertEquals("primero", running.get(5, TimeUnit.SECONDS));
+        assertEquals("segundo", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testBatchRendersOnRenderThreadsWithReservedSlots() throws Exception {
+        executor = new RenderExecutor(1, 2, 5);
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+        try (RenderExecutor.Batch batch = executor.openBatch(8)) {
+            // Un hilo y dos plazas de cola: el lote se queda con las tres
+            assertEquals(3, batch.getParallelism());
+            assertThrows(RenderRejectedException.class, () -> executor.execute(() -> "individual"));
+
+            List<FutureTask<String>> rows = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                FutureTask<String> row = new FutureTask<>(() -> Thread.currentThread().getName());
+                batch.execute(row);
+                rows.add(row);
+            }
+            for (FutureTask<String> row : rows) {
+                threads.add(row.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("dinadocs-render-")));
+        assertEquals("individual", executor.execute(() -> "individual"));
+    }
+
+    private void waitForQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.getQueueDepth() < depth && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, executor.getQueueDepth());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.dinadocs.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SectionChunkerTest {
+
+    private static final String TEMPLATE = "<html><head><style>td > b { color: red; }</style></head>"
+            + "<body><h1>{{titulo}}</h1><div class=\"tabla\"><table><colgroup><col/></colgroup>"
+            + "<thead><tr><th>Concepto</th></tr></thead><tbody>{{#conceptos}}<tr><td>{{nombre}}</td></tr>{{/conceptos}}"
+            + "</tbody></table></div><p>{{total}}</p></body></html>";
+
+    private final SectionChunker chunker = new SectionChunker(10, 4);
+
+    @Test
+    void testSplitsTemplateAroundLongSection() {
+        SectionChunker.ChunkPlan plan = chunker.plan(TEMPLATE, Map.of("conceptos", rows(10)));
+
+        assertNotNull(plan);
+        assertEquals(3, plan.chunkCount());
+        String section = "{{#conceptos}}<tr><td>{{nombre}}</td></tr>{{/conceptos}}";
+        assertEquals(TEMPLATE.substring(0, TEMPLATE.indexOf(section)) + section + "</tbody></table></div></body></html>",
+                plan.first());
+        assertEquals("<html><head><style>td > b { color: red; }</style></head><body><div class=\"tabla\">"
+                + "<table><colgroup><col/></colgroup><thead><tr><th>Concepto</th></tr></thead><tbody>"
+                + section + "</tbody></table></div></body></html>", plan.middle());
+        assertTrue(plan.last().endsWith(section + "</tbody></table></div><p>{{total}}</p></body></html>"));
+        assertEquals(plan.middle(), plan.contentFor(1));
+        assertEquals(plan.last(), plan.contentFor(2));
+        assertEquals(2, ((List<?>) plan.dataFor(2, Map.of("conceptos", rows(10))).get("conceptos")).size());
+    }
+
+    @Test
+    void testShortSectionsAreRenderedAtOnce() {
+        assertNull(chunker.plan(TEMPLATE, Map.of("conceptos", rows(9))));
+    }
+
+    @Test
+    void testDisabledChunkerRendersAtOnce() {
+        SectionChunker disabled = new SectionChunker(false, 10, 4);
+
+        assertNull(disabled.plan(TEMPLATE, Map.of("conceptos", rows(100))));
+    }
+
+    @Test
+    void testSectionUsedElsewhereIsNotSplit() {
+        String template = TEMPLATE.replace("<p>{{total}}</p>", "<p>{{#conceptos}}x{{/conceptos}}</p>");
+
+        assertNull(chunker.plan(template, Map.of("conceptos", rows(20))));
+    }
+
+    @Test
+    void testNestedSectionIsNotSplit() {
+        String template = "<html><body>{{#pedido}}<ul>{{#conceptos}}<li>{{nombre}}</li>{{/conceptos}}</ul>{{/pedido}}</body></html>";
+
+        assertNull(chunker.plan(template, Map.of("conceptos", rows(20), "pedido", true)));
+    }
+
+    private static List<Map<String, Object>> rows(int count) {
+        return Collections.nCopies(count, Map.of("nombre", "x"));
+    }
+}
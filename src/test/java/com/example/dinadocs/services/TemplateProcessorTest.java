@@ -1,9 +1,12 @@
 package com.example.dinadocs.services;
 
+import com.example.dinadocs.models.PlaceholderNode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringWriter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -67,4 +70,145 @@ class TemplateProcessorTest {
 
         assertNotNull(result);
     }
-}
+
+    @Test
+    void testProcessTemplateReusesCompiledTemplate() {
+        String template = "<html><body>Hola {{nombre}}</body></html>";
+        Map<String, Object> data = new HashMap<>();
+        data.put("nombre", "Ana");
+
+        templateProcessor.processTemplate(1L, template, data);
+        String result = templateProcessor.processTemplate(1L, template, data);
+
+        assertTrue(result.contains("Ana"));
+        assertEquals(1, templateProcessor.getCompiledTemplateCache().missCount());
+        assertEquals(1, templateProcessor.getCompiledTemplateCache().hitCount());
+    }
+
+    @Test
+    void testProcessTemplateRecompilesWhenContentChanges() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("nombre", "Ana");
+
+        templateProcessor.processTemplate(1L, "<p>Hola {{nombre}}</p>", data);
+        String result = templateProcessor.processTemplate(1L, "<p>Adiós {{nombre}}</p>", data);
+
+        assertTrue(result.contains("Adiós Ana"));
+        assertEquals(2, templateProcessor.getCompiledTemplateCache().missCount());
+    }
+
+    @Test
+    void testCompiledTemplateIsSharedBySameContent() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("nombre", "Ana");
+        templateProcessor.processTemplate(1L, "<p>{{nombre}}</p>", data);
+        templateProcessor.processTemplate(2L, "<p>{{nombre}}</p>", data);
+
+        assertEquals(1, templateProcessor.getCompiledTemplateCache().size());
+        assertEquals(1, templateProcessor.getCompiledTemplateCache().hitCount());
+    }
+
+    @Test
+    void testCompileTemplateKeepsSectionsInsideTables() {
+        String template = "<table><tbody>{{#filas}}<tr><td>{{valor}}</td></tr>{{/filas}}</tbody></table>";
+
+        String compiled = templateProcessor.compileTemplate(template);
+
+        assertTrue(compiled.contains("<tbody>{{#filas}}<tr><td>{{valor}}</td></tr>{{/filas}}</tbody>"));
+    }
+
+    @Test
+    void testCompileTemplateProducesWellFormedXhtml() {
+        String template = "<html><body><p>Hola {{nombre}}<br><img src=\"{{logo}}\">&nbsp;</p></body></html>";
+
+        String compiled = templateProcessor.compileTemplate(template);
+
+        assertTrue(compiled.contains("<br />"));
+        assertTrue(compiled.contains("<img src=\"{{logo}}\" />"));
+        assertFalse(compiled.contains("&nbsp;"));
+    }
+
+    @Test
+    void testCompileTemplateRejectsUnclosedSection() {
+        String template = "<ul>{{#conceptos}}<li>{{descripcion}}</li></ul>";
+
+        assertThrows(IllegalArgumentException.class, () -> templateProcessor.compileTemplate(template));
+    }
+
+    @Test
+    void testCompileTemplateRejectsEmptyContent() {
+        assertThrows(IllegalArgumentException.class, () -> templateProcessor.compileTemplate("  "));
+    }
+
+    @Test
+    void testScanPlaceholdersBuildsNestedSchema() {
+        String template = "<p>{{cliente}}</p><ul>{{#conceptos}}<li>{{descripcion}} {{total}}</li>{{/conceptos}}</ul>"
+                + "{{^conceptos}}<p>Sin conceptos</p>{{/conceptos}}";
+
+        List<PlaceholderNode> schema = templateProcessor.scanPlaceholders(template);
+
+        assertEquals(3, schema.size());
+        assertEquals("cliente", schema.get(0).getName());
+        assertEquals(PlaceholderNode.Type.FIELD, schema.get(0).getType());
+        assertEquals(PlaceholderNode.Type.SECTION, schema.get(1).getType());
+        assertEquals(2, schema.get(1).getChildren().size());
+        assertEquals("descripcion", schema.get(1).getChildren().get(0).getName());
+        assertEquals(PlaceholderNode.Type.INVERTED_SECTION, schema.get(2).getType());
+        assertTrue(schema.get(2).getChildren().isEmpty());
+    }
+
+    @Test
+    void testScanPlaceholdersRemovesDuplicatesInSameScope() {
+        String template = "{{anio_inicio}} - {{anio_fin}} ({{anio_inicio}}) {{{html}}} {{! comentario }}";
+
+        List<PlaceholderNode> schema = templateProcessor.scanPlaceholders(template);
+
+        assertEquals(3, schema.size());
+        assertEquals("html", schema.get(2).getName());
+    }
+
+    @Test
+    void testScanPlaceholdersRejectsUnbalancedSections() {
+        assertThrows(IllegalArgumentException.class,
+                () -> templateProcessor.scanPlaceholders("{{#items}}{{nombre}}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> templateProcessor.scanPlaceholders("{{nombre}}{{/items}}"));
+    }
+
+    @Test
+    void testExtractPlaceholdersKeepsSectionMarkers() {
+        String template = "{{cliente}}{{#productos}}{{nombre}}{{precio}}{{/productos}}{{total}}";
+
+        List<String> placeholders = templateProcessor.extractPlaceholders(template);
+
+        assertEquals(List.of("cliente", "#productos", "nombre", "precio", "/productos", "total"), placeholders);
+    }
+
+    @Test
+    void testProcessTemplateWritesToWriter() {
+        String template = "<ul>{{#items}}<li>{{nombre}}</li>{{/items}}</ul>";
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", List.of(Map.of("nombre", "Uno"), Map.of("nombre", "Dos")));
+        StringWriter writer = new StringWriter();
+
+        templateProcessor.processTemplate(7L, template, data, writer);
+
+        assertEquals("<ul><li>Uno</li><li>Dos</li></ul>", writer.toString());
+        assertEquals(writer.toString(), templateProcessor.processTemplate(7L, template, data));
+    }
+
+    @Test
+    void testIsXhtmlReadyForEscapedWellFormedTemplate() {
+        String compiled = templateProcessor.compileTemplate("<table><tr><td>{{nombre}}</td></tr></table><br>");
+
+        assertTrue(templateProcessor.isXhtmlReady(compiled));
+    }
+
+    @Test
+    void testIsXhtmlReadyRejectsUnescapedTags() {
+        String compiled = templateProcessor.compileTemplate("<div>{{{firma_html}}}</div>");
+
+        assertFalse(templateProcessor.isXhtmlReady(compiled));
+        assertFalse(templateProcessor.isXhtmlReady("<div>{{nombre}}"));
+    }
+}
\ No newline at end of file
@@ -1,15 +1,22 @@
 package com.example.dinadocs.services;
 
+import com.example.dinadocs.cache.ContentHash;
+import com.example.dinadocs.models.PlaceholderNode;
 import com.example.dinadocs.models.Role;
 import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.TemplateSummary;
+import com.example.dinadocs.models.TemplateVersion;
 import com.example.dinadocs.models.User;
 import com.example.dinadocs.repositories.TemplateRepository;
+import com.example.dinadocs.repositories.TemplateVersionRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
 import java.nio.file.AccessDeniedException;
 import java.util.*;
@@ -27,9 +34,18 @@ class TemplateServiceTest {
     @Mock
     private TemplateRepository templateRepository;
 
+    @Mock
+    private TemplateVersionRepository templateVersionRepository;
+
     @Mock
     private TemplateProcessor templateProcessor;
 
+    @Mock
+    private RenderEngines renderEngines;
+
+    @Mock
+    private TemplateSnapshotCache templateCache;
+
     @InjectMocks
     private TemplateService templateService;
 
@@ -78,15 +94,15 @@ class TemplateServiceTest {
         newTemplate.setName("Plantilla de Usuario");
         newTemplate.setContent("<html>{{datos}}</html>");
 
-        when(templateProcessor.extractPlaceholders(anyString())).thenReturn(Arrays.asList("datos"));
-        when(templateRepository.save(any(Template.class))).thenReturn(newTemplate);
+        when(templateProcessor.scanPlaceholders(anyString())).thenReturn(Arrays.asList(new PlaceholderNode("datos", PlaceholderNode.Type.FIELD)));
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(newTemplate);
 
         Template savedTemplate = templateService.save(newTemplate, standardUser);
 
         assertFalse(savedTemplate.isPublic());
         assertEquals(standardUser, savedTemplate.getOwner());
         assertNotNull(savedTemplate.getPlaceholders());
-        verify(templateRepository, times(1)).save(any(Template.class));
+        verify(templateRepository, times(1)).saveAndFlush(any(Template.class));
     }
 
     @Test
@@ -95,14 +111,14 @@ class TemplateServiceTest {
         newTemplate.setName("Plantilla de Creador");
         newTemplate.setContent("<html>{{info}}</html>");
 
-        when(templateProcessor.extractPlaceholders(anyString())).thenReturn(Arrays.asList("info"));
-        when(templateRepository.save(any(Template.class))).thenReturn(newTemplate);
+        when(templateProcessor.scanPlaceholders(anyString())).thenReturn(Arrays.asList(new PlaceholderNode("info", PlaceholderNode.Type.FIELD)));
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(newTemplate);
 
         Template savedTemplate = templateService.save(newTemplate, creatorUser);
 
         assertTrue(savedTemplate.isPublic());
         assertEquals(creatorUser, savedTemplate.getOwner());
-        verify(templateRepository, times(1)).save(any(Template.class));
+        verify(templateRepository, times(1)).saveAndFlush(any(Template.class));
     }
 
     @Test
@@ -111,8 +127,11 @@ class TemplateServiceTest {
         newTemplate.setName("Plantilla con Múltiples Marcadores");
         newTemplate.setContent("<html>{{nombre}} {{email}} {{edad}}</html>");
 
-        when(templateProcessor.extractPlaceholders(anyString())).thenReturn(Arrays.asList("nombre", "email", "edad"));
-        when(templateRepository.save(any(Template.class))).thenReturn(newTemplate);
+        when(templateProcessor.scanPlaceholders(anyString())).thenReturn(Arrays.asList(
+                new PlaceholderNode("nombre", PlaceholderNode.Type.FIELD),
+                new PlaceholderNode("email", PlaceholderNode.Type.FIELD),
+                new PlaceholderNode("edad", PlaceholderNode.Type.FIELD)));
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(newTemplate);
 
         Template savedTemplate = templateService.save(newTemplate, standardUser);
 
@@ -125,54 +144,173 @@ class TemplateServiceTest {
 
 
     @Test
-    void testFindAllByRole_AdminSeesAll() {
-        List<Template> allTemplates = Arrays.asList(publicTemplate, privateTemplate);
-        when(templateRepository.findAll()).thenReturn(allTemplates);
+    void testSave_StoresCompiledContent() {
+        Template newTemplate = new Template();
+        newTemplate.setName("Plantilla Compilada");
+        newTemplate.setContent("<p>{{nombre}}<br></p>");
+
+        when(templateProcessor.compileTemplate("<p>{{nombre}}<br></p>"))
+                .thenReturn("<html><head></head><body><p>{{nombre}}<br /></p></body></html>");
+        when(templateRepository.saveAndFlush(any(Template.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Template savedTemplate = templateService.save(newTemplate, standardUser);
+
+        assertEquals("<html><head></head><body><p>{{nombre}}<br /></p></body></html>", savedTemplate.getCompiledContent());
+        assertNotNull(savedTemplate.getValidationTrie());
+        verify(templateProcessor, times(1)).precompile(savedTemplate.getId(), savedTemplate.getCompiledContent());
+    }
+
+    @Test
+    void testSave_RecordsFirstVersion() {
+        Template newTemplate = new Template();
+        newTemplate.setName("Plantilla Versionada");
+        newTemplate.setContent("<p>{{nombre}}</p>");
+
+        when(templateProcessor.compileTemplate("<p>{{nombre}}</p>")).thenReturn("<p>{{nombre}}</p>");
+        when(templateRepository.saveAndFlush(any(Template.class))).thenAnswer(invocation -> {
+            Template saved = invocation.getArgument(0);
+            saved.setId(103L);
+            return saved;
+        });
+        when(templateVersionRepository.save(any(TemplateVersion.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Template savedTemplate = templateService.save(newTemplate, standardUser);
+
+        TemplateVersion version = savedTemplate.getCurrentVersion();
+        assertEquals(1, version.getVersionNumber());
+        assertEquals(103L, version.getTemplateId());
+        assertEquals(ContentHash.sha256("<p>{{nombre}}</p>"), version.getContentHash());
+    }
+
+    @Test
+    void testSave_WhenTemplateIsMalformed_ShouldNotPersist() {
+        Template newTemplate = new Template();
+        newTemplate.setName("Plantilla Rota");
+        newTemplate.setContent("<ul>{{#items}}<li>{{nombre}}</li></ul>");
+
+        when(templateProcessor.compileTemplate(anyString()))
+                .thenThrow(new IllegalArgumentException("Sección sin cerrar"));
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            templateService.save(newTemplate, standardUser);
+        });
+        verify(templateRepository, never()).saveAndFlush(any(Template.class));
+    }
+
+    @Test
+    void testSave_WhenNameIsTaken_ShouldNotPersist() {
+        Template newTemplate = new Template();
+        newTemplate.setName("FACTURA");
+        newTemplate.setContent("<p>{{total}}</p>");
+
+        when(templateRepository.existsOtherWithNameKey("factura", 0L)).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> templateService.save(newTemplate, standardUser));
+        verify(templateRepository, never()).saveAndFlush(any(Template.class));
+    }
+
+    @Test
+    void testSave_WhenNameIsTakenConcurrently_ShouldReportNameInUse() {
+        Template newTemplate = new Template();
+        newTemplate.setName("Factura");
+        newTemplate.setContent("<p>{{total}}</p>");
+
+        // Otra solicitud guarda el mismo nombre entre la comprobación y el INSERT
+        when(templateProcessor.compileTemplate("<p>{{total}}</p>")).thenReturn("<p>{{total}}</p>");
+        when(templateRepository.saveAndFlush(any(Template.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_plantillas_name_key"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> templateService.save(newTemplate, standardUser));
+        assertEquals("Ya existe una plantilla con el nombre 'Factura'.", e.getMessage());
+        verify(templateVersionRepository, never()).save(any(TemplateVersion.class));
+    }
+
+    @Test
+    void testSave_WhenNameHasNoLatinCharacters_ShouldPersist() {
+        Template newTemplate = new Template();
+        newTemplate.setName("請求書");
+        newTemplate.setContent("<p>{{total}}</p>");
+
+        when(templateProcessor.compileTemplate("<p>{{total}}</p>")).thenReturn("<p>{{total}}</p>");
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(newTemplate);
+        when(templateVersionRepository.save(any(TemplateVersion.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Template saved = templateService.save(newTemplate, standardUser);
+
+        assertEquals("請求書", saved.getNameKey());
+        assertTrue(saved.getSlug().startsWith("plantilla-"));
+    }
+
+    @Test
+    void testSave_WhenNameIsBlank_ShouldNotPersist() {
+        Template newTemplate = new Template();
+        newTemplate.setName("   ");
+        newTemplate.setContent("<p>{{total}}</p>");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> templateService.save(newTemplate, standardUser));
+        assertEquals("El nombre de la plantilla no puede estar vacío.", e.getMessage());
+        verify(templateRepository, never()).saveAndFlush(any(Template.class));
+    }
+
+    @Test
+    void testFindSummariesByRole_ReturnsCursorWhenMorePagesExist() {
+        List<TemplateSummary> rows = Arrays.asList(
+                new TemplateSummary(3L, "a", true, 0, null),
+                new TemplateSummary(5L, "b", false, 2, null),
+                new TemplateSummary(8L, "c", true, 1, null));
+        when(templateRepository.findPublicOrOwnedSummaries(standardUser, 2L, Limit.of(3))).thenReturn(rows);
 
-        List<Template> result = templateService.findAllByRole(adminUser);
+        TemplateService.SummaryPage page = templateService.findSummariesByRole(standardUser, 2L, 2);
 
-        assertEquals(2, result.size());
-        verify(templateRepository, times(1)).findAll();
+        assertEquals(2, page.items().size());
+        assertEquals(5L, page.nextCursor());
     }
 
     @Test
-    void testFindAllByRole_CreatorSeesOnlyPublic() {
-        List<Template> publicTemplates = Collections.singletonList(publicTemplate);
-        when(templateRepository.findByIsPublicTrue()).thenReturn(publicTemplates);
+    void testFindSummariesByRole_LastPageHasNoCursor() {
+        when(templateRepository.findSummaries(0L, Limit.of(51)))
+                .thenReturn(Collections.singletonList(new TemplateSummary(1L, "a", true, 0, null)));
 
-        List<Template> result = templateService.findAllByRole(creatorUser);
+        TemplateService.SummaryPage page = templateService.findSummariesByRole(adminUser, null, 50);
 
-        assertEquals(1, result.size());
-        assertTrue(result.get(0).isPublic());
-        verify(templateRepository, times(1)).findByIsPublicTrue();
+        assertEquals(1, page.items().size());
+        assertNull(page.nextCursor());
+        verify(templateRepository, never()).findAll();
     }
 
     @Test
-    void testFindAllByRole_UsuarioSeesPublicAndOwned() {
-        List<Template> templates = Arrays.asList(publicTemplate, privateTemplate);
-        when(templateRepository.findByIsPublicTrueOrOwner(standardUser)).thenReturn(templates);
+    void testFindSummariesByRole_CreatorSeesOnlyPublic() {
+        when(templateRepository.findPublicSummaries(0L, Limit.of(11))).thenReturn(Collections.emptyList());
 
-        List<Template> result = templateService.findAllByRole(standardUser);
+        templateService.findSummariesByRole(creatorUser, null, 10);
 
-        assertEquals(2, result.size());
-        verify(templateRepository, times(1)).findByIsPublicTrueOrOwner(standardUser);
+        verify(templateRepository, times(1)).findPublicSummaries(0L, Limit.of(11));
+    }
+
+    @Test
+    void testFindSummariesByRole_RejectsInvalidPageSize() {
+        assertThrows(IllegalArgumentException.class, () -> templateService.findSummariesByRole(adminUser, null, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> templateService.findSummariesByRole(adminUser, null, TemplateService.MAX_PAGE_SIZE + 1));
     }
 
 
     @Test
     void testFindById_WhenUserIsOwner_ShouldReturnTemplate() throws AccessDeniedException {
-        when(templateRepository.findById(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateCache.getById(102L)).thenReturn(Optional.of(privateTemplate));
 
         Template found = templateService.findById(102L, standardUser);
 
         assertNotNull(found);
         assertEquals(102L, found.getId());
-        verify(templateRepository, times(1)).findById(102L);
+        verify(templateCache, times(1)).getById(102L);
     }
 
     @Test
     void testFindById_WhenTemplateIsPublic_ShouldReturnTemplate() throws AccessDeniedException {
-        when(templateRepository.findById(101L)).thenReturn(Optional.of(publicTemplate));
+        when(templateCache.getById(101L)).thenReturn(Optional.of(publicTemplate));
 
         Template found = templateService.findById(101L, standardUser);
 
@@ -182,7 +320,7 @@ class TemplateServiceTest {
 
     @Test
     void testFindById_WhenAdminIsNotOwner_ShouldReturnTemplate() throws AccessDeniedException {
-        when(templateRepository.findById(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateCache.getById(102L)).thenReturn(Optional.of(privateTemplate));
 
         Template found = templateService.findById(102L, adminUser);
 
@@ -191,7 +329,7 @@ class TemplateServiceTest {
 
     @Test
     void testFindById_WhenUserIsNotOwner_ShouldThrowAccessDenied() {
-        when(templateRepository.findById(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateCache.getById(102L)).thenReturn(Optional.of(privateTemplate));
 
         assertThrows(AccessDeniedException.class, () -> {
             templateService.findById(102L, creatorUser);
@@ -200,7 +338,7 @@ class TemplateServiceTest {
 
     @Test
     void testFindById_WhenTemplateNotFound_ShouldThrowException() {
-        when(templateRepository.findById(999L)).thenReturn(Optional.empty());
+        when(templateCache.getById(999L)).thenReturn(Optional.empty());
 
         assertThrows(RuntimeException.class, () -> {
             templateService.findById(999L, standardUser);
@@ -215,14 +353,55 @@ class TemplateServiceTest {
         updatedDetails.setName("Nombre Actualizado");
         updatedDetails.setContent("<html>{{actualizado}}</html>");
 
-        when(templateRepository.findById(102L)).thenReturn(Optional.of(privateTemplate));
-        when(templateRepository.save(any(Template.class))).thenReturn(privateTemplate);
+        when(templateRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(privateTemplate);
 
         Template result = templateService.update(102L, updatedDetails, standardUser);
 
         assertEquals("Nombre Actualizado", result.getName());
         assertEquals("<html>{{actualizado}}</html>", result.getContent());
-        verify(templateRepository, times(1)).save(any(Template.class));
+        verify(templateRepository, times(1)).saveAndFlush(any(Template.class));
+        verify(templateVersionRepository, times(1)).save(any(TemplateVersion.class));
+        verify(templateCache, times(1)).invalidate(102L);
+    }
+
+    @Test
+    void testUpdate_RecordsNewVersionWhenContentChanges() throws AccessDeniedException {
+        Template updatedDetails = new Template();
+        updatedDetails.setName("Privada");
+        updatedDetails.setContent("<p>{{nuevo}}</p>");
+        privateTemplate.setCurrentVersion(new TemplateVersion(privateTemplate, 1, ContentHash.sha256("<p>{{viejo}}</p>")));
+
+        when(templateRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(privateTemplate);
+        when(templateProcessor.compileTemplate("<p>{{nuevo}}</p>")).thenReturn("<p>{{nuevo}}</p>");
+        when(templateVersionRepository.findLatestVersionNumber(102L)).thenReturn(1);
+        when(templateVersionRepository.save(any(TemplateVersion.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Template result = templateService.update(102L, updatedDetails, standardUser);
+
+        assertEquals(2, result.getVersionNumber());
+        // La plantilla se lee bloqueada antes de calcular el número de versión
+        verify(templateRepository, never()).findById(102L);
+        assertEquals(ContentHash.sha256("<p>{{nuevo}}</p>"), result.getCurrentVersion().getContentHash());
+        assertEquals("<p>{{nuevo}}</p>", result.getCurrentVersion().getCompiledContent());
+    }
+
+    @Test
+    void testUpdate_KeepsVersionWhenContentIsUnchanged() throws AccessDeniedException {
+        Template updatedDetails = new Template();
+        updatedDetails.setName("Solo cambia el nombre");
+        updatedDetails.setContent("<p>{{igual}}</p>");
+        privateTemplate.setCurrentVersion(new TemplateVersion(privateTemplate, 4, ContentHash.sha256("<p>{{igual}}</p>")));
+
+        when(templateRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(privateTemplate);
+        when(templateProcessor.compileTemplate("<p>{{igual}}</p>")).thenReturn("<p>{{igual}}</p>");
+
+        Template result = templateService.update(102L, updatedDetails, standardUser);
+
+        assertEquals(4, result.getVersionNumber());
+        verify(templateVersionRepository, never()).save(any(TemplateVersion.class));
     }
 
     @Test
@@ -231,13 +410,13 @@ class TemplateServiceTest {
         updatedDetails.setName("Actualizado por Admin");
         updatedDetails.setContent("<html>{{admin}}</html>");
 
-        when(templateRepository.findById(102L)).thenReturn(Optional.of(privateTemplate));
-        when(templateRepository.save(any(Template.class))).thenReturn(privateTemplate);
+        when(templateRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateRepository.saveAndFlush(any(Template.class))).thenReturn(privateTemplate);
 
         Template result = templateService.update(102L, updatedDetails, adminUser);
 
         assertNotNull(result);
-        verify(templateRepository, times(1)).save(any(Template.class));
+        verify(templateRepository, times(1)).saveAndFlush(any(Template.class));
     }
 
     @Test
@@ -245,7 +424,7 @@ class TemplateServiceTest {
         Template updatedDetails = new Template();
         updatedDetails.setName("Actualización No Autorizada");
 
-        when(templateRepository.findById(101L)).thenReturn(Optional.of(publicTemplate));
+        when(templateRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(publicTemplate));
 
         assertThrows(AccessDeniedException.class, () -> {
             templateService.update(101L, updatedDetails, standardUser);
@@ -257,7 +436,7 @@ class TemplateServiceTest {
         Template updatedDetails = new Template();
         updatedDetails.setName("Actualización No Autorizada de Creador");
 
-        when(templateRepository.findById(102L)).thenReturn(Optional.of(privateTemplate));
+        when(templateRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(privateTemplate));
 
         assertThrows(AccessDeniedException.class, () -> {
             templateService.update(102L, updatedDetails, creatorUser);
@@ -273,6 +452,8 @@ class TemplateServiceTest {
         templateService.delete(102L, standardUser);
 
         verify(templateRepository, times(1)).delete(privateTemplate);
+        verify(templateVersionRepository, times(1)).deleteByTemplateId(102L);
+        verify(templateCache, times(1)).invalidate(102L);
     }
 
     @Test
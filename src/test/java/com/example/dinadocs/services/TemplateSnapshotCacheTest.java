@@ -0,0 +1,117 @@
+package com.example.dinadocs.services;
+
+import com.example.dinadocs.models.Template;
+import com.example.dinadocs.models.User;
+import com.example.dinadocs.repositories.TemplateRepository;
+import com.example.dinadocs.repositories.TemplateVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TemplateSnapshotCacheTest {
+
+    private TemplateRepository templateRepository;
+    private TemplateSnapshotCache cache;
+    private Template template;
+
+    @BeforeEach
+    void setUp() {
+        templateRepository = mock(TemplateRepository.class);
+        cache = new TemplateSnapshotCache(templateRepository, mock(TemplateVersionRepository.class), 16);
+
+        User owner = new User();
+        owner.setId(7L);
+        template = new Template();
+        template.setId(1L);
+        template.setName("factura");
+        template.setContent("<p>{{cliente}}</p>");
+        template.setPlaceholders(List.of("cliente"));
+        template.setOwner(owner);
+        when(templateRepository.findById(1L)).thenReturn(Optional.of(template));
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.of(template));
+    }
+
+    @Test
+    void testHitDoesNotQueryRepository() {
+        Template first = cache.getByName("factura").orElseThrow();
+        Template second = cache.getByName("factura").orElseThrow();
+        Template byId = cache.getById(1L).orElseThrow();
+
+        assertSame(first, second);
+        assertSame(first, byId);
+        verify(templateRepository, times(1)).findByNameKey("factura");
+        verify(templateRepository, never()).findById(any());
+        assertEquals(2, cache.getCache().hitCount());
+    }
+
+    @Test
+    void testLookupIgnoresCaseAndAccents() {
+        template.setName("Cotización");
+        when(templateRepository.findByNameKey("cotizacion")).thenReturn(Optional.of(template));
+
+        Template first = cache.getByName("COTIZACION").orElseThrow();
+
+        assertSame(first, cache.getByName("cotización").orElseThrow());
+        verify(templateRepository, times(1)).findByNameKey("cotizacion");
+    }
+
+    @Test
+    void testSnapshotIsDetachedFromEntity() {
+        Template snapshot = cache.getById(1L).orElseThrow();
+
+        assertNotSame(template, snapshot);
+        assertEquals(7L, snapshot.getOwner().getId());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getPlaceholders().add("otro"));
+
+        template.setContent("<p>cambiada</p>");
+        assertEquals("<p>{{cliente}}</p>", cache.getById(1L).orElseThrow().getContent());
+    }
+
+    @Test
+    void testInvalidateReloadsTemplate() {
+        cache.getById(1L);
+        template.setContent("<p>cambiada</p>");
+        cache.invalidate(1L);
+
+        assertEquals("<p>cambiada</p>", cache.getByName("factura").orElseThrow().getContent());
+        verify(templateRepository, times(1)).findByNameKey("factura");
+    }
+
+    @Test
+    void testRenamedTemplateIsNotServedByOldName() {
+        cache.getByName("factura");
+        template.setName("recibo");
+        cache.invalidate(1L);
+        cache.getById(1L);
+        when(templateRepository.findByNameKey("factura")).thenReturn(Optional.empty());
+
+        assertTrue(cache.getByName("factura").isEmpty());
+        assertEquals("recibo", cache.getByName("recibo").orElseThrow().getName());
+    }
+
+    @Test
+    void testLoadRacingWithInvalidationIsNotCached() {
+        when(templateRepository.findById(1L)).thenAnswer(invocation -> {
+            // Una escritura termina mientras se está cargando la versión anterior
+            cache.invalidate(1L);
+            return Optional.of(template);
+        });
+
+        assertTrue(cache.getById(1L).isPresent());
+        assertEquals(0, cache.getCache().size());
+    }
+
+    @Test
+    void testMissingTemplateIsNotCached() {
+        when(templateRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertTrue(cache.getById(2L).isEmpty());
+        assertTrue(cache.getById(2L).isEmpty());
+        verify(templateRepository, times(2)).findById(2L);
+    }
+}